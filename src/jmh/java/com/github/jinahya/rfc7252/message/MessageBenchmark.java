@@ -0,0 +1,80 @@
+package com.github.jinahya.rfc7252.message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Message#read(byte[])} and {@link Message#write()} with a typical request and a typical response.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    static Message newRequest() throws IOException {
+        return new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .messageId(0x1234)
+                .token(new byte[] {1, 2, 3, 4})
+                .option(Option.NUMBER_URI_HOST, "gateway.example.com".getBytes("UTF-8"))
+                .option(Option.NUMBER_URI_PATH, "sensors".getBytes("UTF-8"))
+                .option(Option.NUMBER_URI_PATH, "temperature".getBytes("UTF-8"))
+                .option(Option.NUMBER_ACCEPT, new byte[] {50});
+    }
+
+    static Message newResponse() {
+        final Message message = new Message()
+                .code(Message.CODE_RESPONSE_CONTENT)
+                .messageId(0x1234)
+                .token(new byte[] {1, 2, 3, 4})
+                .option(Option.NUMBER_CONTENT_FORMAT, new byte[] {50})
+                .option(Option.NUMBER_MAX_AGE, new byte[] {0x0E, 0x10});
+        message.setType(Message.TYPE_ACKNOWLEDGEMENT);
+        message.setPayload(new byte[64]);
+        return message;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Param({"request", "response"})
+    public String kind;
+
+    private Message message;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        message = "request".equals(kind) ? newRequest() : newResponse();
+        bytes = message.write();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Benchmark
+    public Message read() throws IOException {
+        final Message message = new Message();
+        message.read(bytes);
+        return message;
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return message.write();
+    }
+}
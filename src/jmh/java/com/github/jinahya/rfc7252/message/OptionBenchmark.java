@@ -0,0 +1,89 @@
+package com.github.jinahya.rfc7252.message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Option#read(java.io.DataInput)}, {@link Option#write(java.io.DataOutput)} and their {@link
+ * ByteBuffer} counterparts across all widths of the delta and the length; {@code 12} for no extended bytes, {@code
+ * 268} for a 1-byte extension and {@code 1024} for a 2-byte extension.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OptionBenchmark {
+
+    @Param({"12", "268", "1024"})
+    public int delta;
+
+    @Param({"12", "268", "1024"})
+    public int length;
+
+    private Option option;
+
+    private byte[] bytes;
+
+    private ByteBuffer buffer;
+
+    private ByteArrayOutputStream baos;
+
+    @Setup
+    public void setup() throws IOException {
+        option = Option.of(delta, new byte[length]);
+        baos = new ByteArrayOutputStream();
+        option.write(new DataOutputStream(baos));
+        bytes = baos.toByteArray();
+        buffer = ByteBuffer.allocate(bytes.length);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Benchmark
+    public Option readDataInput() throws IOException {
+        final Option option = new Option();
+        option.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        return option;
+    }
+
+    @Benchmark
+    public int writeDataOutput() throws IOException {
+        baos.reset();
+        option.write(new DataOutputStream(baos));
+        return baos.size();
+    }
+
+    @Benchmark
+    public Option readByteBuffer() {
+        final Option option = new Option();
+        option.read(ByteBuffer.wrap(bytes));
+        return option;
+    }
+
+    @Benchmark
+    public int writeByteBuffer() {
+        buffer.clear();
+        option.write(buffer);
+        return buffer.position();
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.jinahya.rfc7252.message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Option#getValueAsUint()}, {@link Option#setValueAsUint(BigInteger)} and their primitive
+ * counterparts with values of {@code 0} to {@code 4} bytes.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OptionUintBenchmark {
+
+    @Param({"0", "60", "65535", "16777215", "4294967295"})
+    public long uint;
+
+    private BigInteger valueAsUint;
+
+    private Option option;
+
+    @Setup
+    public void setup() {
+        valueAsUint = BigInteger.valueOf(uint);
+        option = new Option();
+        option.setNumber(Option.NUMBER_MAX_AGE);
+        option.setValueAsUint(valueAsUint);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Benchmark
+    public BigInteger getValueAsUint() {
+        return option.getValueAsUint();
+    }
+
+    @Benchmark
+    public Option setValueAsUint() {
+        option.setValueAsUint(valueAsUint);
+        return option;
+    }
+
+    @Benchmark
+    public long getValueAsLong() {
+        return option.getValueAsLong();
+    }
+
+    @Benchmark
+    public Option setValueAsLong() {
+        option.setValueAsLong(uint);
+        return option;
+    }
+}
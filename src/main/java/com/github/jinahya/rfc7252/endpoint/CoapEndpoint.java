@@ -0,0 +1,833 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.exchange.Deduplicator;
+import com.github.jinahya.rfc7252.exchange.RetransmissionScheduler;
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.MessageTemplate;
+import com.github.jinahya.rfc7252.message.MessageValidator;
+import com.github.jinahya.rfc7252.message.OptionRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A CoAP endpoint which serves a single non-blocking datagram channel with a selector loop.
+ * <p>
+ * Each received datagram is {@link MessageValidator validated} and decoded, directly from a reused direct buffer, into
+ * a single reused {@link Message} which is then handed to a {@link MessageHandler}. Messages are encoded into a reused
+ * direct buffer and sent without any intermediate array. All encoding and all channel operations are performed by the
+ * thread running {@link #run()}; messages sent by other threads are queued for the loop.
+ * <pre>{@code
+ * final CoapEndpoint endpoint = new CoapEndpoint(new InetSocketAddress(5683), handler);
+ * new Thread(endpoint).start();
+ * ...
+ * endpoint.close();
+ * }</pre>
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class CoapEndpoint implements Runnable, Closeable {
+
+    /**
+     * The default size of the receive buffer and the send buffer. The value is {@value} which is the maximum payload
+     * size of a UDP datagram over IPv4.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 65507;
+
+    /**
+     * The maximum number of datagrams received for each selection so that queued sends are not starved.
+     */
+    private static final int MAX_RECEIVES_PER_SELECT = 64;
+
+    private static final Logger logger = Logger.getLogger(CoapEndpoint.class.getName());
+
+    /**
+     * An outgoing datagram waiting for the loop; either a message to encode or already encoded bytes.
+     */
+    private static final class Outgoing {
+
+        private Outgoing(final Message message, final ByteBuffer data, final SocketAddress target) {
+            this(message, data, false, null, 0, null, target);
+        }
+
+        private Outgoing(final Message message, final ByteBuffer data, final boolean scheduled,
+                         final MessageTemplate template, final int messageId, final byte[] token,
+                         final SocketAddress target) {
+            super();
+            this.message = message;
+            this.data = data;
+            this.scheduled = scheduled;
+            this.template = template;
+            this.messageId = messageId;
+            this.token = token;
+            this.target = target;
+        }
+
+        private final Message message;
+
+        private final ByteBuffer data;
+
+        private final boolean scheduled; // whether the data is to be scheduled for retransmissions
+
+        private final MessageTemplate template;
+
+        private final int messageId;
+
+        private final byte[] token;
+
+        private final SocketAddress target;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance bound to specified local address with {@link #DEFAULT_BUFFER_SIZE}.
+     *
+     * @param local   the local address to bind; {@code null} for an ephemeral port on the wildcard address.
+     * @param handler the handler of received messages.
+     * @throws IOException if an I/O error occurs.
+     */
+    public CoapEndpoint(final SocketAddress local, final MessageHandler handler) throws IOException {
+        this(local, handler, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new instance bound to specified local address.
+     *
+     * @param local      the local address to bind; {@code null} for an ephemeral port on the wildcard address.
+     * @param handler    the handler of received messages.
+     * @param bufferSize the size of the receive buffer and the send buffer; datagrams longer than this are truncated.
+     * @throws IOException if an I/O error occurs.
+     */
+    public CoapEndpoint(final SocketAddress local, final MessageHandler handler, final int bufferSize)
+            throws IOException {
+        this(open(local), handler, bufferSize);
+    }
+
+    /**
+     * Creates a new instance serving specified channel which is already bound.
+     *
+     * @param channel    the channel to serve.
+     * @param handler    the handler of received messages.
+     * @param bufferSize the size of the receive buffer and the send buffer.
+     * @throws IOException if an I/O error occurs.
+     */
+    CoapEndpoint(final DatagramChannel channel, final MessageHandler handler, final int bufferSize)
+            throws IOException {
+        super();
+        if (channel == null) {
+            throw new NullPointerException("channel is null");
+        }
+        if (handler == null) {
+            throw new NullPointerException("handler is null");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize(" + bufferSize + ") <= 0");
+        }
+        this.channel = channel;
+        this.handler = handler;
+        receiveBuffer = ByteBuffer.allocateDirect(bufferSize);
+        sendBuffer = ByteBuffer.allocateDirect(bufferSize);
+        try {
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            key = channel.register(selector, SelectionKey.OP_READ);
+        } catch (final IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+    }
+
+    private static DatagramChannel open(final SocketAddress local) throws IOException {
+        final DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.socket().bind(local);
+        } catch (final IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+        return channel;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs the selector loop until this endpoint is {@link #close() closed}. The channel and the selector are closed
+     * when this method returns.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (thread != null) {
+                throw new IllegalStateException("already running");
+            }
+            thread = Thread.currentThread();
+        }
+        try {
+            for (long untilTask = 0L; !closed; ) {
+                final RetransmissionScheduler scheduler = this.scheduler;
+                final long tick = scheduler == null || scheduler.size() == 0 ? 0L : scheduler.getTick();
+                selector.select(tick == 0L || untilTask == 0L ? Math.max(tick, untilTask) : Math.min(tick, untilTask));
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey selected = keys.next();
+                    keys.remove();
+                    if (selected.isValid() && selected.isWritable()) {
+                        flush();
+                    }
+                    if (selected.isValid() && selected.isReadable()) {
+                        receive();
+                    }
+                }
+                if (scheduler != null) {
+                    scheduler.advance();
+                }
+                untilTask = runTasks();
+                flush();
+            }
+        } catch (final ClosedSelectorException cse) {
+            // closed
+        } catch (final IOException ioe) {
+            if (!closed) {
+                logger.log(Level.SEVERE, "failed to serve " + channel, ioe);
+            }
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Schedules specified task to be run by the loop thread after specified delay. This method must be invoked by the
+     * loop thread, e.g. by the handler.
+     *
+     * @param task  the task.
+     * @param delay the delay in milliseconds.
+     */
+    void schedule(final LoopTask task, final long delay) {
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("not invoked by the loop thread");
+        }
+        task.deadline = currentTimeMillis() + delay;
+        LoopTask previous = lastTask;
+        while (previous != null && previous.deadline > task.deadline) { // never for tasks of the same delay
+            previous = previous.previous;
+        }
+        task.previous = previous;
+        task.next = previous == null ? firstTask : previous.next;
+        if (task.previous == null) {
+            firstTask = task;
+        } else {
+            task.previous.next = task;
+        }
+        if (task.next == null) {
+            lastTask = task;
+        } else {
+            task.next.previous = task;
+        }
+    }
+
+    /**
+     * Runs scheduled tasks whose deadlines have passed.
+     *
+     * @return the time, in milliseconds, until the next deadline; {@code 0} if no task is scheduled.
+     */
+    private long runTasks() {
+        final long now = currentTimeMillis();
+        for (LoopTask task; (task = firstTask) != null; ) {
+            if (task.deadline > now) {
+                return task.deadline - now;
+            }
+            firstTask = task.next;
+            if (firstTask == null) {
+                lastTask = null;
+            } else {
+                firstTask.previous = null;
+            }
+            task.next = null;
+            try {
+                task.run();
+            } catch (final RuntimeException re) {
+                logger.log(Level.WARNING, "failed to run a task", re);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Rejects the received message, which is well formed but has a critical option of an invalid value length, as one
+     * with an unrecognized critical option; a confirmable request is responded with {@code 4.02 (Bad Option)}, other
+     * confirmable or non-confirmable messages are reset, and acknowledgements and resets are ignored.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.4.1">5.4.1. Critical/Elective (RFC 7252)</a>
+     */
+    private void reject(final SocketAddress source) throws IOException {
+        final int position = receiveBuffer.position();
+        final int b = receiveBuffer.get(position) & 0xFF;
+        final int type = (b >> 4) & 0x03;
+        if (!isDeduplicated(type)) {
+            return;
+        }
+        final Message reply = new Message().messageId(receiveBuffer.getShort(position + 2) & 0xFFFF);
+        final int code = receiveBuffer.get(position + 1) & 0xFF;
+        if (type == Message.TYPE_CONFIRMABLE && code >> 5 == Message.CODE_CLASS_REQUEST) {
+            final byte[] token = new byte[b & 0x0F];
+            for (int i = 0; i < token.length; i++) {
+                token[i] = receiveBuffer.get(position + 4 + i);
+            }
+            reply.setType(Message.TYPE_ACKNOWLEDGEMENT);
+            reply.setCode(Message.CODE_RESPONSE_BAD_OPTION);
+            reply.setToken(token);
+        } else {
+            reply.setType(Message.TYPE_RESET);
+        }
+        send(reply, source);
+    }
+
+    private static long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    private void receive() throws IOException {
+        SocketAddress source;
+        for (int i = 0; i < MAX_RECEIVES_PER_SELECT && !closed; i++) {
+            receiveBuffer.clear();
+            if ((source = channel.receive(receiveBuffer)) == null) {
+                break;
+            }
+            receiveBuffer.flip();
+            final int length = receiveBuffer.remaining();
+            final int result = MessageValidator.check(receiveBuffer, optionRegistry);
+            if (result != MessageValidator.VALID) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "discarding a malformed datagram(" + result + ") from " + source);
+                }
+                if (metrics != null) {
+                    metrics.malformed(result, length);
+                }
+                if (result == MessageValidator.INVALID_OPTION_VALUE_LENGTH) {
+                    reject(source);
+                }
+                continue;
+            }
+            final long started = metrics == null ? 0L : System.nanoTime();
+            received.reset();
+            try {
+                received.read(receiveBuffer);
+            } catch (final RuntimeException re) { // BufferUnderflowException, message format error
+                logger.log(Level.FINE, "discarding a malformed datagram from " + source, re);
+                if (metrics != null) {
+                    metrics.malformed(-1, length);
+                }
+                continue;
+            }
+            if (metrics != null) {
+                metrics.decoded(received.getType(), received.getCode(), received.getOptionCount(), length,
+                                System.nanoTime() - started);
+            }
+            if (scheduler != null && isTerminating(received.getType())) {
+                scheduler.cancel(source, received.getMessageId());
+            }
+            if (deduplicator != null && isDeduplicated(received.getType())) {
+                final byte[] response = deduplicator.seen(source, received.getMessageId());
+                if (response != null) { // duplicate
+                    if (response.length > 0) {
+                        channel.send(ByteBuffer.wrap(response), source); // best effort; the peer retransmits
+                    }
+                    continue;
+                }
+            }
+            try {
+                handler.handle(this, source, received);
+            } catch (final RuntimeException re) {
+                logger.log(Level.WARNING, "failed to handle a message from " + source, re);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Sends specified message to specified target. When invoked by the loop thread, e.g. from a {@link MessageHandler},
+     * the message is encoded immediately and sent, or queued as encoded bytes behind datagrams already waiting;
+     * otherwise it is queued for the loop and must not be modified afterwards.
+     *
+     * @param message the message to send.
+     * @param target  the address of the target.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void send(final Message message, final SocketAddress target) throws IOException {
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+        if (Thread.currentThread() == thread) {
+            encode(message);
+            sendEncodedOrQueue(target);
+            return;
+        }
+        enqueue(new Outgoing(message, null, target));
+    }
+
+    /**
+     * Sends specified bytes of an already encoded message to specified target. The remaining bytes of specified buffer
+     * are sent and the buffer's position is advanced to its limit. When not invoked by the loop thread the remaining
+     * bytes are copied and queued for the loop.
+     *
+     * @param data   the buffer of the encoded message.
+     * @param target the address of the target.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void send(final ByteBuffer data, final SocketAddress target) throws IOException {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+        if (Thread.currentThread() == thread && outgoings.isEmpty()) {
+            if (!sendNow(data, target)) { // nothing consumed
+                outgoings.add(new Outgoing(null, copy(data), target));
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            return;
+        }
+        enqueue(new Outgoing(null, copy(data), target));
+    }
+
+    /**
+     * Sends specified bytes of an already encoded message to specified target as if the message is {@link
+     * #send(Message, SocketAddress) sent}; a confirmable message is scheduled for retransmissions, unlike with {@link
+     * #send(ByteBuffer, SocketAddress)}, and an acknowledgement or a reset is recorded to the deduplicator. The
+     * remaining bytes of specified buffer are copied, either into the send buffer or for the loop, and the buffer's
+     * position is advanced to its limit. Notifications of an {@link
+     * com.github.jinahya.rfc7252.exchange.ObserveNotifier} are sent with this method.
+     *
+     * @param data   the buffer of the encoded message.
+     * @param target the address of the target.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void sendScheduled(final ByteBuffer data, final SocketAddress target) throws IOException {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+        if (Thread.currentThread() == thread) {
+            load(data);
+            sendEncodedOrQueue(target);
+            return;
+        }
+        enqueue(new Outgoing(null, copy(data), true, null, 0, null, target));
+    }
+
+    /**
+     * Sends specified template with specified message ID and token to specified target. The template is written into
+     * the reused send buffer of the loop, immediately when invoked by the loop thread; otherwise the template is queued
+     * for the loop along with a copy of the token.
+     *
+     * @param template  the template to send.
+     * @param messageId the message ID.
+     * @param token     the token; {@code null} for an empty token.
+     * @param target    the address of the target.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void send(final MessageTemplate template, final int messageId, final byte[] token,
+                     final SocketAddress target) throws IOException {
+        if (template == null) {
+            throw new NullPointerException("template is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+        if (Thread.currentThread() == thread) {
+            encode(template, messageId, token);
+            sendEncodedOrQueue(target);
+            return;
+        }
+        final byte[] copy = token == null ? null : new byte[token.length];
+        if (copy != null) {
+            System.arraycopy(token, 0, copy, 0, copy.length);
+        }
+        enqueue(new Outgoing(null, null, false, template, messageId, copy, target));
+    }
+
+    private void enqueue(final Outgoing outgoing) throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+        outgoings.add(outgoing);
+        selector.wakeup();
+    }
+
+    private static ByteBuffer copy(final ByteBuffer data) {
+        final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data).flip();
+        return copy;
+    }
+
+    /**
+     * Encodes specified message into the send buffer.
+     */
+    private void encode(final Message message) throws IOException {
+        final long started = metrics == null ? 0L : System.nanoTime();
+        sendBuffer.clear();
+        try {
+            message.write(sendBuffer);
+        } catch (final BufferOverflowException boe) {
+            throw new IOException("message too long for the buffer(" + sendBuffer.capacity() + ")");
+        }
+        sendBuffer.flip();
+        if (metrics != null) {
+            metrics.encoded(message.getType(), message.getCode(), message.getOptionCount(), sendBuffer.remaining(),
+                            System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Writes specified template into the send buffer.
+     */
+    private void encode(final MessageTemplate template, final int messageId, final byte[] token) throws IOException {
+        final long started = metrics == null ? 0L : System.nanoTime();
+        sendBuffer.clear();
+        try {
+            template.write(messageId, token, sendBuffer);
+        } catch (final BufferOverflowException boe) {
+            throw new IOException("template too long for the buffer(" + sendBuffer.capacity() + ")");
+        }
+        sendBuffer.flip();
+        if (metrics != null) {
+            metrics.encoded(template.getType(), template.getCode(), -1, sendBuffer.remaining(),
+                            System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Copies the remaining bytes of specified data into the send buffer.
+     */
+    private void load(final ByteBuffer data) throws IOException {
+        if (data.remaining() > sendBuffer.capacity()) {
+            throw new IOException("data too long for the buffer(" + sendBuffer.capacity() + ")");
+        }
+        sendBuffer.clear();
+        sendBuffer.put(data).flip();
+    }
+
+    /**
+     * Sends specified data as is.
+     *
+     * @return {@code true} if sent; {@code false} if the channel had no room for the datagram.
+     */
+    private boolean sendNow(final ByteBuffer data, final SocketAddress target) throws IOException {
+        record(data, target);
+        return channel.send(data, target) > 0;
+    }
+
+    /**
+     * Sends the message encoded in the send buffer, or queues a copy of it when other datagrams are waiting or the
+     * channel has no room for it. Invoked only by the loop thread.
+     */
+    private void sendEncodedOrQueue(final SocketAddress target) throws IOException {
+        if (outgoings.isEmpty()) {
+            if (sendEncoded(target)) {
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            prepareEncoded(target); // flushed by the loop, in order, as encoded bytes
+        }
+        outgoings.add(new Outgoing(null, copy(sendBuffer), target));
+    }
+
+    /**
+     * Sends the message encoded in the send buffer, recording it to the deduplicator and scheduling it for
+     * retransmissions.
+     *
+     * @return {@code true} if sent; {@code false} if the channel had no room for the datagram in which case the encoded
+     * message remains in the send buffer.
+     */
+    private boolean sendEncoded(final SocketAddress target) throws IOException {
+        prepareEncoded(target);
+        return channel.send(sendBuffer, target) > 0;
+    }
+
+    /**
+     * Records the message encoded in the send buffer to the deduplicator and schedules it for retransmissions. The
+     * send buffer is not changed.
+     */
+    private void prepareEncoded(final SocketAddress target) {
+        record(sendBuffer, target);
+        if (scheduler != null && ((sendBuffer.get(0) >> 4) & 0x03) == Message.TYPE_CONFIRMABLE) {
+            final int messageId = sendBuffer.getShort(2) & 0xFFFF;
+            final byte[] encoded = new byte[sendBuffer.remaining()];
+            sendBuffer.get(encoded).rewind();
+            scheduler.cancel(target, messageId); // re-arms when sent again
+            scheduler.schedule(target, messageId, encoded);
+        }
+    }
+
+    private static boolean isTerminating(final int type) {
+        return type == Message.TYPE_ACKNOWLEDGEMENT || type == Message.TYPE_RESET;
+    }
+
+    private static boolean isDeduplicated(final int type) {
+        return type == Message.TYPE_CONFIRMABLE || type == Message.TYPE_NON_CONFIRMABLE;
+    }
+
+    /**
+     * Records specified encoded message to the deduplicator if it is an acknowledgement or a reset.
+     */
+    private void record(final ByteBuffer encoded, final SocketAddress target) {
+        if (deduplicator == null || encoded.remaining() < 4) {
+            return;
+        }
+        final int position = encoded.position();
+        if (!isTerminating((encoded.get(position) >> 4) & 0x03)) {
+            return;
+        }
+        final byte[] response = new byte[encoded.remaining()];
+        encoded.get(response).position(position);
+        deduplicator.respond(target, encoded.getShort(position + 2) & 0xFFFF, response);
+    }
+
+    private void flush() throws IOException {
+        for (Outgoing outgoing; (outgoing = outgoings.peek()) != null; ) {
+            final boolean sent;
+            try {
+                if (outgoing.template != null) {
+                    encode(outgoing.template, outgoing.messageId, outgoing.token);
+                    sent = sendEncoded(outgoing.target);
+                } else if (outgoing.message != null) {
+                    encode(outgoing.message);
+                    sent = sendEncoded(outgoing.target);
+                } else if (outgoing.scheduled) {
+                    load(outgoing.data.duplicate());
+                    sent = sendEncoded(outgoing.target);
+                } else {
+                    sent = sendNow(outgoing.data, outgoing.target);
+                }
+            } catch (final IOException ioe) {
+                if (!channel.isOpen()) {
+                    throw ioe;
+                }
+                logger.log(Level.WARNING, "failed to send to " + outgoing.target, ioe);
+                outgoings.poll();
+                continue;
+            }
+            if (!sent) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            outgoings.poll();
+        }
+        if (key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Closes this endpoint. A running loop stops and closes the channel; otherwise the channel is closed immediately.
+     * Queued messages not yet sent are discarded.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        final boolean running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = thread != null;
+        }
+        if (running) {
+            selector.wakeup();
+            return;
+        }
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        outgoings.clear();
+        try {
+            selector.close();
+        } catch (final IOException ioe) {
+            // ignored
+        }
+        try {
+            channel.close();
+        } catch (final IOException ioe) {
+            // ignored
+        }
+    }
+
+    /**
+     * Checks whether this endpoint is closed.
+     *
+     * @return {@code true} if closed; {@code false} otherwise.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the deduplicator of this endpoint.
+     *
+     * @return the deduplicator; {@code null} if not set.
+     */
+    public Deduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Sets the deduplicator of this endpoint. When set, a confirmable or non-confirmable message whose message ID has
+     * recently been received from the same peer is not handed to the handler; instead, the acknowledgement or reset
+     * sent in response to the original message, if any, is sent again. This method must be invoked before {@link
+     * #run()}.
+     *
+     * @param deduplicator the deduplicator; {@code null} to disable deduplication.
+     */
+    public void setDeduplicator(final Deduplicator deduplicator) {
+        if (thread != null) {
+            throw new IllegalStateException("already running");
+        }
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Returns the retransmission scheduler of this endpoint.
+     *
+     * @return the retransmission scheduler; {@code null} if not set.
+     */
+    public RetransmissionScheduler getRetransmissionScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sets the retransmission scheduler of this endpoint. When set, each confirmable {@link #send(Message,
+     * SocketAddress) message sent} is scheduled for retransmissions, which are cancelled when an acknowledgement or a
+     * reset of the same message ID is received from the peer, and the scheduler is advanced by the loop. The handler of
+     * the scheduler is invoked by the loop thread and may retransmit via {@link #send(ByteBuffer, SocketAddress)}. This
+     * method must be invoked before {@link #run()}.
+     *
+     * @param scheduler the retransmission scheduler; {@code null} to disable retransmissions.
+     */
+    public void setRetransmissionScheduler(final RetransmissionScheduler scheduler) {
+        if (thread != null) {
+            throw new IllegalStateException("already running");
+        }
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the metrics of this endpoint.
+     *
+     * @return the metrics; {@code null} if not set.
+     */
+    public CoapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics of this endpoint. When set, each decoded, encoded and malformed message is recorded, along with
+     * the time taken to decode or encode it, by the loop thread. Messages sent as {@link #send(ByteBuffer,
+     * SocketAddress) encoded bytes} are not recorded. This method must be invoked before {@link #run()}.
+     *
+     * @param metrics the metrics; {@code null} to disable recording.
+     */
+    public void setMetrics(final CoapMetrics metrics) {
+        if (thread != null) {
+            throw new IllegalStateException("already running");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the option registry of this endpoint.
+     *
+     * @return the option registry; {@code null} if not set.
+     */
+    public OptionRegistry getOptionRegistry() {
+        return optionRegistry;
+    }
+
+    /**
+     * Sets the option registry of this endpoint, which is {@link OptionRegistry#getDefault()} by default. When set, a
+     * received message with a critical option of a value length invalid in the registry is not handed to the handler
+     * but rejected as one with an unrecognized critical option; a confirmable request is responded with {@code 4.02
+     * (Bad Option)} and other confirmable or non-confirmable messages are reset. This method must be invoked before
+     * {@link #run()}.
+     *
+     * @param optionRegistry the option registry; {@code null} to disable checking option value lengths.
+     */
+    public void setOptionRegistry(final OptionRegistry optionRegistry) {
+        if (thread != null) {
+            throw new IllegalStateException("already running");
+        }
+        this.optionRegistry = optionRegistry;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the local address to which the channel is bound.
+     *
+     * @return the local address of the channel.
+     */
+    public SocketAddress getLocalAddress() {
+        return channel.socket().getLocalSocketAddress();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final DatagramChannel channel;
+
+    private final MessageHandler handler;
+
+    private final Selector selector;
+
+    private final SelectionKey key;
+
+    private final ByteBuffer receiveBuffer;
+
+    private final ByteBuffer sendBuffer;
+
+    private final Message received = new Message();
+
+    private Deduplicator deduplicator;
+
+    private RetransmissionScheduler scheduler;
+
+    private CoapMetrics metrics;
+
+    private OptionRegistry optionRegistry = OptionRegistry.getDefault();
+
+    private final Queue<Outgoing> outgoings = new ConcurrentLinkedQueue<Outgoing>();
+
+    private LoopTask firstTask; // accessed only by the loop thread
+
+    private LoopTask lastTask;
+
+    private volatile Thread thread;
+
+    private volatile boolean closed;
+}
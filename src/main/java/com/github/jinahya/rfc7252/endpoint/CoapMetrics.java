@@ -0,0 +1,45 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+/**
+ * An interface for recording what a {@link CoapEndpoint} decodes and encodes. Methods are invoked by the loop thread of
+ * the endpoint, so an instance shared by the shards of a {@link ShardedEndpoint} is invoked by multiple threads
+ * concurrently.
+ * <p>
+ * An endpoint without metrics, which is the default, doesn't even read the clock.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see CoapEndpoint#setMetrics(CoapMetrics)
+ */
+public interface CoapMetrics {
+
+    /**
+     * Records a received message which has been decoded.
+     *
+     * @param type        the type of the message.
+     * @param code        the code of the message.
+     * @param optionCount the number of options of the message.
+     * @param length      the number of bytes of the datagram.
+     * @param nanos       the time, in nanoseconds, taken to decode the message.
+     */
+    void decoded(int type, int code, int optionCount, int length, long nanos);
+
+    /**
+     * Records a message which has been encoded to be sent.
+     *
+     * @param type        the type of the message.
+     * @param code        the code of the message.
+     * @param optionCount the number of options of the message; {@code -1} if unknown, e.g. of a template.
+     * @param length      the number of bytes encoded.
+     * @param nanos       the time, in nanoseconds, taken to encode the message.
+     */
+    void encoded(int type, int code, int optionCount, int length, long nanos);
+
+    /**
+     * Records a received datagram which has been discarded as malformed.
+     *
+     * @param reason the result of {@link com.github.jinahya.rfc7252.message.MessageValidator}; {@code -1} if the
+     *               datagram has been rejected while being decoded.
+     * @param length the number of bytes of the datagram.
+     */
+    void malformed(int reason, int length);
+}
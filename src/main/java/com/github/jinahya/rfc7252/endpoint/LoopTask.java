@@ -0,0 +1,24 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+/**
+ * A task run by the loop thread of a {@link CoapEndpoint} at a deadline. Scheduled tasks are linked, by themselves, in
+ * a list of the endpoint ordered by their deadlines, so that scheduling tasks of the same delay takes constant time
+ * without allocating any node.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see CoapEndpoint#schedule(LoopTask, long)
+ */
+abstract class LoopTask {
+
+    /**
+     * Runs this task on the loop thread.
+     */
+    abstract void run();
+
+    // -----------------------------------------------------------------------------------------------------------------
+    long deadline;
+
+    LoopTask previous;
+
+    LoopTask next;
+}
@@ -0,0 +1,25 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.net.SocketAddress;
+
+/**
+ * An interface for handling messages received by a {@link CoapEndpoint}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public interface MessageHandler {
+
+    /**
+     * Handles specified message received from specified source.
+     * <p>
+     * The message is decoded into an instance reused by the endpoint; it is valid only until this method returns and
+     * must be copied, or read again, if it is needed afterwards.
+     *
+     * @param endpoint the endpoint which received the message; may be used for responding.
+     * @param source   the address of the message's source.
+     * @param message  the message received.
+     */
+    void handle(CoapEndpoint endpoint, SocketAddress source, Message message);
+}
@@ -0,0 +1,18 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+/**
+ * An interface for creating a {@link MessageHandler} for each shard of a {@link ShardedEndpoint}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public interface MessageHandlerFactory {
+
+    /**
+     * Creates a new handler for specified shard. The handler is invoked only by the loop thread of the shard, so any
+     * state it holds, such as exchanges, needs no synchronization as long as it is not shared with other shards.
+     *
+     * @param shard the index of the shard.
+     * @return a new handler.
+     */
+    MessageHandler newHandler(int shard);
+}
@@ -0,0 +1,357 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.exchange.MessageIdGenerator;
+import com.github.jinahya.rfc7252.exchange.ResponseCache;
+import com.github.jinahya.rfc7252.exchange.RetransmissionScheduler;
+import com.github.jinahya.rfc7252.exchange.TransmissionParameters;
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A message handler which dispatches each confirmable or non-confirmable request to a {@link RequestHandler} on an
+ * {@link Executor}, so that handlers may block without stalling the loop of a {@link CoapEndpoint}. Other messages are
+ * handed to an optional delegate on the loop thread.
+ * <p>
+ * A request is {@link Message#copy() copied} before it is dispatched, and responses are {@link
+ * CoapEndpoint#send(Message, SocketAddress) sent} through the endpoint which encodes them on its loop thread. Requests
+ * rejected by the executor are responded with {@code 5.03}. Non-confirmable and separate responses take their message
+ * IDs from a {@link MessageIdGenerator}, which should be the one shared by everything sending through the same
+ * endpoint, e.g. an {@link com.github.jinahya.rfc7252.exchange.ObserveNotifier}, so that no message ID is used twice
+ * for a peer within the exchange lifetime.
+ * <p>
+ * A response to a confirmable request is piggybacked on its acknowledgement when the handler returns within the
+ * {@link #setAcknowledgementDelay(long) acknowledgement delay}. Otherwise an empty acknowledgement is sent so that the
+ * client stops retransmitting the request, and the response is sent later as a separate confirmable message, which is
+ * retransmitted when the endpoint has a {@link CoapEndpoint#setRetransmissionScheduler(RetransmissionScheduler)
+ * retransmission scheduler}. Empty acknowledgements are scheduled on, and sent by, the loop thread of the endpoint.
+ * <p>
+ * With a {@link #setResponseCache(ResponseCache) response cache}, {@code GET} requests are responded from the cache on
+ * the loop thread whenever possible. Observe registrations always reach the handler.
+ * <p>
+ * On Java 21 or later an executor of {@link VirtualThreads#newVirtualThreadPerTaskExecutor() virtual threads} keeps a
+ * large number of slow exchanges in flight cheaply.
+ * <pre>{@code
+ * new CoapEndpoint(local, new RequestDispatcher(VirtualThreads.newVirtualThreadPerTaskExecutor(), handler, null));
+ * }</pre>
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class RequestDispatcher implements MessageHandler {
+
+    /**
+     * The default delay, in milliseconds, of empty acknowledgements. The value is {@value} which is the half of {@link
+     * TransmissionParameters#ACK_TIMEOUT}.
+     */
+    public static final long DEFAULT_ACKNOWLEDGEMENT_DELAY = TransmissionParameters.ACK_TIMEOUT / 2L;
+
+    private static final Logger logger = Logger.getLogger(RequestDispatcher.class.getName());
+
+    private static final int PENDING = 0;
+
+    private static final int ACKNOWLEDGED = 1;
+
+    private static final int RESPONDED = 2;
+
+    /**
+     * An exchange of a confirmable request which is acknowledged, when run by the loop thread at its deadline, unless
+     * it is responded already. A responded exchange is simply dropped at its deadline.
+     */
+    private static final class Exchange extends LoopTask {
+
+        private Exchange(final CoapEndpoint endpoint, final SocketAddress source, final int messageId) {
+            super();
+            this.endpoint = endpoint;
+            this.source = source;
+            this.messageId = messageId;
+        }
+
+        @Override
+        void run() {
+            if (!state.compareAndSet(PENDING, ACKNOWLEDGED)) {
+                return;
+            }
+            final Message acknowledgement = new Message().code(Message.CODE_EMPTY_MESSAGE).messageId(messageId);
+            acknowledgement.setType(Message.TYPE_ACKNOWLEDGEMENT);
+            try {
+                endpoint.send(acknowledgement, source);
+            } catch (final IOException ioe) {
+                logger.log(Level.FINE, "failed to acknowledge " + source, ioe);
+            }
+        }
+
+        /**
+         * Marks this exchange as responded.
+         *
+         * @return {@code true} if the response may be piggybacked; {@code false} if already acknowledged.
+         */
+        private boolean respond() {
+            return state.compareAndSet(PENDING, RESPONDED);
+        }
+
+        private final CoapEndpoint endpoint;
+
+        private final SocketAddress source;
+
+        private final int messageId;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with a new message ID generator.
+     *
+     * @param executor the executor on which requests are handled.
+     * @param handler  the handler of requests.
+     * @param delegate the handler of messages other than requests; may be {@code null}.
+     */
+    public RequestDispatcher(final Executor executor, final RequestHandler handler, final MessageHandler delegate) {
+        this(executor, handler, delegate, new MessageIdGenerator());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor   the executor on which requests are handled.
+     * @param handler    the handler of requests.
+     * @param delegate   the handler of messages other than requests; may be {@code null}.
+     * @param messageIds the generator of message IDs of responses; should be shared with other senders of the
+     *                   endpoint.
+     */
+    public RequestDispatcher(final Executor executor, final RequestHandler handler, final MessageHandler delegate,
+                             final MessageIdGenerator messageIds) {
+        super();
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        if (handler == null) {
+            throw new NullPointerException("handler is null");
+        }
+        if (messageIds == null) {
+            throw new NullPointerException("messageIds is null");
+        }
+        this.executor = executor;
+        this.handler = handler;
+        this.delegate = delegate;
+        this.messageIds = messageIds;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void handle(final CoapEndpoint endpoint, final SocketAddress source, final Message message) {
+        final int type = message.getType();
+        if (message.getCodeClass() != Message.CODE_CLASS_REQUEST || message.getCode() == Message.CODE_EMPTY_MESSAGE
+            || (type != Message.TYPE_CONFIRMABLE && type != Message.TYPE_NON_CONFIRMABLE)) {
+            if (delegate != null) {
+                delegate.handle(endpoint, source, message);
+            }
+            return;
+        }
+        final ResponseCache cache = this.cache;
+        if (cache != null && message.getCode() == Message.CODE_REQUEST_METHOD_GET && !ResponseCache.hasObserve(message)
+            && respond(endpoint, source, message, cache)) {
+            return;
+        }
+        final Message request = message.copy();
+        final Exchange exchange;
+        if (type == Message.TYPE_CONFIRMABLE) {
+            exchange = new Exchange(endpoint, source, request.getMessageId());
+        } else {
+            exchange = null;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Message response;
+                    try {
+                        response = handler.handle(source, request);
+                    } catch (final Exception e) {
+                        logger.log(Level.WARNING, "failed to handle a request from " + source, e);
+                        respond(endpoint, source, request, exchange,
+                                new Message().code(Message.CODE_RESPONSE_INTERNAL_SERVER_ERROR), false);
+                        return;
+                    }
+                    respond(endpoint, source, request, exchange, response, true);
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            respond(endpoint, source, request, exchange,
+                    new Message().code(Message.CODE_RESPONSE_SERVICE_UNAVAILABLE), false);
+            return;
+        }
+        if (exchange != null) {
+            final long delay = acknowledgementDelay;
+            if (delay == 0L) {
+                exchange.run(); // on the loop thread
+            } else {
+                endpoint.schedule(exchange, delay);
+            }
+        }
+    }
+
+    /**
+     * Sends a cached response to specified request, if any.
+     *
+     * @return {@code true} if responded; {@code false} otherwise.
+     */
+    private boolean respond(final CoapEndpoint endpoint, final SocketAddress source, final Message request,
+                            final ResponseCache cache) {
+        if (request.getType() == Message.TYPE_CONFIRMABLE) {
+            final byte[] response = cache.get(request, Message.TYPE_ACKNOWLEDGEMENT, request.getMessageId());
+            if (response == null) {
+                return false;
+            }
+            send(endpoint, source, response);
+            return true;
+        }
+        final byte[] response = cache.get(request, Message.TYPE_NON_CONFIRMABLE, 0);
+        if (response == null) {
+            return false;
+        }
+        final int messageId = messageIds.next(source);
+        if (messageId == -1) {
+            return false;
+        }
+        response[2] = (byte) (messageId >> 8);
+        response[3] = (byte) messageId;
+        send(endpoint, source, response);
+        return true;
+    }
+
+    private static void send(final CoapEndpoint endpoint, final SocketAddress source, final byte[] response) {
+        try {
+            endpoint.send(ByteBuffer.wrap(response), source);
+        } catch (final IOException ioe) {
+            logger.log(Level.FINE, "failed to respond to " + source, ioe);
+        }
+    }
+
+    /**
+     * Sends specified response to specified request. A response to a confirmable request is piggybacked on its
+     * acknowledgement unless the request is already acknowledged in which case the response is sent as a separate
+     * confirmable message.
+     *
+     * @param cacheable {@code true} if {@code response} is returned by the handler; {@code false} if it is made by this
+     *                  dispatcher, e.g. for a request rejected by the executor, and thus must not be cached.
+     */
+    private void respond(final CoapEndpoint endpoint, final SocketAddress source, final Message request,
+                         final Exchange exchange, Message response, final boolean cacheable) {
+        final ResponseCache cache = this.cache;
+        if (cacheable && cache != null && response != null && request.getCode() == Message.CODE_REQUEST_METHOD_GET) {
+            cache.put(request, response);
+        }
+        if (exchange != null && !exchange.respond()) { // separate
+            if (response == null) {
+                return;
+            }
+            final int messageId = messageIds.next(source);
+            if (messageId == -1) {
+                logger.log(Level.WARNING, "no message ID available for responding to " + source);
+                return;
+            }
+            response.setToken(request.getToken());
+            response.setType(Message.TYPE_CONFIRMABLE);
+            response.setMessageId(messageId);
+        } else if (request.getType() == Message.TYPE_CONFIRMABLE) {
+            if (response == null) {
+                response = new Message().code(Message.CODE_EMPTY_MESSAGE);
+            } else {
+                response.setToken(request.getToken());
+            }
+            response.setType(Message.TYPE_ACKNOWLEDGEMENT);
+            response.setMessageId(request.getMessageId());
+        } else {
+            if (response == null) {
+                return;
+            }
+            final int messageId = messageIds.next(source);
+            if (messageId == -1) {
+                logger.log(Level.WARNING, "no message ID available for responding to " + source);
+                return;
+            }
+            response.setToken(request.getToken());
+            response.setType(Message.TYPE_NON_CONFIRMABLE);
+            response.setMessageId(messageId);
+        }
+        try {
+            endpoint.send(response, source);
+        } catch (final IOException ioe) {
+            logger.log(Level.FINE, "failed to respond to " + source, ioe);
+        }
+    }
+
+    /**
+     * Returns the generator of message IDs of responses, which may be shared with other senders of the endpoint.
+     *
+     * @return the generator of message IDs.
+     */
+    public MessageIdGenerator getMessageIdGenerator() {
+        return messageIds;
+    }
+
+    /**
+     * Returns the delay of empty acknowledgements.
+     *
+     * @return the delay, in milliseconds, of empty acknowledgements.
+     */
+    public long getAcknowledgementDelay() {
+        return acknowledgementDelay;
+    }
+
+    /**
+     * Sets the delay of empty acknowledgements. A confirmable request whose handler doesn't return within the delay is
+     * acknowledged with an empty acknowledgement and responded with a separate response. The delay should be less than
+     * {@link TransmissionParameters#ACK_TIMEOUT}.
+     *
+     * @param acknowledgementDelay the delay in milliseconds; {@code 0} for acknowledging immediately on the loop
+     *                             thread.
+     */
+    public void setAcknowledgementDelay(final long acknowledgementDelay) {
+        if (acknowledgementDelay < 0L) {
+            throw new IllegalArgumentException("acknowledgementDelay(" + acknowledgementDelay + ") < 0");
+        }
+        this.acknowledgementDelay = acknowledgementDelay;
+    }
+
+    /**
+     * Returns the cache of responses to {@code GET} requests.
+     *
+     * @return the cache of responses; may be {@code null}.
+     */
+    public ResponseCache getResponseCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache of responses to {@code GET} requests.
+     *
+     * @param cache the cache of responses; {@code null} for not caching.
+     */
+    public void setResponseCache(final ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Executor executor;
+
+    private final RequestHandler handler;
+
+    private final MessageHandler delegate;
+
+    private final MessageIdGenerator messageIds;
+
+    private volatile ResponseCache cache;
+
+    private volatile long acknowledgementDelay = DEFAULT_ACKNOWLEDGEMENT_DELAY;
+}
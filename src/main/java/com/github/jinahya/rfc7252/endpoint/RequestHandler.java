@@ -0,0 +1,25 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.net.SocketAddress;
+
+/**
+ * An interface for handling requests dispatched by a {@link RequestDispatcher}. Implementations may block.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public interface RequestHandler {
+
+    /**
+     * Handles specified request and returns a response. The type, the message ID and the token of the response are set
+     * by the dispatcher.
+     *
+     * @param source  the address of the request's source.
+     * @param request the request; owned by the handler.
+     * @return the response; {@code null} for no response in which case an empty acknowledgement is sent for a
+     * confirmable request.
+     * @throws Exception if failed to handle; a {@code 5.00} response is sent.
+     */
+    Message handle(SocketAddress source, Message request) throws Exception;
+}
@@ -0,0 +1,234 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Set;
+
+/**
+ * A group of {@link CoapEndpoint}s, each with its own channel and loop thread, bound to a single local address with
+ * {@code SO_REUSEPORT}. The kernel spreads incoming datagrams over the channels by hashing their source and
+ * destination addresses, so all datagrams of a peer are served by the same shard while the shards stay open. Each shard
+ * has its own {@link MessageHandler}, from a {@link MessageHandlerFactory}, so per-peer state such as deduplication and
+ * token matching is kept local to the shard without any locking.
+ * <p>
+ * Responses must be sent through the endpoint handed to the handler. Note that the kernel does not route a datagram by
+ * the channel that sent a previous one; responses to requests originated from a shard may arrive at another shard.
+ * <p>
+ * {@code SO_REUSEPORT} is available on Java 9 or later, on platforms which support it. See
+ * {@link #isReusePortSupported()}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class ShardedEndpoint implements Closeable {
+
+    private static final Object SO_REUSEPORT;
+
+    private static final Method SET_OPTION;
+
+    static {
+        Object option = null;
+        Method method = null;
+        try {
+            option = Class.forName("java.net.StandardSocketOptions").getField("SO_REUSEPORT").get(null);
+            method = DatagramChannel.class.getMethod(
+                    "setOption", Class.forName("java.net.SocketOption"), Object.class);
+        } catch (final Exception e) {
+            // prior to Java 9
+            option = null;
+            method = null;
+        }
+        SO_REUSEPORT = option;
+        SET_OPTION = method;
+    }
+
+    /**
+     * Checks whether {@code SO_REUSEPORT} is supported by current runtime and platform.
+     *
+     * @return {@code true} if supported; {@code false} otherwise.
+     */
+    public static boolean isReusePortSupported() {
+        if (SO_REUSEPORT == null) {
+            return false;
+        }
+        try {
+            final DatagramChannel channel = DatagramChannel.open();
+            try {
+                return ((Set<?>) DatagramChannel.class.getMethod("supportedOptions").invoke(channel))
+                        .contains(SO_REUSEPORT);
+            } finally {
+                channel.close();
+            }
+        } catch (final Exception e) {
+            return false;
+        }
+    }
+
+    private static void setReusePort(final DatagramChannel channel) throws IOException {
+        if (SET_OPTION == null) {
+            throw new UnsupportedOperationException("SO_REUSEPORT is not supported by current runtime");
+        }
+        try {
+            SET_OPTION.invoke(channel, SO_REUSEPORT, Boolean.TRUE);
+        } catch (final IllegalAccessException iae) {
+            throw new RuntimeException(iae);
+        } catch (final InvocationTargetException ite) {
+            final Throwable cause = ite.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause; // UnsupportedOperationException
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance of specified number of shards bound to specified local address.
+     *
+     * @param local   the local address to bind; the port of {@code 0} binds all shards to a single ephemeral port.
+     * @param shards  the number of shards; typically the number of available processors.
+     * @param factory the factory of handlers for each shard.
+     * @throws IOException                   if an I/O error occurs.
+     * @throws UnsupportedOperationException if {@code SO_REUSEPORT} is not supported.
+     * @see #isReusePortSupported()
+     */
+    public ShardedEndpoint(final SocketAddress local, final int shards, final MessageHandlerFactory factory)
+            throws IOException {
+        super();
+        if (local == null) {
+            throw new NullPointerException("local is null");
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards(" + shards + ") <= 0");
+        }
+        if (factory == null) {
+            throw new NullPointerException("factory is null");
+        }
+        endpoints = new CoapEndpoint[shards];
+        try {
+            SocketAddress bound = local;
+            for (int i = 0; i < shards; i++) {
+                final DatagramChannel channel = DatagramChannel.open();
+                try {
+                    setReusePort(channel);
+                    channel.socket().bind(bound);
+                } catch (final IOException ioe) {
+                    channel.close();
+                    throw ioe;
+                } catch (final RuntimeException re) {
+                    channel.close();
+                    throw re;
+                }
+                endpoints[i] = new CoapEndpoint(channel, factory.newHandler(i), CoapEndpoint.DEFAULT_BUFFER_SIZE);
+                bound = endpoints[i].getLocalAddress(); // the port, if ephemeral, is now fixed
+            }
+        } catch (final IOException ioe) {
+            close();
+            throw ioe;
+        } catch (final RuntimeException re) {
+            close();
+            throw re;
+        }
+        threads = new Thread[shards];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts a loop thread for each shard.
+     */
+    public synchronized void start() {
+        for (int i = 0; i < endpoints.length; i++) {
+            if (threads[i] != null) {
+                throw new IllegalStateException("already started");
+            }
+            threads[i] = new Thread(endpoints[i], "coap-shard-" + i);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Closes all shards.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException thrown = null;
+        for (final CoapEndpoint endpoint : endpoints) {
+            if (endpoint == null) {
+                continue;
+            }
+            try {
+                endpoint.close();
+            } catch (final IOException ioe) {
+                thrown = ioe;
+            }
+        }
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Closes all shards and waits for their loop threads to terminate.
+     *
+     * @param millis the maximum time, in milliseconds, to wait for each thread; {@code 0} to wait forever.
+     * @throws IOException          if an I/O error occurs.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void close(final long millis) throws IOException, InterruptedException {
+        close();
+        final Thread[] started;
+        synchronized (this) {
+            started = threads.clone();
+        }
+        for (final Thread thread : started) {
+            if (thread != null) {
+                thread.join(millis);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return endpoints.length;
+    }
+
+    /**
+     * Returns the endpoint of specified shard.
+     *
+     * @param shard the index of the shard.
+     * @return the endpoint of the shard.
+     */
+    public CoapEndpoint getShard(final int shard) {
+        return endpoints[shard];
+    }
+
+    /**
+     * Returns the local address to which all shards are bound.
+     *
+     * @return the local address.
+     */
+    public SocketAddress getLocalAddress() {
+        return endpoints[0].getLocalAddress();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final CoapEndpoint[] endpoints;
+
+    private final Thread[] threads;
+}
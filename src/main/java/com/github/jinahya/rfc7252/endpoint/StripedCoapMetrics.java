@@ -0,0 +1,420 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link CoapMetrics} which counts into stripes of a single {@link AtomicLongArray}.
+ * <p>
+ * Each recording thread counts into the stripe of its own, chosen by its ID, so that the loop threads of a {@link
+ * ShardedEndpoint} sharing an instance rarely contend for the same counters; stripes are padded so that they don't
+ * share cache lines. Counts are summed over stripes only when read. Options and durations are counted into histograms
+ * of power-of-two buckets.
+ * <p>
+ * Counts may be exported as plain text, with {@link #toText()}, or in the Prometheus text exposition format, with
+ * {@link #toPrometheus()}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class StripedCoapMetrics implements CoapMetrics {
+
+    /**
+     * The maximum number of stripes. The value is {@value}.
+     */
+    public static final int MAX_STRIPES = 64;
+
+    /**
+     * The number of option count buckets; the last one is for {@code 256} or more options.
+     */
+    private static final int OPTION_BUCKETS = 10;
+
+    /**
+     * The number of duration buckets; the last one is for {@code 2^30} or more nanoseconds.
+     */
+    private static final int DURATION_BUCKETS = 32;
+
+    /**
+     * The number of malformed reasons; the first one is for datagrams rejected while being decoded.
+     */
+    private static final int REASONS = 16;
+
+    private static final int DECODED = 0;
+
+    private static final int DECODED_BYTES = 1;
+
+    private static final int DECODED_OPTIONS = 2;
+
+    private static final int DECODED_NANOS = 3;
+
+    private static final int ENCODED = 4;
+
+    private static final int ENCODED_BYTES = 5;
+
+    private static final int ENCODED_OPTIONS = 6;
+
+    private static final int ENCODED_NANOS = 7;
+
+    private static final int MALFORMED_BYTES = 8;
+
+    private static final int DECODED_TYPES = 12;
+
+    private static final int ENCODED_TYPES = DECODED_TYPES + 4;
+
+    private static final int MALFORMED = ENCODED_TYPES + 4;
+
+    private static final int DECODED_OPTION_BUCKETS = MALFORMED + REASONS;
+
+    private static final int ENCODED_OPTION_BUCKETS = DECODED_OPTION_BUCKETS + OPTION_BUCKETS;
+
+    private static final int DECODED_DURATION_BUCKETS = ENCODED_OPTION_BUCKETS + OPTION_BUCKETS;
+
+    private static final int ENCODED_DURATION_BUCKETS = DECODED_DURATION_BUCKETS + DURATION_BUCKETS;
+
+    private static final int DECODED_CODES = ENCODED_DURATION_BUCKETS + DURATION_BUCKETS;
+
+    private static final int ENCODED_CODES = DECODED_CODES + 256;
+
+    private static final int COUNTERS = ENCODED_CODES + 256;
+
+    /**
+     * The number of counters of each stripe, rounded up to 128 bytes and padded with another 128 bytes.
+     */
+    private static final int STRIDE = ((COUNTERS + 15) & ~15) + 16;
+
+    private static final String[] TYPES = {"CON", "NON", "ACK", "RST"};
+
+    /**
+     * Labels of malformed reasons, indexed by {@link com.github.jinahya.rfc7252.message.MessageValidator} results; the
+     * first one is for datagrams rejected while being decoded.
+     */
+    private static final String[] REASON_LABELS = {
+            "decode_error", "too_short", "unknown_version", "invalid_token_length", "truncated_token",
+            "invalid_option_delta", "invalid_option_length", "truncated_option", "empty_payload",
+            "non_empty_empty_message", "invalid_option_value_length"
+    };
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    private static int stripes() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        return Integer.highestOneBit(processors - 1) << 1;
+    }
+
+    /**
+     * Creates a new instance with as many stripes as available processors, up to {@code 16}.
+     */
+    public StripedCoapMetrics() {
+        this(Math.max(stripes(), 1));
+    }
+
+    /**
+     * Creates a new instance with specified number of stripes.
+     *
+     * @param stripes the number of stripes; rounded up to a power of two.
+     */
+    public StripedCoapMetrics(final int stripes) {
+        super();
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes(" + stripes + ") <= 0");
+        }
+        if (stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("stripes(" + stripes + ") > " + MAX_STRIPES);
+        }
+        mask = stripes == 1 ? 0 : (Integer.highestOneBit(stripes - 1) << 1) - 1;
+        counters = new AtomicLongArray((mask + 1) * STRIDE);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void decoded(final int type, final int code, final int optionCount, final int length, final long nanos) {
+        final int base = base();
+        counters.incrementAndGet(base + DECODED);
+        counters.addAndGet(base + DECODED_BYTES, length);
+        counters.addAndGet(base + DECODED_OPTIONS, optionCount);
+        counters.addAndGet(base + DECODED_NANOS, nanos);
+        counters.incrementAndGet(base + DECODED_TYPES + (type & 0x03));
+        counters.incrementAndGet(base + DECODED_CODES + (code & 0xFF));
+        counters.incrementAndGet(base + DECODED_OPTION_BUCKETS + optionBucket(optionCount));
+        counters.incrementAndGet(base + DECODED_DURATION_BUCKETS + durationBucket(nanos));
+    }
+
+    @Override
+    public void encoded(final int type, final int code, final int optionCount, final int length, final long nanos) {
+        final int base = base();
+        counters.incrementAndGet(base + ENCODED);
+        counters.addAndGet(base + ENCODED_BYTES, length);
+        counters.addAndGet(base + ENCODED_NANOS, nanos);
+        counters.incrementAndGet(base + ENCODED_TYPES + (type & 0x03));
+        counters.incrementAndGet(base + ENCODED_CODES + (code & 0xFF));
+        if (optionCount >= 0) {
+            counters.addAndGet(base + ENCODED_OPTIONS, optionCount);
+            counters.incrementAndGet(base + ENCODED_OPTION_BUCKETS + optionBucket(optionCount));
+        }
+        counters.incrementAndGet(base + ENCODED_DURATION_BUCKETS + durationBucket(nanos));
+    }
+
+    @Override
+    public void malformed(final int reason, final int length) {
+        final int base = base();
+        counters.incrementAndGet(base + MALFORMED + Math.max(0, Math.min(reason, REASONS - 1)));
+        counters.addAndGet(base + MALFORMED_BYTES, length);
+    }
+
+    private int base() {
+        final long id = Thread.currentThread().getId();
+        return ((int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask) * STRIDE;
+    }
+
+    private static int optionBucket(final int optionCount) {
+        return Math.min(32 - Integer.numberOfLeadingZeros(optionCount), OPTION_BUCKETS - 1);
+    }
+
+    private static int durationBucket(final long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0L)), DURATION_BUCKETS - 1);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private long sum(final int counter) {
+        long sum = 0L;
+        for (int base = 0; base < counters.length(); base += STRIDE) {
+            sum += counters.get(base + counter);
+        }
+        return sum;
+    }
+
+    private long[] sums() {
+        final long[] sums = new long[COUNTERS];
+        for (int base = 0; base < counters.length(); base += STRIDE) {
+            for (int i = 0; i < COUNTERS; i++) {
+                sums[i] += counters.get(base + i);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Returns the number of decoded messages.
+     *
+     * @return the number of decoded messages.
+     */
+    public long getDecodedCount() {
+        return sum(DECODED);
+    }
+
+    /**
+     * Returns the number of bytes of decoded messages.
+     *
+     * @return the number of bytes of decoded messages.
+     */
+    public long getDecodedBytes() {
+        return sum(DECODED_BYTES);
+    }
+
+    /**
+     * Returns the number of decoded messages of specified code.
+     *
+     * @param code the code.
+     * @return the number of decoded messages of {@code code}.
+     */
+    public long getDecodedCountOfCode(final int code) {
+        return sum(DECODED_CODES + (code & 0xFF));
+    }
+
+    /**
+     * Returns the number of decoded messages of specified type.
+     *
+     * @param type the type.
+     * @return the number of decoded messages of {@code type}.
+     */
+    public long getDecodedCountOfType(final int type) {
+        return sum(DECODED_TYPES + (type & 0x03));
+    }
+
+    /**
+     * Returns the number of encoded messages.
+     *
+     * @return the number of encoded messages.
+     */
+    public long getEncodedCount() {
+        return sum(ENCODED);
+    }
+
+    /**
+     * Returns the number of bytes of encoded messages.
+     *
+     * @return the number of bytes of encoded messages.
+     */
+    public long getEncodedBytes() {
+        return sum(ENCODED_BYTES);
+    }
+
+    /**
+     * Returns the number of encoded messages of specified code.
+     *
+     * @param code the code.
+     * @return the number of encoded messages of {@code code}.
+     */
+    public long getEncodedCountOfCode(final int code) {
+        return sum(ENCODED_CODES + (code & 0xFF));
+    }
+
+    /**
+     * Returns the number of encoded messages of specified type.
+     *
+     * @param type the type.
+     * @return the number of encoded messages of {@code type}.
+     */
+    public long getEncodedCountOfType(final int type) {
+        return sum(ENCODED_TYPES + (type & 0x03));
+    }
+
+    /**
+     * Returns the number of malformed datagrams.
+     *
+     * @return the number of malformed datagrams.
+     */
+    public long getMalformedCount() {
+        long sum = 0L;
+        for (int i = 0; i < REASONS; i++) {
+            sum += sum(MALFORMED + i);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the number of malformed datagrams of specified reason.
+     *
+     * @param reason the reason; {@code -1} for datagrams rejected while being decoded.
+     * @return the number of malformed datagrams of {@code reason}.
+     */
+    public long getMalformedCount(final int reason) {
+        return sum(MALFORMED + Math.max(0, Math.min(reason, REASONS - 1)));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Exports counts as plain text of a {@code name value} line for each non-zero count.
+     *
+     * @return a plain text of counts.
+     */
+    public String toText() {
+        return export(false);
+    }
+
+    /**
+     * Exports counts in the Prometheus text exposition format.
+     *
+     * @return a text of counts in the Prometheus format.
+     * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Exposition formats</a>
+     */
+    public String toPrometheus() {
+        return export(true);
+    }
+
+    private String export(final boolean prometheus) {
+        final long[] sums = sums();
+        final StringBuilder builder = new StringBuilder();
+        for (final String direction : new String[] {"decoded", "encoded"}) {
+            final boolean decoded = "decoded".equals(direction);
+            counter(builder, prometheus, "coap_" + direction + "_total", sums[decoded ? DECODED : ENCODED]);
+            counter(builder, prometheus, "coap_" + direction + "_bytes_total",
+                    sums[decoded ? DECODED_BYTES : ENCODED_BYTES]);
+            type(builder, prometheus, "coap_" + direction + "_by_type_total", "counter");
+            for (int type = 0; type < TYPES.length; type++) {
+                sample(builder, prometheus, "coap_" + direction + "_by_type_total", "type", TYPES[type],
+                       sums[(decoded ? DECODED_TYPES : ENCODED_TYPES) + type]);
+            }
+            type(builder, prometheus, "coap_" + direction + "_by_code_total", "counter");
+            for (int code = 0; code < 256; code++) {
+                final long count = sums[(decoded ? DECODED_CODES : ENCODED_CODES) + code];
+                if (count > 0L) {
+                    sample(builder, prometheus, "coap_" + direction + "_by_code_total", "code", code(code), count);
+                }
+            }
+            histogram(builder, prometheus, "coap_" + direction + "_options", sums,
+                      decoded ? DECODED_OPTION_BUCKETS : ENCODED_OPTION_BUCKETS, OPTION_BUCKETS,
+                      sums[decoded ? DECODED_OPTIONS : ENCODED_OPTIONS], 0);
+            histogram(builder, prometheus, "coap_" + (decoded ? "decode" : "encode") + "_duration_seconds", sums,
+                      decoded ? DECODED_DURATION_BUCKETS : ENCODED_DURATION_BUCKETS, DURATION_BUCKETS,
+                      sums[decoded ? DECODED_NANOS : ENCODED_NANOS], 9);
+        }
+        type(builder, prometheus, "coap_malformed_total", "counter");
+        for (int reason = 0; reason < REASONS; reason++) {
+            final long count = sums[MALFORMED + reason];
+            if (count > 0L) {
+                final String label = reason < REASON_LABELS.length ? REASON_LABELS[reason] : "unknown_" + reason;
+                sample(builder, prometheus, "coap_malformed_total", "reason", label, count);
+            }
+        }
+        counter(builder, prometheus, "coap_malformed_bytes_total", sums[MALFORMED_BYTES]);
+        return builder.toString();
+    }
+
+    private static void type(final StringBuilder builder, final boolean prometheus, final String name,
+                             final String type) {
+        if (prometheus) {
+            builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private static void counter(final StringBuilder builder, final boolean prometheus, final String name,
+                                final long value) {
+        type(builder, prometheus, name, "counter");
+        if (prometheus || value != 0L) {
+            builder.append(name).append(' ').append(value).append('\n');
+        }
+    }
+
+    private static void sample(final StringBuilder builder, final boolean prometheus, final String name,
+                               final String label, final String value, final long count) {
+        if (prometheus || count != 0L) {
+            builder.append(name).append('{').append(label).append("=\"").append(value).append("\"} ").append(count)
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Appends a histogram whose bucket {@code b} holds values less than {@code 2^b}. Bounds and the sum are printed
+     * exactly, as decimals of values divided by {@code 10^scale}.
+     */
+    private static void histogram(final StringBuilder builder, final boolean prometheus, final String name,
+                                  final long[] sums, final int offset, final int buckets, final long sum,
+                                  final int scale) {
+        type(builder, prometheus, name, "histogram");
+        long cumulative = 0L;
+        for (int b = 0; b < buckets; b++) {
+            cumulative += sums[offset + b];
+            final String le = b == buckets - 1 ? "+Inf" : decimal((1L << b) - 1, scale);
+            sample(builder, prometheus, name + "_bucket", "le", le, cumulative);
+        }
+        if (prometheus || cumulative != 0L) {
+            builder.append(name).append("_sum ").append(decimal(sum, scale)).append('\n');
+            builder.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    private static String decimal(final long unscaled, final int scale) {
+        return scale == 0 ? Long.toString(unscaled) : BigDecimal.valueOf(unscaled, scale).toPlainString();
+    }
+
+    private static String code(final int code) {
+        final int detail = code & 0x1F;
+        return (code >> 5) + "." + (detail < 10 ? "0" : "") + detail;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "{"
+               + "decoded=" + getDecodedCount()
+               + ",encoded=" + getEncodedCount()
+               + ",malformed=" + getMalformedCount()
+               + "}";
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final int mask;
+
+    private final AtomicLongArray counters;
+}
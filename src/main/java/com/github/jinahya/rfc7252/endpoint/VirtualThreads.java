@@ -0,0 +1,59 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Utilities for virtual threads which are available on Java 21 or later. Virtual threads are accessed reflectively so
+ * that this library still runs on earlier runtimes.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method method;
+        try {
+            method = Class.forName("java.util.concurrent.Executors").getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final Exception e) {
+            method = null; // prior to Java 21
+        }
+        NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = method;
+    }
+
+    /**
+     * Checks whether virtual threads are supported by current runtime.
+     *
+     * @return {@code true} if supported; {@code false} otherwise.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates a new executor which starts a new virtual thread for each task.
+     *
+     * @return a new executor of virtual threads.
+     * @throws UnsupportedOperationException if virtual threads are not supported.
+     * @see #isSupported()
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            throw new UnsupportedOperationException("virtual threads are not supported by current runtime");
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (final IllegalAccessException iae) {
+            throw new RuntimeException(iae);
+        } catch (final InvocationTargetException ite) {
+            throw new RuntimeException(ite.getCause());
+        }
+    }
+
+    private VirtualThreads() {
+        super();
+    }
+}
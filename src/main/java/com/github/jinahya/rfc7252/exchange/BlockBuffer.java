@@ -0,0 +1,206 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A bounded buffer of a body reassembled from blocks. Bytes are held in memory up to a threshold, and the buffer spills
+ * to a temporary file beyond it. The temporary file is deleted when the buffer is closed.
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see BlockReassembler
+ */
+public class BlockBuffer implements Closeable {
+
+    /**
+     * Creates a new instance.
+     *
+     * @param memoryThreshold the maximum number of bytes held in memory.
+     * @param maxSize         the maximum number of bytes of the body.
+     * @param directory       the directory of the temporary file; {@code null} for the default temporary-file
+     *                        directory.
+     */
+    public BlockBuffer(final int memoryThreshold, final long maxSize, final File directory) {
+        super();
+        if (memoryThreshold < 0) {
+            throw new IllegalArgumentException("memoryThreshold(" + memoryThreshold + ") < 0");
+        }
+        if (maxSize <= 0L) {
+            throw new IllegalArgumentException("maxSize(" + maxSize + ") <= 0");
+        }
+        this.memoryThreshold = memoryThreshold;
+        this.maxSize = maxSize;
+        this.directory = directory;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends all remaining bytes of specified buffer.
+     *
+     * @param src the buffer whose remaining bytes are appended.
+     * @return {@code true} if appended; {@code false} if the size would exceed the maximum size.
+     * @throws IOException if an I/O error occurs.
+     */
+    public boolean write(final ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+        final int length = src.remaining();
+        if (size + length > maxSize) {
+            return false;
+        }
+        if (file == null && size + length > memoryThreshold) {
+            spill();
+        }
+        if (file == null) {
+            if (size + length > memory.length) {
+                final int capacity = Math.max((int) size + length, memory.length << 1);
+                final byte[] grown = new byte[Math.min(capacity, memoryThreshold)];
+                System.arraycopy(memory, 0, grown, 0, (int) size);
+                memory = grown;
+            }
+            src.get(memory, (int) size, length);
+        } else {
+            for (long p = size; src.hasRemaining(); ) {
+                p += file.write(src, p);
+            }
+        }
+        size += length;
+        return true;
+    }
+
+    private void spill() throws IOException {
+        path = File.createTempFile("coap-block", ".tmp", directory);
+        file = new RandomAccessFile(path, "rw").getChannel();
+        final ByteBuffer src = ByteBuffer.wrap(memory, 0, (int) size);
+        while (src.hasRemaining()) {
+            file.write(src);
+        }
+        memory = null;
+    }
+
+    /**
+     * Reads bytes at specified position into specified buffer.
+     *
+     * @param position the position from which bytes are read.
+     * @param dst      the buffer into which bytes are read.
+     * @return the number of bytes read; {@code -1} if the position is not less than the size.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int read(final long position, final ByteBuffer dst) throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+        if (position < 0L) {
+            throw new IllegalArgumentException("position(" + position + ") < 0");
+        }
+        if (position >= size) {
+            return -1;
+        }
+        if (file != null) {
+            final int limit = dst.limit();
+            dst.limit(dst.position() + (int) Math.min(dst.remaining(), size - position));
+            try {
+                return file.read(dst, position);
+            } finally {
+                dst.limit(limit);
+            }
+        }
+        final int length = (int) Math.min(dst.remaining(), size - position);
+        dst.put(memory, (int) position, length);
+        return length;
+    }
+
+    /**
+     * Transfers all bytes to specified channel.
+     *
+     * @param target the channel to which bytes are transferred.
+     * @return the number of bytes transferred.
+     * @throws IOException if an I/O error occurs.
+     */
+    public long transferTo(final WritableByteChannel target) throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+        if (file != null) {
+            long position = 0L;
+            while (position < size) {
+                position += file.transferTo(position, size - position, target);
+            }
+            return position;
+        }
+        final ByteBuffer src = ByteBuffer.wrap(memory, 0, (int) size);
+        while (src.hasRemaining()) {
+            target.write(src);
+        }
+        return size;
+    }
+
+    /**
+     * Closes this buffer and deletes the temporary file, if any.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        memory = null;
+        if (file != null) {
+            try {
+                file.close();
+            } finally {
+                if (!path.delete()) {
+                    path.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes written.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Checks whether this buffer has spilled to a temporary file.
+     *
+     * @return {@code true} if spilled; {@code false} otherwise.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final int memoryThreshold;
+
+    private final long maxSize;
+
+    private final File directory;
+
+    private byte[] memory = new byte[0];
+
+    private File path;
+
+    private FileChannel file;
+
+    private long size;
+
+    private boolean closed;
+}
@@ -0,0 +1,112 @@
+package com.github.jinahya.rfc7252.exchange;
+
+/**
+ * Utilities for values of {@code Block1} and {@code Block2} options. A value packs the block number ({@code NUM}), the
+ * more flag ({@code M}) and the size exponent ({@code SZX}) of a block.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7959#section-2.2">2.2. Structure of a Block Option (RFC 7959)</a>
+ */
+public final class BlockOption {
+
+    /**
+     * The maximum value of {@code NUM}. The value is {@value}.
+     */
+    public static final int MAX_NUM = (1 << 20) - 1;
+
+    /**
+     * The minimum value of {@code SZX}. The value is {@value}.
+     */
+    public static final int MIN_SZX = 0;
+
+    /**
+     * The maximum value of {@code SZX}. The value is {@value}.
+     */
+    public static final int MAX_SZX = 6;
+
+    /**
+     * Returns a block option value of specified fields.
+     *
+     * @param num  the block number.
+     * @param more the flag for more blocks.
+     * @param szx  the size exponent.
+     * @return a block option value.
+     */
+    public static int value(final int num, final boolean more, final int szx) {
+        if (num < 0) {
+            throw new IllegalArgumentException("num(" + num + ") < 0");
+        }
+        if (num > MAX_NUM) {
+            throw new IllegalArgumentException("num(" + num + ") > " + MAX_NUM);
+        }
+        requireValidSzx(szx);
+        return (num << 4) | (more ? 0x08 : 0x00) | szx;
+    }
+
+    /**
+     * Returns the block number of specified block option value.
+     *
+     * @param value the block option value.
+     * @return the block number.
+     */
+    public static int num(final int value) {
+        return value >>> 4;
+    }
+
+    /**
+     * Returns the more flag of specified block option value.
+     *
+     * @param value the block option value.
+     * @return {@code true} if more blocks follow; {@code false} otherwise.
+     */
+    public static boolean more(final int value) {
+        return (value & 0x08) != 0;
+    }
+
+    /**
+     * Returns the size exponent of specified block option value.
+     *
+     * @param value the block option value.
+     * @return the size exponent.
+     */
+    public static int szx(final int value) {
+        return value & 0x07;
+    }
+
+    /**
+     * Returns the block size of specified size exponent.
+     *
+     * @param szx the size exponent.
+     * @return the block size; {@code 16} through {@code 1024}.
+     */
+    public static int size(final int szx) {
+        requireValidSzx(szx);
+        return 1 << (szx + 4);
+    }
+
+    /**
+     * Returns the largest size exponent whose block size is not greater than specified size.
+     *
+     * @param size the size.
+     * @return the size exponent.
+     */
+    public static int szxOf(final int size) {
+        if (size < 16) {
+            throw new IllegalArgumentException("size(" + size + ") < 16");
+        }
+        return Math.min(MAX_SZX, 27 - Integer.numberOfLeadingZeros(size));
+    }
+
+    private static void requireValidSzx(final int szx) {
+        if (szx < MIN_SZX) {
+            throw new IllegalArgumentException("szx(" + szx + ") < " + MIN_SZX);
+        }
+        if (szx > MAX_SZX) {
+            throw new IllegalArgumentException("szx(" + szx + ") > " + MAX_SZX);
+        }
+    }
+
+    private BlockOption() {
+        super();
+    }
+}
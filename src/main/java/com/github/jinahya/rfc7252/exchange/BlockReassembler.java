@@ -0,0 +1,411 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reassembler of bodies transferred in blocks with {@code Block1} or {@code Block2} options.
+ * <p>
+ * Each transfer is identified by its peer, its code and its options other than {@code Block1}, {@code Block2}, {@code
+ * Size1}, {@code Size2}, {@code Max-Age} and {@code Observe}, and is reassembled into a {@link BlockBuffer} which spills to a temporary
+ * file beyond a memory threshold. Blocks must arrive in order; a repeated block is ignored, while a first block of a
+ * transfer already progressed or completed starts a new body. Transfers idle for the timeout are discarded.
+ * <p>
+ * Instances of this class are thread-safe. Transfers are looked up under a lock of all transfers while blocks are
+ * written, which may spill to files, under a lock of each transfer, so that a slow write doesn't stall other
+ * transfers.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7959">RFC 7959</a>
+ */
+public class BlockReassembler implements Closeable {
+
+    /**
+     * The default maximum number of bytes of each transfer held in memory. The value is {@value}.
+     */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 65536;
+
+    /**
+     * The default maximum number of bytes of each body. The value is {@value}.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1L << 32;
+
+    /**
+     * A result of {@link #offer(SocketAddress, Message, int)} for a block accepted with more blocks expected.
+     */
+    public static final int ACCEPTED = 0;
+
+    /**
+     * A result of {@link #offer(SocketAddress, Message, int)} for the last block. The body is taken with {@link
+     * #remove(SocketAddress, Message)}.
+     */
+    public static final int COMPLETED = 1;
+
+    /**
+     * A result of {@link #offer(SocketAddress, Message, int)} for a block out of order or of an unknown transfer. A
+     * server responds with {@link Message#CODE_RESPONSE_REQUEST_ENTITY_INCOMPLETE}.
+     */
+    public static final int INCOMPLETE = -1;
+
+    /**
+     * A result of {@link #offer(SocketAddress, Message, int)} for a block which would exceed the maximum size. A server
+     * responds with {@link Message#CODE_RESPONSE_REQUEST_ENTITY_TOO_LARGE}.
+     */
+    public static final int TOO_LARGE = -2;
+
+    private static final class Key {
+
+        private Key(final SocketAddress peer, final byte[] bytes) {
+            super();
+            this.peer = peer;
+            this.bytes = bytes;
+            hash = peer.hashCode() * 31 + Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return that.hash == hash && that.peer.equals(peer) && Arrays.equals(that.bytes, bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private final SocketAddress peer;
+
+        private final byte[] bytes;
+
+        private final int hash;
+    }
+
+    private static final class Transfer {
+
+        private Transfer(final BlockBuffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+
+        private final BlockBuffer buffer;
+
+        private long touched; // guarded by the map
+
+        // guarded by this transfer ------------------------------------------------------------------------------------
+        private long lastBlockPosition = -1L;
+
+        private boolean completed;
+
+        private boolean removed; // no more blocks are written
+    }
+
+    private static boolean isTransferKey(final int number) {
+        return number != Option.NUMBER_BLOCK1 && number != Option.NUMBER_BLOCK2 && number != Option.NUMBER_SIZE1
+               && number != Option.NUMBER_SIZE2 && number != Option.NUMBER_MAX_AGE
+               && number != Option.NUMBER_OBSERVE; // only the first block of a notification has it; RFC 7959 3.4
+    }
+
+    /**
+     * Returns the key of specified message; the code followed by the number, the length and the value of each option
+     * being part of the key.
+     */
+    private static Key key(final SocketAddress peer, final Message message) {
+        final int count = message.getOptionCount();
+        int size = 1;
+        for (int i = 0; i < count; i++) {
+            if (isTransferKey(message.getOptionNumber(i))) {
+                size += 6 + message.getOptionValueLength(i);
+            }
+        }
+        final byte[] bytes = new byte[size];
+        bytes[0] = (byte) message.getCode();
+        for (int i = 0, j = 1; i < count; i++) {
+            final int number = message.getOptionNumber(i);
+            if (!isTransferKey(number)) {
+                continue;
+            }
+            final int length = message.getOptionValueLength(i);
+            bytes[j++] = (byte) (number >> 8);
+            bytes[j++] = (byte) number;
+            bytes[j++] = (byte) (length >> 24);
+            bytes[j++] = (byte) (length >> 16);
+            bytes[j++] = (byte) (length >> 8);
+            bytes[j++] = (byte) length;
+            j += message.copyOptionValue(i, bytes, j);
+        }
+        return new Key(peer, bytes);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with default values and the {@link TransmissionParameters#EXCHANGE_LIFETIME} as the
+     * timeout.
+     */
+    public BlockReassembler() {
+        this(DEFAULT_MEMORY_THRESHOLD, DEFAULT_MAX_SIZE, TransmissionParameters.EXCHANGE_LIFETIME, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param memoryThreshold the maximum number of bytes of each transfer held in memory.
+     * @param maxSize         the maximum number of bytes of each body.
+     * @param timeout         the time, in milliseconds, after which an idle transfer is discarded.
+     * @param directory       the directory of temporary files; {@code null} for the default temporary-file directory.
+     */
+    public BlockReassembler(final int memoryThreshold, final long maxSize, final long timeout, final File directory) {
+        super();
+        if (memoryThreshold < 0) {
+            throw new IllegalArgumentException("memoryThreshold(" + memoryThreshold + ") < 0");
+        }
+        if (maxSize <= 0L) {
+            throw new IllegalArgumentException("maxSize(" + maxSize + ") <= 0");
+        }
+        if (timeout <= 0L) {
+            throw new IllegalArgumentException("timeout(" + timeout + ") <= 0");
+        }
+        this.memoryThreshold = memoryThreshold;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+        this.directory = directory;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Offers the payload of specified message as a block of a body. A message without the block option is a body of a
+     * single block.
+     *
+     * @param peer    the address of the peer.
+     * @param message the message.
+     * @param number  the option number; {@link Option#NUMBER_BLOCK1} or {@link Option#NUMBER_BLOCK2}.
+     * @return one of {@link #ACCEPTED}, {@link #COMPLETED}, {@link #INCOMPLETE} and {@link #TOO_LARGE}.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int offer(final SocketAddress peer, final Message message, final int number) throws IOException {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        int value = 0;
+        for (int i = 0; i < message.getOptionCount(); i++) {
+            if (message.getOptionNumber(i) == number) {
+                value = (int) message.getOptionValueAsLong(i);
+                break;
+            }
+        }
+        final int szx = BlockOption.szx(value);
+        if (szx > BlockOption.MAX_SZX) {
+            return INCOMPLETE;
+        }
+        final long position = (long) BlockOption.num(value) * BlockOption.size(szx);
+        final byte[] payload = message.getPayload() == null ? new byte[0] : message.getPayload();
+        final Key key = key(peer, message);
+        for (final long now = currentTimeMillis(); ; ) {
+            final List<Transfer> purged;
+            Transfer transfer;
+            synchronized (transfers) {
+                purged = purge(now);
+                transfer = transfers.get(key);
+                if (transfer == null && position == 0L) {
+                    transfer = new Transfer(new BlockBuffer(memoryThreshold, maxSize, directory));
+                    transfers.put(key, transfer);
+                }
+                if (transfer != null) {
+                    transfer.touched = now;
+                }
+            }
+            close(purged);
+            if (transfer == null) {
+                return INCOMPLETE;
+            }
+            synchronized (transfer) {
+                if (position == 0L && (transfer.removed || transfer.completed || transfer.lastBlockPosition > 0L)) {
+                    discard(key, transfer); // a new body
+                    continue;
+                }
+                if (transfer.removed) {
+                    return INCOMPLETE;
+                }
+                if (position == transfer.lastBlockPosition) { // repeated
+                    return transfer.completed ? COMPLETED : ACCEPTED;
+                }
+                if (transfer.completed || position != transfer.buffer.size()) {
+                    discard(key, transfer);
+                    return INCOMPLETE;
+                }
+                if (!transfer.buffer.write(ByteBuffer.wrap(payload))) {
+                    discard(key, transfer);
+                    return TOO_LARGE;
+                }
+                transfer.lastBlockPosition = position;
+                transfer.completed = !BlockOption.more(value);
+                return transfer.completed ? COMPLETED : ACCEPTED;
+            }
+        }
+    }
+
+    /**
+     * Removes specified transfer, if still mapped, and closes its buffer. Invoked while holding the lock of the
+     * transfer.
+     */
+    private void discard(final Key key, final Transfer transfer) {
+        if (!transfer.removed) {
+            transfer.removed = true;
+            close(transfer.buffer);
+        }
+        synchronized (transfers) {
+            if (transfers.get(key) == transfer) {
+                transfers.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the transfer of specified message and returns its buffer. The caller is responsible for closing the
+     * buffer.
+     *
+     * @param peer    the address of the peer.
+     * @param message a message of the transfer.
+     * @return the buffer of the transfer; {@code null} if no transfer is found.
+     */
+    public BlockBuffer remove(final SocketAddress peer, final Message message) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        final Transfer transfer;
+        synchronized (transfers) {
+            transfer = transfers.remove(key(peer, message));
+        }
+        if (transfer == null) {
+            return null;
+        }
+        synchronized (transfer) { // waits for a block being written
+            if (transfer.removed) {
+                return null;
+            }
+            transfer.removed = true;
+        }
+        return transfer.buffer;
+    }
+
+    /**
+     * Discards transfers idle for the timeout.
+     *
+     * @return the number of transfers discarded.
+     */
+    public int purge() {
+        final List<Transfer> purged;
+        synchronized (transfers) {
+            purged = purge(currentTimeMillis());
+        }
+        close(purged);
+        return purged.size();
+    }
+
+    /**
+     * Removes transfers idle for the timeout. Invoked while holding the lock of the map.
+     *
+     * @return a list of removed transfers to be closed outside the lock.
+     */
+    private List<Transfer> purge(final long now) {
+        List<Transfer> purged = Collections.emptyList();
+        for (final Iterator<Transfer> i = transfers.values().iterator(); i.hasNext(); ) {
+            final Transfer transfer = i.next();
+            if (now - transfer.touched < timeout) {
+                break; // in access-order
+            }
+            i.remove();
+            if (purged.isEmpty()) {
+                purged = new ArrayList<Transfer>();
+            }
+            purged.add(transfer);
+        }
+        return purged;
+    }
+
+    private static void close(final List<Transfer> transfers) {
+        for (final Transfer transfer : transfers) {
+            synchronized (transfer) {
+                if (!transfer.removed) {
+                    transfer.removed = true;
+                    close(transfer.buffer);
+                }
+            }
+        }
+    }
+
+    private static void close(final BlockBuffer buffer) {
+        try {
+            buffer.close();
+        } catch (final IOException ioe) {
+            // ignored
+        }
+    }
+
+    /**
+     * Discards all transfers.
+     */
+    @Override
+    public void close() {
+        final List<Transfer> closed;
+        synchronized (transfers) {
+            closed = new ArrayList<Transfer>(transfers.values());
+            transfers.clear();
+        }
+        close(closed);
+    }
+
+    /**
+     * Returns the number of transfers.
+     *
+     * @return the number of transfers.
+     */
+    public int size() {
+        synchronized (transfers) {
+            return transfers.size();
+        }
+    }
+
+    /**
+     * Returns current time in milliseconds. The value is used only for measuring elapsed times.
+     *
+     * @return current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final int memoryThreshold;
+
+    private final long maxSize;
+
+    private final long timeout;
+
+    private final File directory;
+
+    private final Map<Key, Transfer> transfers = new LinkedHashMap<Key, Transfer>(16, .75f, true); // access-order
+}
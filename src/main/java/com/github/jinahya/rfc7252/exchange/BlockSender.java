@@ -0,0 +1,196 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A source of blocks of a body read from a channel, so that a large body is sent with {@code Block1} or {@code Block2}
+ * options without being held in memory as a whole.
+ * <p>
+ * Blocks of a {@link FileChannel} are read at their positions, so any block can be read at any time. Blocks of other
+ * channels are read in sequence, and only the next block and the last read one, for retransmissions, are available.
+ * Channels other than file channels are expected to be in blocking mode.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7959">RFC 7959</a>
+ */
+public class BlockSender implements Closeable {
+
+    /**
+     * Creates a new instance.
+     *
+     * @param channel the channel of the body.
+     * @param szx     the size exponent of blocks.
+     */
+    public BlockSender(final ReadableByteChannel channel, final int szx) {
+        super();
+        if (channel == null) {
+            throw new NullPointerException("channel is null");
+        }
+        this.channel = channel;
+        this.szx = szx;
+        size = BlockOption.size(szx);
+        if (channel instanceof FileChannel) {
+            last = null;
+        } else {
+            last = new byte[size];
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads a block of specified number into specified buffer.
+     *
+     * @param num the block number.
+     * @param dst the buffer into which the block is read; must have at least {@link #getBlockSize()} bytes remaining.
+     * @return the value of the block option for the block; {@code -1} if the block is not available.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int read(final int num, final ByteBuffer dst) throws IOException {
+        if (num < 0) {
+            throw new IllegalArgumentException("num(" + num + ") < 0");
+        }
+        if (dst.remaining() < size) {
+            throw new IllegalArgumentException("dst.remaining(" + dst.remaining() + ") < " + size);
+        }
+        if (num > BlockOption.MAX_NUM) {
+            return -1;
+        }
+        if (channel instanceof FileChannel) {
+            final FileChannel file = (FileChannel) channel;
+            final long length = file.size();
+            final long position = (long) num * size;
+            if (position >= length && num > 0) {
+                return -1;
+            }
+            final int limit = dst.limit();
+            dst.limit(dst.position() + (int) Math.min(size, length - position));
+            try {
+                for (long p = position; dst.hasRemaining(); ) {
+                    final int read = file.read(dst, p);
+                    if (read == -1) {
+                        break;
+                    }
+                    p += read;
+                }
+            } finally {
+                dst.limit(limit);
+            }
+            return BlockOption.value(num, position + size < length, szx);
+        }
+        if (num == lastNum + 1 && (lastNum == -1 || lastMore)) {
+            fill();
+            lastNum = num;
+        } else if (num != lastNum) {
+            return -1;
+        }
+        dst.put(last, 0, lastLength);
+        return BlockOption.value(num, lastMore, szx);
+    }
+
+    private void fill() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(last);
+        if (peek != -1) {
+            buffer.put((byte) peek);
+            peek = -1;
+        }
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // empty
+        }
+        lastLength = buffer.position();
+        lastMore = false;
+        if (lastLength == size) {
+            final ByteBuffer one = ByteBuffer.allocate(1);
+            while (one.hasRemaining() && channel.read(one) != -1) {
+                // empty
+            }
+            if (!one.hasRemaining()) {
+                peek = one.get(0) & 0xFF;
+                lastMore = true;
+            }
+        }
+    }
+
+    /**
+     * Sets a block of specified number as the payload of specified message and adds a block option for the block.
+     *
+     * @param message the message.
+     * @param number  the option number; {@link com.github.jinahya.rfc7252.message.Option#NUMBER_BLOCK1} or {@link
+     *                com.github.jinahya.rfc7252.message.Option#NUMBER_BLOCK2}.
+     * @param num     the block number.
+     * @return the value of the block option added; {@code -1} if the block is not available.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int block(final Message message, final int number, final int num) throws IOException {
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        final int value = read(num, buffer);
+        if (value == -1) {
+            return -1;
+        }
+        final byte[] payload = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, payload, 0, payload.length);
+        message.setPayload(payload);
+        message.addOption(number, value);
+        return value;
+    }
+
+    /**
+     * Closes the channel.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the size of the body, if known, for {@code Size1} or {@code Size2} options.
+     *
+     * @return the size of the body; {@code -1} if unknown.
+     * @throws IOException if an I/O error occurs.
+     */
+    public long getBodySize() throws IOException {
+        if (channel instanceof FileChannel) {
+            return ((FileChannel) channel).size();
+        }
+        return -1L;
+    }
+
+    /**
+     * Returns the size of blocks.
+     *
+     * @return the size of blocks.
+     */
+    public int getBlockSize() {
+        return size;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final ReadableByteChannel channel;
+
+    private final int szx;
+
+    private final int size;
+
+    private final byte[] last; // null for file channels
+
+    private int lastLength;
+
+    private int lastNum = -1;
+
+    private boolean lastMore;
+
+    private int peek = -1;
+}
@@ -0,0 +1,297 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+
+/**
+ * A cache of message IDs recently received from peers, along with the encoded responses to them, for detecting and
+ * answering duplicate messages.
+ * <p>
+ * Entries are kept in a ring of time buckets, each of which is a primitive open-addressing table keyed by the address
+ * bits, the port and the message ID packed into {@code long}s, so that no address object is retained. An entry is
+ * retained for at least the lifetime given to the constructor and expires with its whole bucket when the ring rotates
+ * over it, so eviction never visits individual entries. Peers must be resolved {@link InetSocketAddress}es, as are
+ * those received from datagram channels.
+ * <p>
+ * Instances of this class are not thread-safe; an instance is supposed to be confined to a single loop thread.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.5">4.5. Message Deduplication (RFC 7252)</a>
+ */
+public class Deduplicator {
+
+    /**
+     * The default number of time buckets. The value is {@value}.
+     */
+    public static final int DEFAULT_BUCKETS = 8;
+
+    /**
+     * The value returned by {@link #seen(SocketAddress, int)} for a message to which no response is yet recorded.
+     */
+    public static final byte[] NO_RESPONSE = new byte[0];
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * A primitive open-addressing table with linear probing. Each entry is keyed by a {@code long} of a used bit, the
+     * address family, the port and the message ID, and two {@code long}s of the address bits.
+     */
+    private static final class Table {
+
+        private Table(final int capacity) {
+            super();
+            keys = new long[capacity];
+            highs = new long[capacity];
+            lows = new long[capacity];
+            responses = new byte[capacity][];
+        }
+
+        private int index(final long key, final long high, final long low) {
+            final int mask = keys.length - 1;
+            for (int i = hash(key, high, low) & mask; keys[i] != 0L; i = (i + 1) & mask) {
+                if (keys[i] == key && lows[i] == low && highs[i] == high) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void put(final long key, final long high, final long low, final byte[] response) {
+            if ((size + 1) << 1 > keys.length) {
+                grow();
+            }
+            final int mask = keys.length - 1;
+            int i = hash(key, high, low) & mask;
+            while (keys[i] != 0L) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            highs[i] = high;
+            lows[i] = low;
+            responses[i] = response;
+            size++;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final long[] oldHighs = highs;
+            final long[] oldLows = lows;
+            final byte[][] oldResponses = responses;
+            keys = new long[oldKeys.length << 1];
+            highs = new long[oldKeys.length << 1];
+            lows = new long[oldKeys.length << 1];
+            responses = new byte[oldKeys.length << 1][];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0L) {
+                    put(oldKeys[i], oldHighs[i], oldLows[i], oldResponses[i]);
+                }
+            }
+        }
+
+        private void clear() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.fill(keys, 0L);
+            Arrays.fill(responses, null);
+            size = 0;
+        }
+
+        private long[] keys; // 0L for empty slots
+
+        private long[] highs;
+
+        private long[] lows;
+
+        private byte[][] responses;
+
+        private int size;
+    }
+
+    private static final long USED = 1L << 63;
+
+    private static final long INET6 = 1L << 32;
+
+    private static InetAddress address(final SocketAddress peer) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        final InetAddress address
+                = peer instanceof InetSocketAddress ? ((InetSocketAddress) peer).getAddress() : null;
+        if (address == null) {
+            throw new IllegalArgumentException("peer(" + peer + ") is not a resolved socket address");
+        }
+        return address;
+    }
+
+    private static long bits(final byte[] bytes, final int offset) {
+        long bits = 0L;
+        for (int i = offset; i < offset + 8; i++) {
+            bits = (bits << 8) | (bytes[i] & 0xFFL);
+        }
+        return bits;
+    }
+
+    private static int hash(final long key, final long high, final long low) {
+        return mix(key ^ Long.rotateLeft(low, 32) ^ high * 0x9E3779B97F4A7C15L);
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance which retains entries for {@link TransmissionParameters#EXCHANGE_LIFETIME}.
+     */
+    public Deduplicator() {
+        this(TransmissionParameters.EXCHANGE_LIFETIME, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Creates a new instance with specified lifetime and number of buckets.
+     *
+     * @param lifetime the minimum time, in milliseconds, for which entries are retained.
+     * @param buckets  the number of time buckets; entries are retained for less than {@code lifetime * buckets /
+     *                 (buckets - 1)} milliseconds.
+     */
+    public Deduplicator(final long lifetime, final int buckets) {
+        super();
+        if (lifetime <= 0L) {
+            throw new IllegalArgumentException("lifetime(" + lifetime + ") <= 0");
+        }
+        if (buckets < 2) {
+            throw new IllegalArgumentException("buckets(" + buckets + ") < 2");
+        }
+        tables = new Table[buckets];
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = new Table(INITIAL_CAPACITY);
+        }
+        width = (lifetime + buckets - 2) / (buckets - 1);
+        start = currentTimeMillis();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether a message of specified message ID has been received from specified peer. A new entry is added if
+     * not.
+     *
+     * @param peer      the address of the peer.
+     * @param messageId the message ID of the message.
+     * @return {@code null} if not seen; the encoded response recorded for the message, or {@link #NO_RESPONSE} if none
+     * is yet recorded, if seen.
+     * @throws IllegalArgumentException if {@code peer} is not a resolved {@link InetSocketAddress}.
+     */
+    public byte[] seen(final SocketAddress peer, final int messageId) {
+        return record(peer, messageId, NO_RESPONSE, false);
+    }
+
+    /**
+     * Records specified encoded response to the message of specified message ID from specified peer.
+     *
+     * @param peer      the address of the peer.
+     * @param messageId the message ID of the message responded.
+     * @param response  the encoded response.
+     */
+    public void respond(final SocketAddress peer, final int messageId, final byte[] response) {
+        if (response == null) {
+            throw new NullPointerException("response is null");
+        }
+        record(peer, messageId, response, true);
+    }
+
+    /**
+     * Finds the entry of specified peer and message ID and, if {@code replace} is {@code true}, replaces its response;
+     * adds a new entry with specified response if not found.
+     *
+     * @return the response of the entry found; {@code null} if not found.
+     */
+    private byte[] record(final SocketAddress peer, final int messageId, final byte[] response,
+                          final boolean replace) {
+        final InetAddress address = address(peer);
+        long key = USED | ((long) ((InetSocketAddress) peer).getPort() << 16) | (messageId & 0xFFFFL);
+        final long high;
+        final long low;
+        if (address instanceof Inet4Address) {
+            high = 0L;
+            low = address.hashCode() & 0xFFFFFFFFL; // the address bits
+        } else {
+            final byte[] bytes = address.getAddress();
+            key |= INET6;
+            high = bits(bytes, 0);
+            low = bits(bytes, 8);
+        }
+        rotate();
+        for (int i = 0, j = current; i < tables.length; i++, j = (j == 0 ? tables.length : j) - 1) {
+            final Table table = tables[j];
+            if (table.size == 0) {
+                continue;
+            }
+            final int index = table.index(key, high, low);
+            if (index >= 0) {
+                final byte[] recorded = table.responses[index];
+                if (replace) {
+                    table.responses[index] = response;
+                }
+                return recorded;
+            }
+        }
+        tables[current].put(key, high, low, response);
+        return null;
+    }
+
+    /**
+     * Returns the number of entries which are not expired yet.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        rotate();
+        int size = 0;
+        for (final Table table : tables) {
+            size += table.size;
+        }
+        return size;
+    }
+
+    private void rotate() {
+        final long elapsed = currentTimeMillis() - start;
+        if (elapsed < width) {
+            return;
+        }
+        final long steps = elapsed / width;
+        for (long i = Math.min(steps, tables.length); i > 0L; i--) {
+            current = (current + 1) % tables.length;
+            tables[current].clear();
+        }
+        start += steps * width;
+    }
+
+    /**
+     * Returns current time in milliseconds. This method is invoked by each operation and the value is used only for
+     * measuring elapsed times.
+     *
+     * @return current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Table[] tables;
+
+    private final long width;
+
+    private int current;
+
+    private long start;
+}
@@ -0,0 +1,204 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A generator of message IDs for each peer which does not reuse an ID for a peer within a lifetime.
+ * <p>
+ * Each peer has its own counter, starting at a random value, and the time each block of {@value #BLOCK_SIZE} IDs was
+ * last used. Entering a block whose time is within the lifetime means that the IDs of the block may still be in use, in
+ * which case no ID is generated until the lifetime elapses. Peers are held in striped maps so that threads generating
+ * IDs for different peers rarely contend, and counters are advanced with compare-and-set. Peers idle for the lifetime
+ * are eventually forgotten.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.4">4.4. Message Correlation (RFC 7252)</a>
+ */
+public class MessageIdGenerator {
+
+    /**
+     * The number of IDs of each block. The value is {@value}.
+     */
+    public static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The default number of stripes. The value is {@value}.
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    private static final int BLOCKS = (Message.MAX_MESSAGE_ID + 1) / BLOCK_SIZE;
+
+    private static final int MIN_PURGE_THRESHOLD = 16;
+
+    private static final class Peer {
+
+        private Peer(final int initial, final long now) {
+            super();
+            counter = new AtomicInteger(initial);
+            lastUsed = now;
+        }
+
+        private final AtomicInteger counter;
+
+        private final AtomicLongArray blocks = new AtomicLongArray(BLOCKS); // 0 for never; otherwise time + 1
+
+        private volatile long lastUsed;
+    }
+
+    private static final class Stripe {
+
+        private final Map<SocketAddress, Peer> peers = new HashMap<SocketAddress, Peer>();
+
+        private int purgeThreshold = MIN_PURGE_THRESHOLD;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance which does not reuse IDs within {@link TransmissionParameters#EXCHANGE_LIFETIME}.
+     */
+    public MessageIdGenerator() {
+        this(TransmissionParameters.EXCHANGE_LIFETIME, DEFAULT_STRIPES, new Random());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lifetime the time, in milliseconds, within which an ID is not reused for a peer.
+     * @param stripes  the number of stripes; must be a power of two.
+     * @param random   the random for initial IDs.
+     */
+    public MessageIdGenerator(final long lifetime, final int stripes, final Random random) {
+        super();
+        if (lifetime <= 0L) {
+            throw new IllegalArgumentException("lifetime(" + lifetime + ") <= 0");
+        }
+        if (stripes <= 0 || (stripes & (stripes - 1)) != 0) {
+            throw new IllegalArgumentException("stripes(" + stripes + ") is not a positive power of two");
+        }
+        if (random == null) {
+            throw new NullPointerException("random is null");
+        }
+        this.lifetime = lifetime;
+        this.random = random;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        origin = currentTimeMillis();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Generates a new message ID for specified peer.
+     *
+     * @param peer the address of the peer.
+     * @return a new message ID between {@link Message#MIN_MESSAGE_ID} and {@link Message#MAX_MESSAGE_ID}; {@code -1} if
+     * all IDs for the peer have been used within the lifetime.
+     */
+    public int next(final SocketAddress peer) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        final long now = elapsed();
+        final Peer state = peer(peer, now);
+        for (int current; ; ) {
+            current = state.counter.get();
+            final int next = (current + 1) & Message.MAX_MESSAGE_ID;
+            if ((next & (BLOCK_SIZE - 1)) == 0) { // entering a new block
+                final int block = next / BLOCK_SIZE;
+                final long used = state.blocks.get(block);
+                if (used != 0L && now - (used - 1L) < lifetime) {
+                    return -1;
+                }
+                if (!state.counter.compareAndSet(current, next)) {
+                    continue;
+                }
+                state.blocks.set(current / BLOCK_SIZE, now + 1L); // the last use of the previous block
+                return next;
+            }
+            if (state.counter.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private Peer peer(final SocketAddress address, final long now) {
+        int h = address.hashCode();
+        h ^= (h >>> 16);
+        final Stripe stripe = stripes[h & (stripes.length - 1)];
+        synchronized (stripe) {
+            Peer peer = stripe.peers.get(address);
+            if (peer == null) {
+                if (stripe.peers.size() >= stripe.purgeThreshold) {
+                    purge(stripe, now);
+                }
+                final int initial;
+                synchronized (random) {
+                    initial = random.nextInt(Message.MAX_MESSAGE_ID + 1);
+                }
+                peer = new Peer(initial, now);
+                // the block of the initial ID is in use from now on
+                peer.blocks.set(initial / BLOCK_SIZE, now + 1L);
+                stripe.peers.put(address, peer);
+            }
+            peer.lastUsed = now; // under the lock so that a concurrent purge keeps this peer
+            return peer;
+        }
+    }
+
+    private void purge(final Stripe stripe, final long now) {
+        for (final Iterator<Peer> i = stripe.peers.values().iterator(); i.hasNext(); ) {
+            if (now - i.next().lastUsed >= lifetime) {
+                i.remove();
+            }
+        }
+        stripe.purgeThreshold = Math.max(MIN_PURGE_THRESHOLD, stripe.peers.size() << 1);
+    }
+
+    /**
+     * Returns the number of peers currently tracked.
+     *
+     * @return the number of peers.
+     */
+    public int size() {
+        int size = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.peers.size();
+            }
+        }
+        return size;
+    }
+
+    private long elapsed() {
+        return currentTimeMillis() - origin;
+    }
+
+    /**
+     * Returns current time in milliseconds. The value is used only for measuring elapsed times.
+     *
+     * @return current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final long lifetime; // in milliseconds
+
+    private final Random random;
+
+    private final Stripe[] stripes;
+
+    private final long origin;
+}
@@ -0,0 +1,26 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * An interface for sending notifications of an {@link ObserveNotifier}.
+ * <p>
+ * Confirmable notifications need to be retransmitted until acknowledged; with a {@code CoapEndpoint}, an implementation
+ * sends them with {@code CoapEndpoint#sendScheduled(ByteBuffer, SocketAddress)} which schedules them to the endpoint's
+ * {@link RetransmissionScheduler}, and whose retransmissions are cancelled when acknowledged or reset.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public interface NotificationSender {
+
+    /**
+     * Sends specified encoded notification to specified observer.
+     *
+     * @param observer  the address of the observer.
+     * @param messageId the message ID of the notification.
+     * @param encoded   a buffer of the encoded notification whose remaining bytes are to be sent; valid only until this
+     *                  method returns.
+     */
+    void send(SocketAddress observer, int messageId, ByteBuffer encoded);
+}
@@ -0,0 +1,187 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.MessageTemplate;
+import com.github.jinahya.rfc7252.message.Option;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A notifier of the observers of a resource.
+ * <p>
+ * Each notification is encoded once, as a {@link MessageTemplate} with a fixed-length {@code Observe} option, and each
+ * observer is sent a copy patched with its message ID, token and the sequence number. The bytes following the token
+ * are copied only when the length of the token differs from the previous observer's one.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7641">RFC 7641</a>
+ */
+public class ObserveNotifier {
+
+    /**
+     * The maximum value of sequence numbers. The value is {@value}.
+     */
+    public static final int MAX_SEQUENCE = (1 << 24) - 1;
+
+    /**
+     * The length of {@code Observe} values of notifications which can hold any sequence number.
+     */
+    private static final int OBSERVE_LENGTH = 3;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with a new message ID generator.
+     */
+    public ObserveNotifier() {
+        this(new MessageIdGenerator());
+    }
+
+    /**
+     * Creates a new instance. The generator should be the one shared by everything sending through the same endpoint,
+     * e.g. {@code RequestDispatcher#getMessageIdGenerator()}, so that no message ID is used twice for a peer.
+     *
+     * @param messageIds the generator of message IDs of notifications.
+     */
+    public ObserveNotifier(final MessageIdGenerator messageIds) {
+        super();
+        if (messageIds == null) {
+            throw new NullPointerException("messageIds is null");
+        }
+        this.messageIds = messageIds;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Registers specified observer. The token of an already registered observer is replaced.
+     *
+     * @param observer the address of the observer.
+     * @param token    the token of the observation.
+     * @return {@code true} if newly registered; {@code false} if the token is replaced.
+     */
+    public boolean register(final SocketAddress observer, final byte[] token) {
+        if (observer == null) {
+            throw new NullPointerException("observer is null");
+        }
+        if (token == null) {
+            throw new NullPointerException("token is null");
+        }
+        if (token.length > Message.MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("token.length(" + token.length + ") > " + Message.MAX_TOKEN_LENGTH);
+        }
+        final byte[] copy = new byte[token.length];
+        System.arraycopy(token, 0, copy, 0, copy.length);
+        return observers.put(observer, copy) == null;
+    }
+
+    /**
+     * Deregisters specified observer.
+     *
+     * @param observer the address of the observer.
+     * @return {@code true} if deregistered; {@code false} if not registered.
+     */
+    public boolean deregister(final SocketAddress observer) {
+        if (observer == null) {
+            throw new NullPointerException("observer is null");
+        }
+        return observers.remove(observer) != null;
+    }
+
+    /**
+     * Sends specified notification to all observers. The type, the message ID, the token and any {@code Observe}
+     * option of the notification are ignored. Observers for which no message ID is available are skipped.
+     *
+     * @param notification the notification.
+     * @param type         the type of notifications; {@link Message#TYPE_CONFIRMABLE} or {@link
+     *                     Message#TYPE_NON_CONFIRMABLE}.
+     * @param sender       the sender of notifications.
+     * @return the number of observers notified.
+     */
+    public int notifyObservers(final Message notification, final int type, final NotificationSender sender) {
+        if (notification == null) {
+            throw new NullPointerException("notification is null");
+        }
+        if (type != Message.TYPE_CONFIRMABLE && type != Message.TYPE_NON_CONFIRMABLE) {
+            throw new IllegalArgumentException("type(" + type + ") is neither CON nor NON");
+        }
+        if (sender == null) {
+            throw new NullPointerException("sender is null");
+        }
+        final Message message = new Message().code(notification.getCode());
+        message.setType(type);
+        for (int i = 0; i < notification.getOptionCount(); i++) {
+            final int number = notification.getOptionNumber(i);
+            if (number != Option.NUMBER_OBSERVE) {
+                message.addOption(number, notification.getOptionValue(i));
+            }
+        }
+        message.addOption(Option.NUMBER_OBSERVE, new byte[OBSERVE_LENGTH]);
+        message.setPayload(notification.getPayload());
+        final MessageTemplate template = new MessageTemplate(message);
+        final int observeOffset = template.getOptionValueOffset(Option.NUMBER_OBSERVE);
+        synchronized (this) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            final byte[] patched = new byte[template.encodedSize(Message.MAX_TOKEN_LENGTH)];
+            final ByteBuffer buffer = ByteBuffer.wrap(patched);
+            int tokenLength = -1;
+            int notified = 0;
+            for (final Map.Entry<SocketAddress, byte[]> entry : observers.entrySet()) {
+                final SocketAddress observer = entry.getKey();
+                final int messageId = messageIds.next(observer);
+                if (messageId == -1) {
+                    continue;
+                }
+                final byte[] token = entry.getValue();
+                if (token.length != tokenLength) {
+                    tokenLength = token.length;
+                    template.write(messageId, token, patched, 0);
+                    final int offset = observeOffset + tokenLength;
+                    patched[offset] = (byte) (sequence >> 16);
+                    patched[offset + 1] = (byte) (sequence >> 8);
+                    patched[offset + 2] = (byte) sequence;
+                } else {
+                    patched[2] = (byte) (messageId >> 8);
+                    patched[3] = (byte) messageId;
+                    System.arraycopy(token, 0, patched, 4, tokenLength);
+                }
+                buffer.limit(template.encodedSize(tokenLength));
+                buffer.position(0);
+                sender.send(observer, messageId, buffer);
+                notified++;
+            }
+            return notified;
+        }
+    }
+
+    /**
+     * Returns the number of observers.
+     *
+     * @return the number of observers.
+     */
+    public int size() {
+        return observers.size();
+    }
+
+    /**
+     * Returns the sequence number of the last notification, for the {@code Observe} option of responses to
+     * registrations.
+     *
+     * @return the sequence number of the last notification.
+     */
+    public synchronized int getSequence() {
+        return sequence;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final MessageIdGenerator messageIds;
+
+    private final Map<SocketAddress, byte[]> observers = new ConcurrentHashMap<SocketAddress, byte[]>();
+
+    private int sequence;
+}
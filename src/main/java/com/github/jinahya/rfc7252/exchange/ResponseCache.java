@@ -0,0 +1,327 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.MessageView;
+import com.github.jinahya.rfc7252.message.Option;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of encoded responses keyed by the cache-keys of their requests.
+ * <p>
+ * A response is stored, encoded once with an empty token and a fixed-length {@code Max-Age} option, and served by
+ * patching the type, the message ID, the token and the remaining {@code Max-Age} into a copy. A request whose {@code
+ * ETag} matches the one of the stored response is served with a {@code 2.03 Valid} response. Stored responses expire
+ * after their {@code Max-Age}, and the least recently used ones are evicted whenever the total size of stored
+ * responses exceeds the maximum size.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.6">5.6. Caching (RFC 7252)</a>
+ * @see Message#getCacheKey()
+ */
+public class ResponseCache {
+
+    /**
+     * The default value, in seconds, of {@code Max-Age}. The value is {@value}.
+     */
+    public static final long DEFAULT_MAX_AGE = 60L;
+
+    /**
+     * The length of the {@code Max-Age} value of stored responses which can hold any value.
+     */
+    private static final int MAX_AGE_LENGTH = 4;
+
+    /**
+     * The approximate number of bytes an entry takes in addition to its arrays.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final class Key {
+
+        private Key(final Message request) {
+            super();
+            bytes = request.getCacheKey();
+            final long h = request.getCacheKeyHash();
+            hash = (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && ((Key) obj).hash == hash && Arrays.equals(((Key) obj).bytes, bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private final byte[] bytes;
+
+        private final int hash;
+    }
+
+    private static final class Entry {
+
+        private Entry(final byte[] encoded, final int maxAgeOffset, final byte[] etag, final long expires,
+                      final int weight) {
+            super();
+            this.encoded = encoded;
+            this.maxAgeOffset = maxAgeOffset;
+            this.etag = etag;
+            this.expires = expires;
+            this.weight = weight;
+        }
+
+        private final byte[] encoded; // with an empty token
+
+        private final int maxAgeOffset;
+
+        private final byte[] etag;
+
+        private final long expires;
+
+        private final int weight;
+    }
+
+    /**
+     * Checks whether a response of specified code is cacheable.
+     *
+     * @param code the code of the response.
+     * @return {@code true} if cacheable; {@code false} otherwise.
+     */
+    public static boolean isCacheable(final int code) {
+        final int codeClass = code >> 5;
+        return code == Message.CODE_RESPONSE_CONTENT
+               || codeClass == Message.CODE_CLASS_CLIENT_ERROR_RESPONSE
+               || codeClass == Message.CODE_CLASS_SERVER_ERROR_RESPONSE;
+    }
+
+    /**
+     * Checks whether specified message has an {@code Observe} option. Neither an observe registration nor a response
+     * to it, whose sequence number is valid only once, is served from, or stored in, the cache.
+     *
+     * @param message the message to check.
+     * @return {@code true} if {@code message} has an {@code Observe} option; {@code false} otherwise.
+     */
+    public static boolean hasObserve(final Message message) {
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        for (int i = 0; i < message.getOptionCount(); i++) {
+            final int number = message.getOptionNumber(i);
+            if (number == Option.NUMBER_OBSERVE) {
+                return true;
+            }
+            if (number > Option.NUMBER_OBSERVE) {
+                break; // options are sorted
+            }
+        }
+        return false;
+    }
+
+    private static void putUint32(final long value, final byte[] dst, final int offset) {
+        dst[offset] = (byte) (value >> 24);
+        dst[offset + 1] = (byte) (value >> 16);
+        dst[offset + 2] = (byte) (value >> 8);
+        dst[offset + 3] = (byte) value;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with specified maximum size.
+     *
+     * @param maxSize the maximum number of bytes of all stored responses and their keys.
+     */
+    public ResponseCache(final long maxSize) {
+        super();
+        if (maxSize <= 0L) {
+            throw new IllegalArgumentException("maxSize(" + maxSize + ") <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Stores specified response to specified request if the response is cacheable. The type, the message ID and the
+     * token of the response are ignored.
+     *
+     * @param request  the request.
+     * @param response the response to the request.
+     * @return {@code true} if stored; {@code false} if not cacheable, has an {@code Observe} option, or too large.
+     * @see #isCacheable(int)
+     * @see #hasObserve(Message)
+     */
+    public boolean put(final Message request, final Message response) {
+        if (request == null) {
+            throw new NullPointerException("request is null");
+        }
+        if (response == null) {
+            throw new NullPointerException("response is null");
+        }
+        if (!isCacheable(response.getCode()) || hasObserve(response)) {
+            return false;
+        }
+        final Message stored = new Message().code(response.getCode());
+        long maxAge = DEFAULT_MAX_AGE;
+        byte[] etag = null;
+        for (int i = 0; i < response.getOptionCount(); i++) {
+            final int number = response.getOptionNumber(i);
+            if (number == Option.NUMBER_MAX_AGE) {
+                maxAge = response.getOptionValueAsLong(i);
+                continue;
+            }
+            final byte[] value = response.getOptionValue(i);
+            if (number == Option.NUMBER_ETAG && etag == null) {
+                etag = value;
+            }
+            stored.addOption(number, value);
+        }
+        if (maxAge == 0L) {
+            return false;
+        }
+        stored.addOption(Option.NUMBER_MAX_AGE, new byte[MAX_AGE_LENGTH]);
+        stored.setPayload(response.getPayload());
+        final byte[] encoded;
+        try {
+            encoded = stored.write();
+        } catch (final IOException ioe) {
+            throw new RuntimeException(ioe); // never happens
+        }
+        final MessageView view = new MessageView().wrap(encoded);
+        int maxAgeOffset = -1;
+        while (view.nextOption()) {
+            if (view.getOptionNumber() == Option.NUMBER_MAX_AGE) {
+                maxAgeOffset = view.getOptionValueOffset();
+                break;
+            }
+        }
+        final Key key = new Key(request);
+        final int weight = encoded.length + key.bytes.length + ENTRY_OVERHEAD;
+        if (weight > maxSize) {
+            return false;
+        }
+        final Entry entry = new Entry(encoded, maxAgeOffset, etag, currentTimeMillis() + maxAge * 1000L, weight);
+        synchronized (entries) {
+            final Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                size -= previous.weight;
+            }
+            size += weight;
+            for (final Iterator<Entry> i = entries.values().iterator(); size > maxSize && i.hasNext(); ) {
+                size -= i.next().weight;
+                i.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an encoded response to specified request from this cache. The response is a {@code 2.03 Valid} if the
+     * request has an {@code ETag} of the stored response.
+     *
+     * @param request   the request.
+     * @param type      the type of the response.
+     * @param messageId the message ID of the response.
+     * @return a new array of the encoded response; {@code null} if no fresh response is stored.
+     */
+    public byte[] get(final Message request, final int type, final int messageId) {
+        if (request == null) {
+            throw new NullPointerException("request is null");
+        }
+        final Key key = new Key(request);
+        final long now = currentTimeMillis();
+        final Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires <= now) {
+                entries.remove(key);
+                size -= entry.weight;
+                return null;
+            }
+        }
+        final long maxAge = (entry.expires - now) / 1000L;
+        final byte[] token = request.getToken() == null ? new byte[0] : request.getToken();
+        if (entry.etag != null) {
+            for (int i = 0; i < request.getOptionCount(); i++) {
+                if (request.getOptionNumber(i) == Option.NUMBER_ETAG
+                    && Arrays.equals(request.getOptionValue(i), entry.etag)) {
+                    return valid(type, messageId, token, entry.etag, maxAge);
+                }
+            }
+        }
+        final byte[] response = new byte[entry.encoded.length + token.length];
+        response[0] = (byte) ((Message.VERSION01 << 6) | (type << 4) | token.length);
+        response[1] = entry.encoded[1];
+        response[2] = (byte) (messageId >> 8);
+        response[3] = (byte) messageId;
+        System.arraycopy(token, 0, response, 4, token.length);
+        System.arraycopy(entry.encoded, 4, response, 4 + token.length, entry.encoded.length - 4);
+        putUint32(maxAge, response, entry.maxAgeOffset + token.length);
+        return response;
+    }
+
+    private static byte[] valid(final int type, final int messageId, final byte[] token, final byte[] etag,
+                                final long maxAge) {
+        final Message valid = new Message()
+                .code(Message.CODE_RESPONSE_VALID)
+                .messageId(messageId)
+                .token(token)
+                .option(Option.NUMBER_ETAG, etag)
+                .option(Option.NUMBER_MAX_AGE, maxAge);
+        valid.setType(type);
+        try {
+            return valid.write();
+        } catch (final IOException ioe) {
+            throw new RuntimeException(ioe); // never happens
+        }
+    }
+
+    /**
+     * Returns the number of stored responses, including expired ones not yet removed.
+     *
+     * @return the number of stored responses.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the total number of bytes of stored responses and their keys.
+     *
+     * @return the total number of bytes.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /**
+     * Returns current time in milliseconds. The value is used only for measuring elapsed times.
+     *
+     * @return current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final long maxSize;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, .75f, true); // access-order
+
+    private long size;
+}
@@ -0,0 +1,29 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * An interface for handling events of a {@link RetransmissionScheduler}.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public interface RetransmissionHandler {
+
+    /**
+     * Retransmits specified encoded message to specified peer.
+     *
+     * @param peer    the address of the peer.
+     * @param encoded a buffer of the encoded message whose remaining bytes are to be sent; valid only until this method
+     *                returns.
+     */
+    void retransmit(SocketAddress peer, ByteBuffer encoded);
+
+    /**
+     * Notifies that a confirmable message is neither acknowledged nor reset after all retransmissions.
+     *
+     * @param peer      the address of the peer.
+     * @param messageId the message ID of the message.
+     */
+    void timedOut(SocketAddress peer, int messageId);
+}
@@ -0,0 +1,348 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A scheduler of retransmissions of confirmable messages driven by a hashed timing wheel.
+ * <p>
+ * Each scheduled message is retransmitted, as its already encoded bytes, with an initial timeout randomized between
+ * {@link TransmissionParameters#ACK_TIMEOUT} and {@code ACK_TIMEOUT * ACK_RANDOM_FACTOR}, doubled for each
+ * retransmission, until it is {@link #cancel(SocketAddress, int) cancelled} on an acknowledgement or a reset or until
+ * it has been retransmitted {@link TransmissionParameters#MAX_RETRANSMIT} times.
+ * <p>
+ * Scheduled messages are linked in the buckets of the wheel and indexed by their peers and message IDs, so that both
+ * scheduling and cancelling take constant time. The wheel advances only when {@link #advance()} is invoked.
+ * <p>
+ * Instances of this class are not thread-safe; an instance is supposed to be confined to a single loop thread.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.2">4.2. Messages Transmitted Reliably (RFC 7252)</a>
+ */
+public class RetransmissionScheduler {
+
+    /**
+     * The default duration, in milliseconds, of a tick. The value is {@value}.
+     */
+    public static final long DEFAULT_TICK = 100L;
+
+    /**
+     * The default number of buckets of the wheel. The value is {@value}.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final class Entry {
+
+        private Entry(final SocketAddress peer, final int messageId, final long key, final byte[] encoded) {
+            super();
+            this.peer = peer;
+            this.messageId = messageId;
+            this.key = key;
+            this.encoded = ByteBuffer.wrap(encoded);
+        }
+
+        private final SocketAddress peer;
+
+        private final int messageId;
+
+        private final long key;
+
+        private final ByteBuffer encoded;
+
+        private int retransmissions;
+
+        private long timeout;
+
+        private long deadline; // in ticks
+
+        private Entry previous;
+
+        private Entry next;
+
+        private int bucket;
+    }
+
+    /**
+     * A primitive open-addressing index of entries with linear probing and backward-shift deletion.
+     */
+    private static final class Index {
+
+        private Index() {
+            super();
+            keys = new long[16];
+            entries = new Entry[16];
+        }
+
+        private Entry get(final long key, final SocketAddress peer) {
+            final int mask = keys.length - 1;
+            for (int i = mix(key) & mask; entries[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key && entries[i].peer.equals(peer)) {
+                    return entries[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(final Entry entry) {
+            if ((size + 1) << 1 > keys.length) {
+                final long[] oldKeys = keys;
+                final Entry[] oldEntries = entries;
+                keys = new long[oldKeys.length << 1];
+                entries = new Entry[oldKeys.length << 1];
+                size = 0;
+                for (final Entry old : oldEntries) {
+                    if (old != null) {
+                        put(old);
+                    }
+                }
+            }
+            final int mask = keys.length - 1;
+            int i = mix(entry.key) & mask;
+            while (entries[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = entry.key;
+            entries[i] = entry;
+            size++;
+        }
+
+        private void remove(final Entry entry) {
+            final int mask = keys.length - 1;
+            int i = mix(entry.key) & mask;
+            while (entries[i] != entry) {
+                i = (i + 1) & mask;
+            }
+            entries[i] = null;
+            size--;
+            for (int j = (i + 1) & mask; entries[j] != null; j = (j + 1) & mask) {
+                final int home = mix(keys[j]) & mask;
+                // move entries[j] to i if its home is not in (i, j]
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    entries[i] = entries[j];
+                    entries[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        private long[] keys;
+
+        private Entry[] entries; // null for empty slots
+
+        private int size;
+    }
+
+    private static long key(final SocketAddress peer, final int messageId) {
+        return ((long) peer.hashCode() << 16) | (messageId & 0xFFFFL);
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_TICK} and {@link #DEFAULT_WHEEL_SIZE}.
+     *
+     * @param handler the handler of retransmissions and timeouts.
+     */
+    public RetransmissionScheduler(final RetransmissionHandler handler) {
+        this(handler, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, new Random());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param handler   the handler of retransmissions and timeouts.
+     * @param tick      the duration, in milliseconds, of a tick.
+     * @param wheelSize the number of buckets of the wheel; must be a power of two.
+     * @param random    the random for randomizing initial timeouts.
+     */
+    public RetransmissionScheduler(final RetransmissionHandler handler, final long tick, final int wheelSize,
+                                   final Random random) {
+        super();
+        if (handler == null) {
+            throw new NullPointerException("handler is null");
+        }
+        if (tick <= 0L) {
+            throw new IllegalArgumentException("tick(" + tick + ") <= 0");
+        }
+        if (wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0) {
+            throw new IllegalArgumentException("wheelSize(" + wheelSize + ") is not a positive power of two");
+        }
+        if (random == null) {
+            throw new NullPointerException("random is null");
+        }
+        this.handler = handler;
+        this.tick = tick;
+        this.random = random;
+        buckets = new Entry[wheelSize];
+        mask = wheelSize - 1;
+        origin = currentTimeMillis();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Schedules retransmissions of specified confirmable message which has just been transmitted to specified peer.
+     *
+     * @param peer      the address of the peer.
+     * @param messageId the message ID of the message.
+     * @param encoded   the encoded message; must not be modified afterwards.
+     * @throws IllegalStateException if a message of the same message ID is already scheduled for the peer.
+     */
+    public void schedule(final SocketAddress peer, final int messageId, final byte[] encoded) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        if (encoded == null) {
+            throw new NullPointerException("encoded is null");
+        }
+        final long key = key(peer, messageId);
+        if (index.get(key, peer) != null) {
+            throw new IllegalStateException("already scheduled: " + peer + "/" + messageId);
+        }
+        final Entry entry = new Entry(peer, messageId & 0xFFFF, key, encoded);
+        final long minimum = TransmissionParameters.ACK_TIMEOUT;
+        final long maximum = (long) (TransmissionParameters.ACK_TIMEOUT * TransmissionParameters.ACK_RANDOM_FACTOR);
+        entry.timeout = minimum + (long) (random.nextDouble() * (maximum - minimum));
+        index.put(entry);
+        link(entry, ticks(currentTimeMillis()));
+    }
+
+    /**
+     * Cancels retransmissions of the message of specified message ID to specified peer. This method is supposed to be
+     * invoked on an acknowledgement or a reset.
+     *
+     * @param peer      the address of the peer.
+     * @param messageId the message ID of the message.
+     * @return {@code true} if cancelled; {@code false} if no such message is scheduled.
+     */
+    public boolean cancel(final SocketAddress peer, final int messageId) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        final Entry entry = index.get(key(peer, messageId), peer);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        index.remove(entry);
+        return true;
+    }
+
+    /**
+     * Advances the wheel to current time, retransmitting, or timing out, all messages whose timeouts have elapsed.
+     *
+     * @return the number of messages retransmitted or timed out.
+     */
+    public int advance() {
+        final long now = ticks(currentTimeMillis());
+        if (now <= current) {
+            return 0;
+        }
+        int count = 0;
+        for (long t = current + 1, steps = Math.min(now - current, buckets.length); steps > 0; t++, steps--) {
+            for (Entry entry = buckets[(int) (t & mask)], next; entry != null; entry = next) {
+                next = entry.next;
+                if (entry.deadline > now) {
+                    continue; // in a later round
+                }
+                unlink(entry);
+                count++;
+                if (entry.retransmissions < TransmissionParameters.MAX_RETRANSMIT) {
+                    entry.retransmissions++;
+                    entry.timeout <<= 1;
+                    link(entry, now);
+                    entry.encoded.rewind();
+                    handler.retransmit(entry.peer, entry.encoded);
+                } else {
+                    index.remove(entry);
+                    handler.timedOut(entry.peer, entry.messageId);
+                }
+            }
+        }
+        current = now;
+        return count;
+    }
+
+    /**
+     * Returns the number of scheduled messages.
+     *
+     * @return the number of scheduled messages.
+     */
+    public int size() {
+        return index.size;
+    }
+
+    /**
+     * Returns the duration of a tick.
+     *
+     * @return the duration, in milliseconds, of a tick.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private long ticks(final long millis) {
+        return (millis - origin) / tick;
+    }
+
+    private void link(final Entry entry, final long now) {
+        entry.deadline = Math.max(now, current) + Math.max(1L, (entry.timeout + tick - 1) / tick);
+        entry.bucket = (int) (entry.deadline & mask);
+        entry.previous = null;
+        entry.next = buckets[entry.bucket];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        buckets[entry.bucket] = entry;
+    }
+
+    private void unlink(final Entry entry) {
+        if (entry.previous == null) {
+            buckets[entry.bucket] = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * Returns current time in milliseconds. This method is invoked by each operation and the value is used only for
+     * measuring elapsed times.
+     *
+     * @return current time in milliseconds.
+     */
+    protected long currentTimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final RetransmissionHandler handler;
+
+    private final long tick;
+
+    private final Random random;
+
+    private final Entry[] buckets;
+
+    private final int mask;
+
+    private final long origin;
+
+    private final Index index = new Index();
+
+    private long current; // the last tick advanced to
+}
@@ -0,0 +1,329 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A registry of outstanding exchanges keyed by their tokens and peers, for matching responses to requests. Lookups
+ * and removals are lock-free while a registration may wait, yielding, for another thread to finish claiming or
+ * releasing a slot.
+ * <p>
+ * A token, which is at most {@value Message#MAX_TOKEN_LENGTH} bytes, is packed into a {@code long} and, along with its
+ * length, used as the key of a primitive open-addressing table so that no key object is created for registering or
+ * matching. Each slot is claimed and released with a compare-and-set on its state which carries a version to tell
+ * reused slots apart. Probing is bounded. A released slot becomes empty, along with released slots preceding it, when
+ * the slot following it is empty, so that misses stop at empty slots even after churn; otherwise it is marked deleted.
+ * A registration makes sure that no slot between the home of its key and the slot it claimed has become empty, and
+ * yields to a thread claiming or releasing a slot in between while doing so.
+ * <p>
+ * Keys, peers and exchanges are held in atomic arrays so that a lookup validating what it has read by re-reading the
+ * state of the slot is guaranteed to see the values of the same version.
+ * <p>
+ * The table does not grow; the capacity given to the constructor is the expected maximum number of outstanding
+ * exchanges. A token must not be registered again for the same peer while it is outstanding.
+ *
+ * @param <T> exchange type parameter
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class TokenMatcher<T> {
+
+    /**
+     * The maximum number of slots probed for each operation.
+     */
+    private static final int MAX_PROBES = 64;
+
+    // slot state: version(24) | length(4) | unused(2) | tag(2)
+    private static final int TAG_MASK = 0x03;
+
+    private static final int EMPTY = 0;
+
+    private static final int BUSY = 1;
+
+    private static final int FULL = 2;
+
+    private static final int DELETED = 3;
+
+    private static int tag(final int state) {
+        return state & TAG_MASK;
+    }
+
+    private static int length(final int state) {
+        return (state >> 4) & 0x0F;
+    }
+
+    private static int state(final int version, final int length, final int tag) {
+        return (version << 8) | (length << 4) | tag;
+    }
+
+    private static int version(final int state) {
+        return state >>> 8;
+    }
+
+    /**
+     * Packs specified token into a {@code long} in big-endian.
+     *
+     * @param src    the array of the token.
+     * @param offset the offset of the token.
+     * @param length the length of the token; between {@code 0} and {@value Message#MAX_TOKEN_LENGTH}.
+     * @return the packed token.
+     */
+    static long pack(final byte[] src, final int offset, final int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length(" + length + ") < 0");
+        }
+        if (length > Message.MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("length(" + length + ") > " + Message.MAX_TOKEN_LENGTH);
+        }
+        long packed = 0L;
+        for (int i = 0; i < length; i++) {
+            packed = (packed << 8) | (src[offset + i] & 0xFFL);
+        }
+        return packed;
+    }
+
+    private static int home(final long key, final int length, final SocketAddress peer) {
+        long h = key ^ ((long) length << 59) ^ ((long) peer.hashCode() * 0x9E3779B97F4A7C15L);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance for specified maximum number of outstanding exchanges.
+     *
+     * @param capacity the expected maximum number of outstanding exchanges.
+     */
+    public TokenMatcher(final int capacity) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity(" + capacity + ") <= 0");
+        }
+        if (capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity(" + capacity + ") > " + (1 << 29));
+        }
+        int slots = Integer.highestOneBit(capacity) << 2; // load factor <= 0.5
+        if (slots < MAX_PROBES) {
+            slots = MAX_PROBES;
+        }
+        states = new AtomicIntegerArray(slots);
+        keys = new AtomicLongArray(slots);
+        peers = new AtomicReferenceArray<SocketAddress>(slots);
+        exchanges = new AtomicReferenceArray<Object>(slots);
+        mask = slots - 1;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Registers specified exchange of specified token and peer.
+     *
+     * @param token    the token of the exchange.
+     * @param peer     the address of the peer.
+     * @param exchange the exchange to register.
+     * @return {@code true} if registered; {@code false} if no slot is available.
+     */
+    public boolean register(final byte[] token, final SocketAddress peer, final T exchange) {
+        if (token == null) {
+            throw new NullPointerException("token is null");
+        }
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        if (exchange == null) {
+            throw new NullPointerException("exchange is null");
+        }
+        final long key = pack(token, 0, token.length);
+        final int length = token.length;
+        final int home = home(key, length, peer) & mask;
+        for (int p = 0, i = home; p < MAX_PROBES; p++, i = (i + 1) & mask) {
+            final int state = states.get(i);
+            final int tag = tag(state);
+            if (tag != EMPTY && tag != DELETED) {
+                continue;
+            }
+            final int version = version(state) + 1;
+            if (!states.compareAndSet(i, state, state(version, length, BUSY))) {
+                continue;
+            }
+            keys.set(i, key);
+            peers.set(i, peer);
+            exchanges.set(i, exchange);
+            states.set(i, state(version, length, FULL)); // publishes above
+            size.incrementAndGet();
+            bridge(home, i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the exchange registered with specified token and peer.
+     *
+     * @param token the token.
+     * @param peer  the address of the peer.
+     * @return the exchange registered; {@code null} if none.
+     */
+    public T get(final byte[] token, final SocketAddress peer) {
+        if (token == null) {
+            throw new NullPointerException("token is null");
+        }
+        return match(token, 0, token.length, peer, false);
+    }
+
+    /**
+     * Removes and returns the exchange registered with specified token and peer. Among threads removing the same
+     * exchange, e.g. on a response and on a timeout, only one gets it.
+     *
+     * @param token the token.
+     * @param peer  the address of the peer.
+     * @return the exchange removed; {@code null} if none.
+     */
+    public T remove(final byte[] token, final SocketAddress peer) {
+        if (token == null) {
+            throw new NullPointerException("token is null");
+        }
+        return match(token, 0, token.length, peer, true);
+    }
+
+    /**
+     * Removes and returns the exchange registered with specified token and peer. This method is for matching a token
+     * in a received datagram without copying it.
+     *
+     * @param src    the array of the token.
+     * @param offset the offset of the token.
+     * @param length the length of the token.
+     * @param peer   the address of the peer.
+     * @return the exchange removed; {@code null} if none.
+     */
+    public T remove(final byte[] src, final int offset, final int length, final SocketAddress peer) {
+        if (src == null) {
+            throw new NullPointerException("src is null");
+        }
+        return match(src, offset, length, peer, true);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private T match(final byte[] src, final int offset, final int length, final SocketAddress peer,
+                    final boolean remove) {
+        if (peer == null) {
+            throw new NullPointerException("peer is null");
+        }
+        final long key = pack(src, offset, length);
+        for (int p = 0, i = home(key, length, peer) & mask; p < MAX_PROBES; p++, i = (i + 1) & mask) {
+            final int state = states.get(i);
+            final int tag = tag(state);
+            if (tag == EMPTY) {
+                return null;
+            }
+            if (tag != FULL || length(state) != length || keys.get(i) != key) {
+                continue;
+            }
+            final SocketAddress registered = peers.get(i);
+            final Object exchange = exchanges.get(i);
+            if (registered == null || !registered.equals(peer)) {
+                continue;
+            }
+            if (remove) {
+                if (!states.compareAndSet(i, state, state(version(state), length, BUSY))) {
+                    continue; // removed, or reused, by another thread
+                }
+                peers.set(i, null);
+                exchanges.set(i, null);
+                release(i, version(state));
+                size.decrementAndGet();
+            } else if (states.get(i) != state) {
+                continue; // changed while reading; all reads above are volatile and precede this one
+            }
+            return (T) exchange;
+        }
+        return null;
+    }
+
+    /**
+     * Releases specified slot which is busy being removed; makes it, and deleted slots preceding it, empty if the slot
+     * following it is empty, or marks it deleted otherwise.
+     */
+    private void release(final int index, final int version) {
+        if (tag(states.get((index + 1) & mask)) != EMPTY) {
+            states.set(index, state(version, 0, DELETED));
+            return;
+        }
+        states.set(index, state(version, 0, EMPTY));
+        for (int p = 1, i = index; p < MAX_PROBES; p++) {
+            final int previous = (i - 1) & mask;
+            final int state = states.get(previous);
+            if (tag(state) != DELETED || tag(states.get(i)) != EMPTY
+                || !states.compareAndSet(previous, state, state(version(state), 0, EMPTY))) {
+                break;
+            }
+            i = previous;
+        }
+    }
+
+    /**
+     * Makes sure, backwards, that no slot between specified home and specified claimed slot is empty so that lookups
+     * reach the claimed slot. An empty slot, made so by a concurrent removal, is marked deleted, and the version of a
+     * deleted slot is bumped so that a concurrent removal, which has seen the slot following it empty, fails to make
+     * it empty.
+     */
+    private void bridge(final int home, final int claimed) {
+        for (int i = claimed; i != home; ) {
+            final int previous = (i - 1) & mask;
+            final int state = states.get(previous);
+            final int tag = tag(state);
+            if (tag == BUSY) { // being claimed or released by another thread
+                Thread.yield();
+                continue;
+            }
+            if (tag != FULL && !states.compareAndSet(previous, state, state(version(state) + 1, 0, DELETED))) {
+                continue;
+            }
+            i = previous;
+        }
+    }
+
+    /**
+     * Returns the number of registered exchanges.
+     *
+     * @return the number of registered exchanges.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of slots marked deleted.
+     *
+     * @return the number of slots marked deleted.
+     */
+    int deleted() {
+        int deleted = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (tag(states.get(i)) == DELETED) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final AtomicIntegerArray states;
+
+    private final AtomicLongArray keys;
+
+    private final AtomicReferenceArray<SocketAddress> peers;
+
+    private final AtomicReferenceArray<Object> exchanges;
+
+    private final int mask;
+
+    private final AtomicInteger size = new AtomicInteger();
+}
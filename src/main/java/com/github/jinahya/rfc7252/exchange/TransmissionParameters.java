@@ -0,0 +1,75 @@
+package com.github.jinahya.rfc7252.exchange;
+
+/**
+ * Constants of message transmission parameters and their derived time values. All time values are in milliseconds.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.8">4.8. Transmission Parameters (RFC 7252)</a>
+ */
+public final class TransmissionParameters {
+
+    /**
+     * The initial timeout, in milliseconds, of a confirmable message. The value is {@value}.
+     */
+    public static final long ACK_TIMEOUT = 2000L;
+
+    /**
+     * The factor by which the initial timeout is randomized. The value is {@value}.
+     */
+    public static final double ACK_RANDOM_FACTOR = 1.5d;
+
+    /**
+     * The maximum number of retransmissions of a confirmable message. The value is {@value}.
+     */
+    public static final int MAX_RETRANSMIT = 4;
+
+    /**
+     * The maximum number of simultaneous outstanding interactions with a peer. The value is {@value}.
+     */
+    public static final int NSTART = 1;
+
+    /**
+     * The maximum time, in milliseconds, from the first transmission of a confirmable message to its last
+     * retransmission. The value is {@value}.
+     */
+    public static final long MAX_TRANSMIT_SPAN = 45000L;
+
+    /**
+     * The maximum time, in milliseconds, from the first transmission of a confirmable message to the time when the
+     * sender gives up on receiving an acknowledgement or reset. The value is {@value}.
+     */
+    public static final long MAX_TRANSMIT_WAIT = 93000L;
+
+    /**
+     * The maximum time, in milliseconds, a datagram is expected to take from the start of its transmission to the
+     * completion of its reception. The value is {@value}.
+     */
+    public static final long MAX_LATENCY = 100000L;
+
+    /**
+     * The time, in milliseconds, a node takes to turn around a confirmable message into an acknowledgement. The value is
+     * {@value}.
+     */
+    public static final long PROCESSING_DELAY = ACK_TIMEOUT;
+
+    /**
+     * The maximum round-trip time in milliseconds. The value is {@value}.
+     */
+    public static final long MAX_RTT = 2 * MAX_LATENCY + PROCESSING_DELAY;
+
+    /**
+     * The time, in milliseconds, from starting to send a confirmable message to the time when an acknowledgement is no
+     * longer expected, i.e. message-layer information about the message exchange can be purged. The value is {@value}.
+     */
+    public static final long EXCHANGE_LIFETIME = MAX_TRANSMIT_SPAN + 2 * MAX_LATENCY + PROCESSING_DELAY;
+
+    /**
+     * The time, in milliseconds, from sending a non-confirmable message to the time its message ID can be safely
+     * reused. The value is {@value}.
+     */
+    public static final long NON_LIFETIME = MAX_TRANSMIT_SPAN + MAX_LATENCY;
+
+    private TransmissionParameters() {
+        super();
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A 64-bit hash of cache-keys computed in a single pass over option values in place.
+ * <p>
+ * The hash is seeded with the code and then mixed with, for each option being part of the cache-key, a lane of the
+ * option's absolute number and length followed by the option's value in 8-byte little-endian lanes, the last one
+ * padded with zeros. Lanes are mixed with the rounds of XXH64 and the result is finished with its avalanche. Since
+ * absolute numbers are hashed instead of encoded deltas, skipping other options doesn't change the hash, and the same
+ * cache-key hashes the same from a {@link Message} and from its encoded bytes.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see OptionTable#isCacheKey(int)
+ */
+final class CacheKeyHash {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the initial state for specified code.
+     *
+     * @param code the code.
+     * @return the initial state.
+     */
+    static long start(final int code) {
+        return lane(PRIME5, code & 0xFFL);
+    }
+
+    /**
+     * Mixes specified option, whose value is in specified region of specified byte array, into specified state.
+     *
+     * @param state  the current state.
+     * @param number the option number.
+     * @param data   the byte array of the value.
+     * @param offset the offset of the value in {@code data}.
+     * @param length the length of the value.
+     * @return the new state.
+     */
+    static long option(long state, final int number, final byte[] data, final int offset, final int length) {
+        state = lane(state, ((long) number << 32) | length);
+        final int end = offset + length;
+        int index = offset;
+        for (; index + 8 <= end; index += 8) {
+            state = lane(state, (data[index] & 0xFFL)
+                                | (data[index + 1] & 0xFFL) << 8
+                                | (data[index + 2] & 0xFFL) << 16
+                                | (data[index + 3] & 0xFFL) << 24
+                                | (data[index + 4] & 0xFFL) << 32
+                                | (data[index + 5] & 0xFFL) << 40
+                                | (data[index + 6] & 0xFFL) << 48
+                                | (data[index + 7] & 0xFFL) << 56);
+        }
+        if (index < end) {
+            long last = 0L;
+            for (int shift = 0; index < end; shift += 8) {
+                last |= (data[index++] & 0xFFL) << shift;
+            }
+            state = lane(state, last);
+        }
+        return state;
+    }
+
+    /**
+     * Mixes specified option, whose value is in specified region of specified byte buffer, into specified state.
+     *
+     * @param state  the current state.
+     * @param number the option number.
+     * @param buffer the byte buffer of the value.
+     * @param offset the absolute index of the value in {@code buffer}.
+     * @param length the length of the value.
+     * @return the new state.
+     */
+    static long option(long state, final int number, final ByteBuffer buffer, final int offset, final int length) {
+        state = lane(state, ((long) number << 32) | length);
+        final int end = offset + length;
+        for (int index = offset; index < end; ) {
+            long value = 0L;
+            for (int shift = 0; shift < 64 && index < end; shift += 8) {
+                value |= (buffer.get(index++) & 0xFFL) << shift;
+            }
+            state = lane(state, value);
+        }
+        return state;
+    }
+
+    /**
+     * Finishes specified state.
+     *
+     * @param state the state.
+     * @return the hash.
+     */
+    static long finish(long state) {
+        state ^= state >>> 33;
+        state *= PRIME2;
+        state ^= state >>> 29;
+        state *= PRIME3;
+        state ^= state >>> 32;
+        return state;
+    }
+
+    private static long lane(final long state, final long value) {
+        long k = value * PRIME2;
+        k = Long.rotateLeft(k, 31);
+        k *= PRIME1;
+        return Long.rotateLeft(state ^ k, 27) * PRIME1 + PRIME4;
+    }
+
+    private CacheKeyHash() {
+        super();
+    }
+}
@@ -3,7 +3,6 @@ package com.github.jinahya.rfc7252.message;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
@@ -15,10 +14,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.DatagramPacket;
-import java.util.ArrayList;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 
 /**
  * A class for binding messages.
@@ -149,6 +147,8 @@ public class Message implements Serializable {
 
     public static final int CODE_RESPONSE_CONTENT = 0x45; // 2.05
 
+    public static final int CODE_RESPONSE_CONTINUE = 0x5F; // 2.31
+
     public static final int CODE_RESPONSE_BAD_REQUEST = 0x80; // 4.00
 
     public static final int CODE_RESPONSE_UNAUTHORIZED = 0x81; // 4.01
@@ -163,6 +163,8 @@ public class Message implements Serializable {
 
     public static final int CODE_RESPONSE_NOT_ACCEPTABLE = 0x86; // 4.06
 
+    public static final int CODE_RESPONSE_REQUEST_ENTITY_INCOMPLETE = 0x88; // 4.08
+
     public static final int CODE_RESPONSE_PRECONDITION_FAILED = 0x8C; // 4.12
 
     public static final int CODE_RESPONSE_REQUEST_ENTITY_TOO_LARGE = 0x8D; // 4.13
@@ -203,6 +205,14 @@ public class Message implements Serializable {
     // -----------------------------------------------------------------------------------------------------------------
     public static final int PAYLOAD_MARKER = 0xFF;
 
+    /**
+     * The upper bound of the message size to use when the Path MTU is not known. The value is {@value}.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.6">4.6. Message Size (RFC 7252)</a>
+     * @see #encodedSize()
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 1152;
+
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
@@ -214,6 +224,70 @@ public class Message implements Serializable {
 
     // -----------------------------------------------------------------------------------------------------------------
 
+    /**
+     * Resets this message to its initial state so that it can be reused for following reads.
+     * <p>
+     * The arrays of the token and the payload held by this message are retained, and following {@code read} methods
+     * reuse them whenever their lengths match, as well as the capacity of the option table, so that decoding
+     * same-shaped messages into a single instance produces no garbage. Any array previously set to, or got from, this
+     * message should not be used after this method is invoked.
+     *
+     * @see MessagePool
+     */
+    public void reset() {
+        version = VERSION01;
+        type = MIN_TYPE;
+        code = MIN_CODE;
+        messageId = MIN_MESSAGE_ID;
+        if (token != null && token.length > 0) {
+            spareToken = token;
+        }
+        token = null;
+        if (options != null) {
+            options.clear();
+        }
+        if (payload != null && payload.length > 0) {
+            sparePayload = payload;
+        }
+        payload = null;
+    }
+
+    /**
+     * Returns a new message whose values are copies of this message's values. The copy shares no storage with this
+     * message, so it stays intact while this message is {@link #reset() reset} and reused.
+     *
+     * @return a deep copy of this message.
+     */
+    public Message copy() {
+        final Message copy = new Message();
+        copy.version = version;
+        copy.type = type;
+        copy.code = code;
+        copy.messageId = messageId;
+        if (token != null) {
+            copy.token = token.length == 0 ? TOKEN_VALUE_EMPTY : token.clone();
+        }
+        if (optionCount() > 0) {
+            copy.options = new OptionTable(options);
+        }
+        if (payload != null) {
+            copy.payload = payload.clone();
+        }
+        return copy;
+    }
+
+    private static byte[] recycle(final byte[] spare, final int length) {
+        if (length == 0) {
+            return TOKEN_VALUE_EMPTY;
+        }
+        if (spare != null && spare.length == length) {
+            return spare;
+        }
+        return new byte[length];
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
     @Override
     public String toString() {
         return super.toString() + '{'
@@ -237,7 +311,11 @@ public class Message implements Serializable {
         if (code != that.code) return false;
         if (messageId != that.messageId) return false;
         if (!Arrays.equals(token, that.token)) return false;
-        if (options != null ? !options.equals(that.options) : that.options != null) return false;
+        if (optionCount() != that.optionCount()) return false;
+        if (optionCount() > 0 && !options.equals(that.options)) return false;
+        if (payload == null || payload.length == 0) { // an empty payload is not written, thus never read back
+            return that.payload == null || that.payload.length == 0;
+        }
         return Arrays.equals(payload, that.payload);
     }
 
@@ -248,12 +326,21 @@ public class Message implements Serializable {
         result = 31 * result + code;
         result = 31 * result + messageId;
         result = 31 * result + Utils.hashCode(token);
-        result = 31 * result + (options != null ? options.hashCode() : 0);
+        result = 31 * result + (optionCount() > 0 ? options.hashCode() : 0);
         result = 31 * result + Utils.hashCode(payload);
         return result;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads values from specified data input until it reaches the end of input. Options and the payload of this
+     * message, if any, are replaced with those read.
+     *
+     * @param input the data input from which values are read.
+     * @throws IOException if an I/O error occurs.
+     * @see #read(DataInput, int)
+     */
     public void read(final DataInput input) throws IOException {
         if (input == null) {
             throw new NullPointerException("input is null");
@@ -272,9 +359,11 @@ public class Message implements Serializable {
         }
         setCode(input.readUnsignedByte());
         setMessageId(input.readUnsignedShort());
-        setToken(new byte[tokenLength]);
+        setToken(recycle(spareToken, tokenLength));
         input.readFully(getToken());
-        Option previous = null;
+        clearOptions(); // each option read is the last one
+        payload = null; // unless a payload marker is read
+        int previousNumber = 0;
         for (int b; ; ) {
             try {
                 b = input.readUnsignedByte();
@@ -296,11 +385,108 @@ public class Message implements Serializable {
                 setPayload(baos.toByteArray());
                 break;
             }
-            final Option option = new Option();
-            option.previous = previous;
-            option.read(input);
-            getOptions().add(option);
-            previous = option;
+            getOptions().read(previousNumber, b, input, Integer.MAX_VALUE);
+            previousNumber = options.number(options.size() - 1);
+        }
+    }
+
+    /**
+     * Reads values from specified data input which is known to contain a message of specified length. This method
+     * reads exactly {@code length} bytes, without relying on the end of input, and reads the payload in a single bulk
+     * operation. Options and the payload of this message, if any, are replaced with those read.
+     *
+     * @param input  the data input from which values are read.
+     * @param length the number of bytes of the message.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void read(final DataInput input, final int length) throws IOException {
+        if (input == null) {
+            throw new NullPointerException("input is null");
+        }
+        if (length < 4) {
+            throw new RuntimeException("message format error");
+        }
+        final int tokenLength;
+        {
+            int b = input.readUnsignedByte();
+            tokenLength = b & 0xF;
+            b >>= 4;
+            setType(b & 0x3);
+            b >>= 2;
+            setVersion(b);
+        }
+        if (tokenLength > MAX_TKL) {
+            throw new RuntimeException("invalid token length: " + tokenLength);
+        }
+        int remaining = length - 4 - tokenLength;
+        if (remaining < 0) {
+            throw new RuntimeException("message format error");
+        }
+        setCode(input.readUnsignedByte());
+        setMessageId(input.readUnsignedShort());
+        setToken(recycle(spareToken, tokenLength));
+        input.readFully(getToken());
+        clearOptions(); // each option read is the last one
+        payload = null; // unless a payload marker is read
+        int previousNumber = 0;
+        while (remaining > 0) {
+            final int b = input.readUnsignedByte();
+            remaining--;
+            if (b == PAYLOAD_MARKER) {
+                if (remaining == 0) {
+                    throw new RuntimeException("message format error");
+                }
+                setPayload(recycle(sparePayload, remaining));
+                input.readFully(getPayload());
+                break;
+            }
+            remaining -= getOptions().read(previousNumber, b, input, remaining);
+            previousNumber = options.number(options.size() - 1);
+        }
+    }
+
+    /**
+     * Reads values from specified byte buffer. This method reads all remaining bytes of the buffer, from its current
+     * position to its limit, as a single message. The buffer's position is advanced to its limit. Options and
+     * the payload of this message, if any, are replaced with those read.
+     *
+     * @param input the byte buffer from which values are read; either heap or direct.
+     * @throws java.nio.BufferUnderflowException if {@code input} has insufficient bytes for a token or an option.
+     */
+    public void read(final ByteBuffer input) {
+        if (input == null) {
+            throw new NullPointerException("input is null");
+        }
+        final int tokenLength;
+        {
+            int b = input.get() & 0xFF;
+            tokenLength = b & 0xF;
+            b >>= 4;
+            setType(b & 0x3);
+            b >>= 2;
+            setVersion(b);
+        }
+        if (tokenLength > MAX_TKL) {
+            throw new RuntimeException("invalid token length: " + tokenLength);
+        }
+        setCode(input.get() & 0xFF);
+        setMessageId(input.getShort() & 0xFFFF);
+        setToken(recycle(spareToken, tokenLength));
+        input.get(getToken());
+        clearOptions();
+        payload = null; // unless a payload marker is read
+        int previousNumber = 0;
+        while (input.hasRemaining()) {
+            if ((input.get(input.position()) & 0xFF) == PAYLOAD_MARKER) {
+                input.get();
+                if (!input.hasRemaining()) {
+                    throw new RuntimeException("message format error");
+                }
+                setPayload(recycle(sparePayload, input.remaining()));
+                input.get(getPayload());
+                break;
+            }
+            previousNumber = getOptions().read(previousNumber, input);
         }
     }
 
@@ -327,11 +513,31 @@ public class Message implements Serializable {
         if (data == null) {
             throw new NullPointerException("data is null");
         }
-        read(new ByteArrayInputStream(data));
+        read(data, 0, data.length);
+    }
+
+    /**
+     * Reads values from specified region of specified byte array.
+     *
+     * @param data   the byte array from which values are read.
+     * @param offset the offset of the region in {@code data}.
+     * @param length the length of the region.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void read(final byte[] data, final int offset, final int length) throws IOException {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        try {
+            read(ByteBuffer.wrap(data, offset, length));
+        } catch (final BufferUnderflowException bue) {
+            throw new EOFException("unexpected end of data");
+        }
     }
 
     /**
-     * Reads values from specified packet's {@link DatagramPacket#getData() data}.
+     * Reads values from specified packet's {@link DatagramPacket#getData() data} bounded by the packet's {@link
+     * DatagramPacket#getOffset() offset} and {@link DatagramPacket#getLength() length}.
      *
      * @param packet the packet from which values are read.
      * @throws IOException if an I/O error occurs.
@@ -340,11 +546,11 @@ public class Message implements Serializable {
         if (packet == null) {
             throw new NullPointerException("package is null");
         }
-        read(packet.getData());
+        read(packet.getData(), packet.getOffset(), packet.getLength());
     }
 
     /**
-     * Writes this message to specified data output.
+     * Writes this message to specified data output. This method does not modify this message.
      *
      * @param output the data output to which this message is written.
      * @throws IOException if an I/O error occurs.
@@ -366,14 +572,8 @@ public class Message implements Serializable {
         if (token != null) {
             output.write(token);
         }
-        if (options != null && !options.isEmpty()) {
-            Collections.sort(options);
-            Option previous = null;
-            for (final Option option : options) {
-                option.previous = previous;
-                option.write(output);
-                previous = option;
-            }
+        if (options != null) {
+            options.write(output);
         }
         if (payload != null && payload.length > 0) {
             output.write(PAYLOAD_MARKER);
@@ -381,6 +581,39 @@ public class Message implements Serializable {
         }
     }
 
+    /**
+     * Writes this message to specified byte buffer. The buffer's position is advanced by the number of bytes written.
+     * This method does not modify this message.
+     *
+     * @param output the byte buffer to which this message is written; either heap or direct.
+     * @throws java.nio.BufferOverflowException if {@code output} has insufficient space.
+     */
+    public void write(final ByteBuffer output) {
+        if (output == null) {
+            throw new NullPointerException("output is null");
+        }
+        {
+            int b = version;
+            b <<= SIZE_TYPE;
+            b |= type;
+            b <<= SIZE_TKL;
+            b |= token == null ? 0 : token.length;
+            output.put((byte) b);
+        }
+        output.put((byte) code);
+        output.putShort((short) messageId);
+        if (token != null) {
+            output.put(token);
+        }
+        if (options != null) {
+            options.write(output);
+        }
+        if (payload != null && payload.length > 0) {
+            output.put((byte) PAYLOAD_MARKER);
+            output.put(payload);
+        }
+    }
+
     /**
      * Writes values to specified output stream.
      *
@@ -398,9 +631,82 @@ public class Message implements Serializable {
      * @throws IOException if an I/O error occurs.
      */
     public byte[] write() throws IOException {
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        write(baos);
-        return baos.toByteArray();
+        final byte[] data = new byte[encodedSize()];
+        write(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Writes values to specified byte array starting at specified offset.
+     *
+     * @param data   the byte array to which values are written.
+     * @param offset the offset in {@code data}.
+     * @return the number of bytes written.
+     * @throws java.nio.BufferOverflowException if {@code data} has less than {@link #encodedSize()} bytes from {@code
+     *                                          offset}.
+     */
+    public int write(final byte[] data, final int offset) {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(data, offset, data.length - offset);
+        write(buffer);
+        return buffer.position() - offset;
+    }
+
+    /**
+     * Returns the exact number of bytes this message takes on the wire, including extended option deltas and lengths,
+     * the token and the payload marker.
+     *
+     * @return the number of bytes this message takes on the wire.
+     * @see #DEFAULT_MAX_MESSAGE_SIZE
+     */
+    public int encodedSize() {
+        int size = 4;
+        if (token != null) {
+            size += token.length;
+        }
+        if (options != null) {
+            size += options.encodedSize();
+        }
+        if (payload != null && payload.length > 0) {
+            size += 1 + payload.length;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the cache-key of this message as a request. The cache-key is the code followed by the options, but
+     * NoCacheKey ones and {@code ETag}s, encoded as on the wire. Two requests are cache-equivalent if and only if their
+     * cache-keys are equal.
+     *
+     * @return a new array of the cache-key.
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.6">5.6. Caching (RFC 7252)</a>
+     * @see Option#isNoCacheKey(int)
+     */
+    public byte[] getCacheKey() {
+        if (optionCount() == 0) {
+            return new byte[] {(byte) code};
+        }
+        final byte[] cacheKey = new byte[1 + options.cacheKeySize()];
+        final ByteBuffer buffer = ByteBuffer.wrap(cacheKey);
+        buffer.put((byte) code);
+        options.writeCacheKey(buffer);
+        return cacheKey;
+    }
+
+    /**
+     * Returns a 64-bit hash of the {@link #getCacheKey() cache-key} of this message as a request. The hash is computed
+     * over option values in place, without encoding the cache-key, and equals to the {@link
+     * MessageView#getCacheKeyHash() one} of the encoded bytes of this message.
+     *
+     * @return the hash of the cache-key.
+     */
+    public long getCacheKeyHash() {
+        if (optionCount() == 0) {
+            return CacheKeyHash.finish(CacheKeyHash.start(code));
+        }
+        return options.cacheKeyHash(code);
     }
 
     // --------------------------------------------------------------------------------------------------------- version
@@ -557,18 +863,101 @@ public class Message implements Serializable {
     }
 
     // --------------------------------------------------------------------------------------------------------- options
-    private List<Option> getOptions() {
+    private OptionTable getOptions() {
         if (options == null) {
-            options = new ArrayList<Option>();
+            options = new OptionTable();
         }
         return options;
     }
 
+    private void clearOptions() {
+        if (options != null) {
+            options.clear();
+        }
+    }
+
+    private int optionCount() {
+        return options == null ? 0 : options.size();
+    }
+
+    /**
+     * Returns the number of options of this message.
+     *
+     * @return the number of options.
+     */
+    public int getOptionCount() {
+        return optionCount();
+    }
+
+    /**
+     * Returns the number of the option at specified index.
+     *
+     * @param index the index of the option.
+     * @return the number of the option.
+     */
+    public int getOptionNumber(final int index) {
+        return getOptions().number(index);
+    }
+
+    /**
+     * Returns the length of the value of the option at specified index.
+     *
+     * @param index the index of the option.
+     * @return the length of the value of the option.
+     */
+    public int getOptionValueLength(final int index) {
+        return getOptions().length(index);
+    }
+
+    /**
+     * Copies the value of the option at specified index into specified array.
+     *
+     * @param index     the index of the option.
+     * @param dst       the array to which the value is copied.
+     * @param dstOffset the offset in {@code dst}.
+     * @return the number of bytes copied.
+     */
+    public int copyOptionValue(final int index, final byte[] dst, final int dstOffset) {
+        if (dst == null) {
+            throw new NullPointerException("dst is null");
+        }
+        final int length = getOptions().length(index);
+        System.arraycopy(options.arena(), options.offset(index), dst, dstOffset, length);
+        return length;
+    }
+
+    /**
+     * Returns a new array of the value of the option at specified index.
+     *
+     * @param index the index of the option.
+     * @return a new array of the value of the option.
+     */
+    public byte[] getOptionValue(final int index) {
+        final byte[] value = new byte[getOptionValueLength(index)];
+        copyOptionValue(index, value, 0);
+        return value;
+    }
+
+    /**
+     * Returns a new option of the number and the value of the option at specified index.
+     *
+     * @param index the index of the option.
+     * @return a new option.
+     */
+    public Option getOption(final int index) {
+        return Option.of(getOptionNumber(index), getOptionValue(index));
+    }
+
+    /**
+     * Adds specified option. The value of the option is copied.
+     *
+     * @param option the option to add.
+     */
     public void addOption(final Option option) {
         if (option == null) {
             throw new NullPointerException("option is null");
         }
-        getOptions().add(Option.from(option));
+        addOption(option.getNumber(), option.getValue());
     }
 
     public Message option(final Option option) {
@@ -576,8 +965,18 @@ public class Message implements Serializable {
         return this;
     }
 
+    /**
+     * Adds an option of specified number and value. The value is copied. Options are kept sorted by their numbers and
+     * repeated options keep their order of addition.
+     *
+     * @param number the option number.
+     * @param value  the option value.
+     */
     public void addOption(final int number, final byte[] value) {
-        addOption(Option.of(number, value));
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        getOptions().add(number, value, 0, value.length);
     }
 
     public Message option(final int number, final byte[] value) {
@@ -585,6 +984,73 @@ public class Message implements Serializable {
         return this;
     }
 
+    /**
+     * Adds an option of specified number whose value is the minimal big-endian representation of specified unsigned
+     * integer. The value is encoded directly into this message's option storage.
+     *
+     * @param number the option number.
+     * @param uint   the unsigned integer value.
+     * @see Option#setValueAsLong(long)
+     */
+    public void addOption(final int number, final long uint) {
+        if (uint < 0L) {
+            throw new IllegalArgumentException("uint(" + uint + ") < 0");
+        }
+        final int length = Option.uintLength(uint);
+        final int offset = getOptions().add(number, length);
+        Option.putUint(uint, options.arena(), offset, length);
+    }
+
+    public Message option(final int number, final long uint) {
+        addOption(number, uint);
+        return this;
+    }
+
+    /**
+     * Adds an option of specified number whose value is the UTF-8 encoding of specified string. Short values are
+     * served from a shared cache and copied directly into this message's option storage.
+     *
+     * @param number the option number.
+     * @param string the string value.
+     * @see Option#setValueAsString(String)
+     */
+    public void addOption(final int number, final String string) {
+        if (string == null) {
+            throw new NullPointerException("string is null");
+        }
+        final byte[] encoded = OptionValueCache.SHARED.encode(string);
+        getOptions().add(number, encoded, 0, encoded.length);
+    }
+
+    public Message option(final int number, final String string) {
+        addOption(number, string);
+        return this;
+    }
+
+    /**
+     * Returns the value of the option at specified index decoded in UTF-8. Short values are served from a shared
+     * cache.
+     *
+     * @param index the index of the option.
+     * @return the value of the option as a string.
+     * @see Option#getValueAsString()
+     */
+    public String getOptionValueAsString(final int index) {
+        return OptionValueCache.SHARED.decode(getOptions().arena(), options.offset(index), options.length(index));
+    }
+
+    /**
+     * Returns the value of the option at specified index as an unsigned integer.
+     *
+     * @param index the index of the option.
+     * @return the value of the option as an unsigned integer.
+     * @throws ArithmeticException if the value is greater than {@link Long#MAX_VALUE}.
+     * @see Option#getValueAsLong()
+     */
+    public long getOptionValueAsLong(final int index) {
+        return Option.getUint(getOptions().arena(), options.offset(index), options.length(index));
+    }
+
     // --------------------------------------------------------------------------------------------------------- payload
     public byte[] getPayload() {
         return payload;
@@ -613,7 +1079,12 @@ public class Message implements Serializable {
 
     private byte[] token;
 
-    private List</*@Valid @NotNull*/Option> options;
+    private OptionTable options;
 
     private byte[] payload;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private transient byte[] spareToken;
+
+    private transient byte[] sparePayload;
 }
@@ -0,0 +1,96 @@
+package com.github.jinahya.rfc7252.message;
+
+/**
+ * A thread-local pool of {@link Message} instances. Each thread holds its own bounded stack of released instances so
+ * that neither {@link #acquire()} nor {@link #release(Message)} contends with other threads.
+ * <p>
+ * Released instances are {@link Message#reset() reset} so that following reads into an acquired instance reuse the
+ * storage of the token, options and payload of a previously decoded message.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public class MessagePool {
+
+    /**
+     * The default number of instances retained by each thread. The value is {@value}.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final class Stack {
+
+        private Stack(final int capacity) {
+            super();
+            elements = new Message[capacity];
+        }
+
+        private final Message[] elements;
+
+        private int size;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_CAPACITY}.
+     */
+    public MessagePool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance with specified capacity.
+     *
+     * @param capacity the maximum number of instances retained by each thread.
+     */
+    public MessagePool(final int capacity) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity(" + capacity + ") <= 0");
+        }
+        this.capacity = capacity;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an instance released by current thread, or a new instance if none available.
+     *
+     * @return a message in its initial state.
+     */
+    public Message acquire() {
+        final Stack stack = stacks.get();
+        if (stack.size == 0) {
+            return new Message();
+        }
+        final Message message = stack.elements[--stack.size];
+        stack.elements[stack.size] = null;
+        return message;
+    }
+
+    /**
+     * Resets specified message and retains it for following {@link #acquire()} of current thread. The message is
+     * discarded when current thread already retains as many instances as the capacity.
+     *
+     * @param message the message to release.
+     */
+    public void release(final Message message) {
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        message.reset();
+        final Stack stack = stacks.get();
+        if (stack.size < stack.elements.length) {
+            stack.elements[stack.size++] = message;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final int capacity;
+
+    private final ThreadLocal<Stack> stacks = new ThreadLocal<Stack>() {
+        @Override
+        protected Stack initialValue() {
+            return new Stack(capacity);
+        }
+    };
+}
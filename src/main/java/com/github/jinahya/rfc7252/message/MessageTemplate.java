@@ -0,0 +1,159 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message encoded once and written with different message IDs and tokens.
+ * <p>
+ * The options and the payload of the message are encoded once when a template is created, so that writing a template
+ * only patches the header and splices a token, without sorting and encoding options again. Responses which differ
+ * only in their message IDs and tokens, such as the ones of static resources, are written with a template.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+public final class MessageTemplate {
+
+    /**
+     * Creates a new instance of specified message. The message ID and the token of the message are ignored, and the
+     * message may be modified afterwards.
+     *
+     * @param message the message.
+     */
+    public MessageTemplate(final Message message) {
+        super();
+        if (message == null) {
+            throw new NullPointerException("message is null");
+        }
+        final byte[] data = new byte[message.encodedSize()];
+        message.write(data, 0);
+        final int tokenLength = data[0] & 0x0F;
+        encoded = new byte[data.length - tokenLength];
+        encoded[0] = (byte) (data[0] & 0xF0);
+        encoded[1] = data[1];
+        System.arraycopy(data, 4 + tokenLength, encoded, 4, encoded.length - 4);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes this template with specified message ID and token to specified byte buffer. The buffer's position is
+     * advanced by the number of bytes written.
+     *
+     * @param messageId the message ID.
+     * @param token     the token; {@code null} for an empty token.
+     * @param output    the byte buffer to which this template is written.
+     * @throws java.nio.BufferOverflowException if {@code output} has insufficient space.
+     */
+    public void write(final int messageId, final byte[] token, final ByteBuffer output) {
+        final int tokenLength = tokenLength(token);
+        output.put((byte) (encoded[0] | tokenLength));
+        output.put(encoded[1]);
+        output.putShort((short) messageId);
+        if (tokenLength > 0) {
+            output.put(token);
+        }
+        output.put(encoded, 4, encoded.length - 4);
+    }
+
+    /**
+     * Writes this template with specified message ID and token to specified byte array starting at specified offset.
+     *
+     * @param messageId the message ID.
+     * @param token     the token; {@code null} for an empty token.
+     * @param data      the byte array to which this template is written.
+     * @param offset    the offset in {@code data}.
+     * @return the number of bytes written.
+     * @throws IndexOutOfBoundsException if {@code data} has less than {@link #encodedSize(int)} bytes from {@code
+     *                                   offset}.
+     */
+    public int write(final int messageId, final byte[] token, final byte[] data, final int offset) {
+        final int tokenLength = tokenLength(token);
+        data[offset] = (byte) (encoded[0] | tokenLength);
+        data[offset + 1] = encoded[1];
+        data[offset + 2] = (byte) (messageId >> 8);
+        data[offset + 3] = (byte) messageId;
+        if (tokenLength > 0) {
+            System.arraycopy(token, 0, data, offset + 4, tokenLength);
+        }
+        System.arraycopy(encoded, 4, data, offset + 4 + tokenLength, encoded.length - 4);
+        return encoded.length + tokenLength;
+    }
+
+    /**
+     * Writes this template with specified message ID and token to a new array and returns it.
+     *
+     * @param messageId the message ID.
+     * @param token     the token; {@code null} for an empty token.
+     * @return a new array of written bytes.
+     */
+    public byte[] write(final int messageId, final byte[] token) {
+        final byte[] data = new byte[encodedSize(tokenLength(token))];
+        write(messageId, token, data, 0);
+        return data;
+    }
+
+    private static int tokenLength(final byte[] token) {
+        if (token == null) {
+            return 0;
+        }
+        if (token.length > Message.MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("token.length(" + token.length + ") > " + Message.MAX_TOKEN_LENGTH);
+        }
+        return token.length;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of bytes this template takes on the wire with a token of specified length.
+     *
+     * @param tokenLength the length of the token.
+     * @return the number of bytes on the wire.
+     */
+    public int encodedSize(final int tokenLength) {
+        return encoded.length + tokenLength;
+    }
+
+    /**
+     * Returns the offset of the value of the first option of specified number in bytes written with an empty token. The
+     * offset in bytes written with a token is the returned value plus the length of the token.
+     *
+     * @param number the option number.
+     * @return the offset of the option value; {@code -1} if no such option.
+     */
+    public int getOptionValueOffset(final int number) {
+        final MessageView view = new MessageView().wrap(encoded);
+        while (view.nextOption()) {
+            if (view.getOptionNumber() == number) {
+                return view.getOptionValueOffset();
+            }
+            if (view.getOptionNumber() > number) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the type of this template.
+     *
+     * @return the type of this template.
+     */
+    public int getType() {
+        return (encoded[0] >> 4) & 0x03;
+    }
+
+    /**
+     * Returns the code of this template.
+     *
+     * @return the code of this template.
+     */
+    public int getCode() {
+        return encoded[1] & 0xFF;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final byte[] encoded; // with an empty token
+}
@@ -0,0 +1,277 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A validator of encoded messages which checks whether bytes are well formed without allocating any object.
+ * <p>
+ * Each method returns {@link #VALID} or one of the other constants, instead of throwing, so that malformed datagrams
+ * are discarded cheaply before being decoded. Methods taking an {@link OptionRegistry} also check the lengths of
+ * critical option values against the registry; elective options of invalid lengths are ignored by recipients as
+ * unrecognized, and thus don't make messages malformed.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-3">3. Message Format (RFC 7252)</a>
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-4.2">4.2. Messages Transmitted Reliably (RFC 7252)</a>
+ */
+public final class MessageValidator {
+
+    /**
+     * A result for well-formed bytes. The value is {@value}.
+     */
+    public static final int VALID = 0;
+
+    /**
+     * A result for bytes shorter than the fixed-size header. The value is {@value}.
+     */
+    public static final int TOO_SHORT = 1;
+
+    /**
+     * A result for a version other than {@link Message#VERSION01}. The value is {@value}.
+     */
+    public static final int UNKNOWN_VERSION = 2;
+
+    /**
+     * A result for a token length greater than {@link Message#MAX_TOKEN_LENGTH}. The value is {@value}.
+     */
+    public static final int INVALID_TOKEN_LENGTH = 3;
+
+    /**
+     * A result for a token longer than the remaining bytes. The value is {@value}.
+     */
+    public static final int TRUNCATED_TOKEN = 4;
+
+    /**
+     * A result for an option delta of the reserved nibble, or an option number greater than {@code 65535}. The value is
+     * {@value}.
+     */
+    public static final int INVALID_OPTION_DELTA = 5;
+
+    /**
+     * A result for an option length of the reserved nibble. The value is {@value}.
+     */
+    public static final int INVALID_OPTION_LENGTH = 6;
+
+    /**
+     * A result for an option longer than the remaining bytes. The value is {@value}.
+     */
+    public static final int TRUNCATED_OPTION = 7;
+
+    /**
+     * A result for a payload marker followed by no payload. The value is {@value}.
+     */
+    public static final int EMPTY_PAYLOAD = 8;
+
+    /**
+     * A result for an empty message followed by any byte after the message ID. The value is {@value}.
+     */
+    public static final int NON_EMPTY_EMPTY_MESSAGE = 9;
+
+    /**
+     * A result for a critical option whose value length is invalid for its definition in a registry. The value is
+     * {@value}.
+     *
+     * @see OptionRegistry#isValidLength(int, int)
+     */
+    public static final int INVALID_OPTION_VALUE_LENGTH = 10;
+
+    private static final int MAX_OPTION_NUMBER = 65535;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether specified region of specified byte array is a well-formed message.
+     *
+     * @param data   the byte array.
+     * @param offset the offset of the region in {@code data}.
+     * @param length the length of the region.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final byte[] data, final int offset, final int length) {
+        return check(data, offset, length, null);
+    }
+
+    /**
+     * Checks whether specified region of specified byte array is a well-formed message whose critical option values
+     * are of lengths valid in specified registry.
+     *
+     * @param data     the byte array.
+     * @param offset   the offset of the region in {@code data}.
+     * @param length   the length of the region.
+     * @param registry the registry of option definitions; {@code null} for not checking value lengths.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final byte[] data, final int offset, final int length, final OptionRegistry registry) {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException(
+                    "offset(" + offset + "), length(" + length + "), data.length(" + data.length + ")");
+        }
+        return walk(data, null, offset, length, registry);
+    }
+
+    /**
+     * Checks whether whole bytes of specified byte array is a well-formed message.
+     *
+     * @param data the byte array.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final byte[] data) {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        return check(data, 0, data.length);
+    }
+
+    /**
+     * Checks whether specified region of specified byte buffer is a well-formed message. The buffer's position and
+     * limit are not changed.
+     *
+     * @param buffer the byte buffer; either heap or direct.
+     * @param offset the absolute index of the region in {@code buffer}.
+     * @param length the length of the region.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final ByteBuffer buffer, final int offset, final int length) {
+        return check(buffer, offset, length, null);
+    }
+
+    /**
+     * Checks whether specified region of specified byte buffer is a well-formed message whose critical option values
+     * are of lengths valid in specified registry. The buffer's position and limit are not changed.
+     *
+     * @param buffer   the byte buffer; either heap or direct.
+     * @param offset   the absolute index of the region in {@code buffer}.
+     * @param length   the length of the region.
+     * @param registry the registry of option definitions; {@code null} for not checking value lengths.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final ByteBuffer buffer, final int offset, final int length,
+                            final OptionRegistry registry) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer is null");
+        }
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IndexOutOfBoundsException(
+                    "offset(" + offset + "), length(" + length + "), buffer.limit(" + buffer.limit() + ")");
+        }
+        if (buffer.hasArray()) {
+            return walk(buffer.array(), null, buffer.arrayOffset() + offset, length, registry);
+        }
+        return walk(null, buffer, offset, length, registry);
+    }
+
+    /**
+     * Checks whether remaining bytes of specified byte buffer is a well-formed message. The buffer's position and limit
+     * are not changed.
+     *
+     * @param buffer the byte buffer; either heap or direct.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final ByteBuffer buffer) {
+        return check(buffer, null);
+    }
+
+    /**
+     * Checks whether remaining bytes of specified byte buffer is a well-formed message whose critical option values
+     * are of lengths valid in specified registry. The buffer's position and limit are not changed.
+     *
+     * @param buffer   the byte buffer; either heap or direct.
+     * @param registry the registry of option definitions; {@code null} for not checking value lengths.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    public static int check(final ByteBuffer buffer, final OptionRegistry registry) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer is null");
+        }
+        return check(buffer, buffer.position(), buffer.remaining(), registry);
+    }
+
+    /**
+     * Walks the header and the options in specified region of either specified byte array or specified byte buffer.
+     *
+     * @param array    the byte array; {@code null} for reading from {@code buffer}.
+     * @param buffer   the byte buffer read at absolute indices; used only if {@code array} is {@code null}.
+     * @param offset   the index of the region.
+     * @param length   the length of the region.
+     * @param registry the registry of option definitions; {@code null} for not checking value lengths.
+     * @return {@link #VALID} if well formed; one of the other result constants otherwise.
+     */
+    private static int walk(final byte[] array, final ByteBuffer buffer, final int offset, final int length,
+                            final OptionRegistry registry) {
+        if (length < 4) {
+            return TOO_SHORT;
+        }
+        final int b = get(array, buffer, offset);
+        final int header = header(b, get(array, buffer, offset + 1), length);
+        if (header != VALID) {
+            return header;
+        }
+        final int end = offset + length;
+        int index = offset + 4 + (b & 0x0F);
+        for (int number = 0; index < end; ) {
+            final int b1 = get(array, buffer, index++);
+            if (b1 == Message.PAYLOAD_MARKER) {
+                return index == end ? EMPTY_PAYLOAD : VALID;
+            }
+            final int deltaNibble = b1 >> 4;
+            if (deltaNibble == 15) {
+                return INVALID_OPTION_DELTA;
+            }
+            final int lengthNibble = b1 & 0x0F;
+            if (lengthNibble == 15) {
+                return INVALID_OPTION_LENGTH;
+            }
+            final int deltaBytes = Option.extendedBytes(deltaNibble);
+            final int lengthBytes = Option.extendedBytes(lengthNibble);
+            if (index + deltaBytes + lengthBytes > end) {
+                return TRUNCATED_OPTION;
+            }
+            final int delta = Option.readExtended(deltaNibble, array, buffer, index);
+            index += deltaBytes;
+            final int valueLength = Option.readExtended(lengthNibble, array, buffer, index);
+            index += lengthBytes;
+            if ((number += delta) > MAX_OPTION_NUMBER) {
+                return INVALID_OPTION_DELTA;
+            }
+            if (valueLength > end - index) {
+                return TRUNCATED_OPTION;
+            }
+            if (registry != null && Option.isCritical(number) && !registry.isValidLength(number, valueLength)) {
+                return INVALID_OPTION_VALUE_LENGTH;
+            }
+            index += valueLength;
+        }
+        return VALID;
+    }
+
+    private static int get(final byte[] array, final ByteBuffer buffer, final int index) {
+        return array != null ? array[index] & 0xFF : buffer.get(index) & 0xFF;
+    }
+
+    /**
+     * Checks the first two bytes of the header, and whether the token fits.
+     */
+    private static int header(final int b, final int code, final int length) {
+        if ((b >> 6) != Message.VERSION01) {
+            return UNKNOWN_VERSION;
+        }
+        final int tokenLength = b & 0x0F;
+        if (tokenLength > Message.MAX_TOKEN_LENGTH) {
+            return INVALID_TOKEN_LENGTH;
+        }
+        if (code == Message.CODE_EMPTY_MESSAGE && length > 4) {
+            return NON_EMPTY_EMPTY_MESSAGE;
+        }
+        if (4 + tokenLength > length) {
+            return TRUNCATED_TOKEN;
+        }
+        return VALID;
+    }
+
+    private MessageValidator() {
+        super();
+    }
+}
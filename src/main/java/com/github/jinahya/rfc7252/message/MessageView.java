@@ -0,0 +1,474 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only, reusable view over an encoded message. The fixed-size header is decoded when the view is {@code wrap}ped
+ * while the token, options and payload are decoded only when asked. Options are walked in place, without creating any
+ * {@link Option} instance.
+ * <p>
+ * An instance is not thread-safe and the wrapped bytes must not be modified while they are viewed.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-3">3. Message Format (RFC 7252)</a>
+ */
+public final class MessageView {
+
+    /**
+     * Creates a new instance which views nothing.
+     */
+    public MessageView() {
+        super();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts viewing specified region of specified byte array.
+     *
+     * @param data   the byte array to view.
+     * @param offset the offset of the region in {@code data}.
+     * @param length the length of the region.
+     * @return this view.
+     */
+    public MessageView wrap(final byte[] data, final int offset, final int length) {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset(" + offset + ") < 0");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("length(" + length + ") < 0");
+        }
+        if (length > data.length - offset) { // overflow-safe
+            throw new IllegalArgumentException(
+                    "offset(" + offset + ") + length(" + length + ") > data.length(" + data.length + ")");
+        }
+        this.array = data;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+        return header();
+    }
+
+    /**
+     * Starts viewing whole bytes of specified byte array.
+     *
+     * @param data the byte array to view.
+     * @return this view.
+     */
+    public MessageView wrap(final byte[] data) {
+        if (data == null) {
+            throw new NullPointerException("data is null");
+        }
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * Starts viewing remaining bytes of specified byte buffer. The buffer's position and limit are not changed.
+     *
+     * @param buffer the byte buffer to view; either heap or direct.
+     * @return this view.
+     */
+    public MessageView wrap(final ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer is null");
+        }
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+        return header();
+    }
+
+    private MessageView header() {
+        if (length < 4) {
+            throw new RuntimeException("message format error");
+        }
+        final int b = get(0);
+        version = b >> 6;
+        type = (b >> 4) & 0x3;
+        tokenLength = b & 0xF;
+        if (tokenLength > Message.MAX_TOKEN_LENGTH) {
+            throw new RuntimeException("invalid token length: " + tokenLength);
+        }
+        if (4 + tokenLength > length) {
+            throw new RuntimeException("message format error");
+        }
+        code = get(1);
+        messageId = (get(2) << 8) | get(3);
+        optionCount = -1;
+        payloadOffset = -1;
+        rewindOptions();
+        return this;
+    }
+
+    private int get(final int index) {
+        if (array != null) {
+            return array[offset + index] & 0xFF;
+        }
+        return buffer.get(offset + index) & 0xFF;
+    }
+
+    private void copy(final int index, final byte[] dst, final int dstOffset, final int count) {
+        if (array != null) {
+            System.arraycopy(array, offset + index, dst, dstOffset, count);
+            return;
+        }
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset + index);
+        duplicate.get(dst, dstOffset, count);
+    }
+
+    /**
+     * Returns the number of bytes viewed.
+     *
+     * @return the number of bytes viewed.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------- header
+    public int getVersion() {
+        return version;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    // ----------------------------------------------------------------------------------------------------------- token
+    public int getTokenLength() {
+        return tokenLength;
+    }
+
+    /**
+     * Copies the token into specified array.
+     *
+     * @param dst       the array to which the token is copied.
+     * @param dstOffset the offset in {@code dst}.
+     * @return the number of bytes copied; equal to {@link #getTokenLength()}.
+     */
+    public int copyToken(final byte[] dst, final int dstOffset) {
+        if (dst == null) {
+            throw new NullPointerException("dst is null");
+        }
+        copy(4, dst, dstOffset, tokenLength);
+        return tokenLength;
+    }
+
+    /**
+     * Returns a new array of the token.
+     *
+     * @return a new array of the token.
+     */
+    public byte[] getToken() {
+        final byte[] token = new byte[tokenLength];
+        copyToken(token, 0);
+        return token;
+    }
+
+    /**
+     * Checks whether the token equals to specified region of specified array.
+     *
+     * @param token  the array to compare.
+     * @param offset the offset of the token in {@code token}.
+     * @param length the length of the token.
+     * @return {@code true} if equal; {@code false} otherwise.
+     */
+    public boolean tokenEquals(final byte[] token, final int offset, final int length) {
+        if (token == null) {
+            throw new NullPointerException("token is null");
+        }
+        if (length != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((byte) get(4 + i) != token[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // --------------------------------------------------------------------------------------------------------- options
+
+    /**
+     * Rewinds the option cursor so that following {@link #nextOption()} moves to the first option.
+     */
+    public void rewindOptions() {
+        cursor = 4 + tokenLength;
+        optionNumber = 0;
+        optionValueOffset = -1;
+        optionValueLength = 0;
+    }
+
+    /**
+     * Moves the option cursor to the next option.
+     *
+     * @return {@code true} if moved; {@code false} if no more options left.
+     */
+    public boolean nextOption() {
+        if (cursor >= length) {
+            payloadOffset = length;
+            optionValueOffset = -1;
+            return false;
+        }
+        final int b1 = get(cursor);
+        if (b1 == Message.PAYLOAD_MARKER) {
+            if (cursor + 1 == length) {
+                throw new RuntimeException("message format error");
+            }
+            payloadOffset = cursor + 1;
+            optionValueOffset = -1;
+            return false;
+        }
+        int index = cursor + 1;
+        final int deltaNibble = b1 >> 4;
+        final int lengthNibble = b1 & 0xF;
+        final int deltaBytes = Option.extendedBytes(deltaNibble);
+        require(index + deltaBytes);
+        final int delta = Option.readExtended(deltaNibble, array, buffer, offset + index);
+        index += deltaBytes;
+        final int lengthBytes = Option.extendedBytes(lengthNibble);
+        require(index + lengthBytes);
+        final int valueLength = Option.readExtended(lengthNibble, array, buffer, offset + index);
+        index += lengthBytes;
+        require(index + valueLength);
+        optionNumber += delta;
+        optionValueOffset = index;
+        optionValueLength = valueLength;
+        cursor = index + valueLength;
+        return true;
+    }
+
+    private void require(final int end) {
+        if (end > length) {
+            throw new RuntimeException("message format error");
+        }
+    }
+
+    /**
+     * Returns the number of the option at the cursor.
+     *
+     * @return the number of the current option.
+     */
+    public int getOptionNumber() {
+        requireOption();
+        return optionNumber;
+    }
+
+    /**
+     * Returns the offset of the current option's value relative to the start of viewed bytes.
+     *
+     * @return the offset of the current option's value.
+     */
+    public int getOptionValueOffset() {
+        requireOption();
+        return optionValueOffset;
+    }
+
+    /**
+     * Returns the length of the current option's value.
+     *
+     * @return the length of the current option's value.
+     */
+    public int getOptionValueLength() {
+        requireOption();
+        return optionValueLength;
+    }
+
+    /**
+     * Copies the current option's value into specified array.
+     *
+     * @param dst       the array to which the value is copied.
+     * @param dstOffset the offset in {@code dst}.
+     * @return the number of bytes copied.
+     */
+    public int copyOptionValue(final byte[] dst, final int dstOffset) {
+        if (dst == null) {
+            throw new NullPointerException("dst is null");
+        }
+        requireOption();
+        copy(optionValueOffset, dst, dstOffset, optionValueLength);
+        return optionValueLength;
+    }
+
+    /**
+     * Returns a new array of the current option's value.
+     *
+     * @return a new array of the current option's value.
+     */
+    public byte[] getOptionValue() {
+        requireOption();
+        final byte[] value = new byte[optionValueLength];
+        copyOptionValue(value, 0);
+        return value;
+    }
+
+    private void requireOption() {
+        if (optionValueOffset == -1) {
+            throw new IllegalStateException("no current option");
+        }
+    }
+
+    /**
+     * Returns the number of options. The option cursor is not affected.
+     *
+     * @return the number of options.
+     */
+    public int getOptionCount() {
+        if (optionCount == -1) {
+            walkOptions();
+        }
+        return optionCount;
+    }
+
+    private void walkOptions() {
+        final int cursor = this.cursor;
+        final int optionNumber = this.optionNumber;
+        final int optionValueOffset = this.optionValueOffset;
+        final int optionValueLength = this.optionValueLength;
+        try {
+            rewindOptions();
+            int count = 0;
+            while (nextOption()) {
+                count++;
+            }
+            optionCount = count;
+        } finally {
+            this.cursor = cursor;
+            this.optionNumber = optionNumber;
+            this.optionValueOffset = optionValueOffset;
+            this.optionValueLength = optionValueLength;
+        }
+    }
+
+    /**
+     * Returns a 64-bit hash of the cache-key of the viewed message as a request, without copying any option value. The
+     * option cursor is not affected.
+     *
+     * @return the hash of the cache-key.
+     * @see Message#getCacheKeyHash()
+     */
+    public long getCacheKeyHash() {
+        final int cursor = this.cursor;
+        final int optionNumber = this.optionNumber;
+        final int optionValueOffset = this.optionValueOffset;
+        final int optionValueLength = this.optionValueLength;
+        try {
+            rewindOptions();
+            long state = CacheKeyHash.start(code);
+            while (nextOption()) {
+                if (!OptionTable.isCacheKey(this.optionNumber)) {
+                    continue;
+                }
+                if (array != null) {
+                    state = CacheKeyHash.option(state, this.optionNumber, array, offset + this.optionValueOffset,
+                                                this.optionValueLength);
+                } else {
+                    state = CacheKeyHash.option(state, this.optionNumber, buffer, offset + this.optionValueOffset,
+                                                this.optionValueLength);
+                }
+            }
+            return CacheKeyHash.finish(state);
+        } finally {
+            this.cursor = cursor;
+            this.optionNumber = optionNumber;
+            this.optionValueOffset = optionValueOffset;
+            this.optionValueLength = optionValueLength;
+        }
+    }
+
+    // --------------------------------------------------------------------------------------------------------- payload
+    private void locatePayload() {
+        if (payloadOffset == -1) {
+            walkOptions();
+        }
+    }
+
+    /**
+     * Returns the offset of the payload relative to the start of viewed bytes. The option cursor is not affected.
+     *
+     * @return the offset of the payload; equals to {@link #getLength()} when no payload exists.
+     */
+    public int getPayloadOffset() {
+        locatePayload();
+        return payloadOffset;
+    }
+
+    public int getPayloadLength() {
+        locatePayload();
+        return length - payloadOffset;
+    }
+
+    /**
+     * Copies the payload into specified array.
+     *
+     * @param dst       the array to which the payload is copied.
+     * @param dstOffset the offset in {@code dst}.
+     * @return the number of bytes copied.
+     */
+    public int copyPayload(final byte[] dst, final int dstOffset) {
+        if (dst == null) {
+            throw new NullPointerException("dst is null");
+        }
+        final int payloadLength = getPayloadLength();
+        copy(payloadOffset, dst, dstOffset, payloadLength);
+        return payloadLength;
+    }
+
+    /**
+     * Returns a new array of the payload.
+     *
+     * @return a new array of the payload; empty if no payload exists.
+     */
+    public byte[] getPayload() {
+        final byte[] payload = new byte[getPayloadLength()];
+        copyPayload(payload, 0);
+        return payload;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private byte[] array;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int length;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private int version;
+
+    private int type;
+
+    private int tokenLength;
+
+    private int code;
+
+    private int messageId;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private int cursor;
+
+    private int optionNumber;
+
+    private int optionValueOffset;
+
+    private int optionValueLength;
+
+    private int optionCount;
+
+    private int payloadOffset;
+}
@@ -7,8 +7,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -36,7 +36,7 @@ public class Option implements Serializable, Comparable<Option> {
 
     static final int C_65804 = 65536 + C_268;
 
-    public static final int NUMBER_IF_MATCH = 0;
+    public static final int NUMBER_IF_MATCH = 1;
 
     public static final int NUMBER_URI_HOST = 3;
 
@@ -44,6 +44,13 @@ public class Option implements Serializable, Comparable<Option> {
 
     public static final int NUMBER_IF_NON_MATCH = 5;
 
+    /**
+     * Predefined option number for {@code Observe}. The value is {@value}.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7641#section-2">2. The Observe Option (RFC 7641)</a>
+     */
+    public static final int NUMBER_OBSERVE = 6;
+
     public static final int NUMBER_URI_PORT = 7;
 
     /**
@@ -96,6 +103,27 @@ public class Option implements Serializable, Comparable<Option> {
      */
     public static final int NUMBER_LOCATION_QUERY = 20;
 
+    /**
+     * Predefined option number for {@code Block2}. The value is {@value}.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7959#section-2.1">2.1. The Block2 and Block1 Options (RFC 7959)</a>
+     */
+    public static final int NUMBER_BLOCK2 = 23;
+
+    /**
+     * Predefined option number for {@code Block1}. The value is {@value}.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7959#section-2.1">2.1. The Block2 and Block1 Options (RFC 7959)</a>
+     */
+    public static final int NUMBER_BLOCK1 = 27;
+
+    /**
+     * Predefined option number for {@code Size2}. The value is {@value}.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7959#section-4">4. The Size2 and Size1 Options (RFC 7959)</a>
+     */
+    public static final int NUMBER_SIZE2 = 28;
+
     /**
      * Predefined option number for {@code Proxy-Uri}. The value is {@value}.
      *
@@ -110,7 +138,7 @@ public class Option implements Serializable, Comparable<Option> {
      * @see <a href="https://tools.ietf.org/html/rfc7252#section-12.2">12.2. CoAP Option Numbers Registry (RFC
      * 7252)</a>
      */
-    public static final int NUMBER_PROXY_SCHEME = 35;
+    public static final int NUMBER_PROXY_SCHEME = 39;
 
     /**
      * Predefined option number for {@code Size1}. The value is {@value}.
@@ -120,6 +148,41 @@ public class Option implements Serializable, Comparable<Option> {
      */
     public static final int NUMBER_SIZE1 = 60;
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether specified option number is of a critical option.
+     *
+     * @param number the option number.
+     * @return {@code true} if critical; {@code false} if elective.
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.4.6">5.4.6. Option Numbers (RFC 7252)</a>
+     */
+    public static boolean isCritical(final int number) {
+        return (number & 0x01) != 0;
+    }
+
+    /**
+     * Checks whether specified option number is of an unsafe-to-forward option.
+     *
+     * @param number the option number.
+     * @return {@code true} if unsafe to forward; {@code false} if safe to forward.
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.4.6">5.4.6. Option Numbers (RFC 7252)</a>
+     */
+    public static boolean isUnsafe(final int number) {
+        return (number & 0x02) != 0;
+    }
+
+    /**
+     * Checks whether specified option number is of a safe-to-forward option which is not part of the cache-key.
+     *
+     * @param number the option number.
+     * @return {@code true} if NoCacheKey; {@code false} otherwise.
+     * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.4.6">5.4.6. Option Numbers (RFC 7252)</a>
+     */
+    public static boolean isNoCacheKey(final int number) {
+        return (number & 0x1E) == 0x1C;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     static Option of(final int number, final byte[] value) {
         final Option instance = new Option();
@@ -186,39 +249,223 @@ public class Option implements Serializable, Comparable<Option> {
         return 1;
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of bytes of an extended field for specified delta or length.
+     *
+     * @param value the delta or the length.
+     * @return the number of bytes of the extended field; {@code 0}, {@code 1} or {@code 2}.
+     */
+    static int extendedSize(final int value) {
+        if (value < C_13) {
+            return 0;
+        }
+        if (value < C_269) {
+            return 1;
+        }
+        if (value < C_65805) {
+            return 2;
+        }
+        throw new RuntimeException("message format error");
+    }
+
+    /**
+     * Returns the number of extended bytes which follow specified 4-bit delta or length.
+     *
+     * @param nibble the 4-bit delta or length.
+     * @return the number of extended bytes; {@code 0}, {@code 1} or {@code 2}.
+     */
+    static int extendedBytes(final int nibble) {
+        if (nibble < C_13) {
+            return 0;
+        }
+        if (nibble == C_13) {
+            return 1;
+        }
+        if (nibble == 14) {
+            return 2;
+        }
+        throw new RuntimeException("message format error"); // 15
+    }
+
+    /**
+     * Reads the actual delta or length indicated by specified 4-bit delta or length.
+     *
+     * @param nibble the 4-bit delta or length.
+     * @param input  the data input from which extended bytes are read.
+     * @return the actual delta or length.
+     * @throws IOException if an I/O error occurs.
+     */
+    static int readExtended(final int nibble, final DataInput input) throws IOException {
+        if (nibble < C_13) {
+            return nibble;
+        }
+        if (nibble == C_13) {
+            return input.readUnsignedByte() + C_13;
+        }
+        if (nibble == 14) {
+            return input.readUnsignedShort() + C_269;
+        }
+        throw new RuntimeException("message format error"); // 15
+    }
+
+    /**
+     * Reads the actual delta or length indicated by specified 4-bit delta or length.
+     *
+     * @param nibble the 4-bit delta or length.
+     * @param input  the byte buffer from which extended bytes are read.
+     * @return the actual delta or length.
+     */
+    static int readExtended(final int nibble, final ByteBuffer input) {
+        if (nibble < C_13) {
+            return nibble;
+        }
+        if (nibble == C_13) {
+            return (input.get() & 0xFF) + C_13;
+        }
+        if (nibble == 14) {
+            return (input.getShort() & 0xFFFF) + C_269;
+        }
+        throw new RuntimeException("message format error"); // 15
+    }
+
+    /**
+     * Reads the actual delta or length indicated by specified 4-bit delta or length from the extended bytes at
+     * specified index of either specified byte array or specified byte buffer. The caller is responsible for checking
+     * that {@link #extendedBytes(int)} bytes are available at the index.
+     *
+     * @param nibble the 4-bit delta or length.
+     * @param array  the byte array of extended bytes; {@code null} for reading from {@code buffer}.
+     * @param buffer the byte buffer of extended bytes, read at absolute indices; used only if {@code array} is {@code
+     *               null}.
+     * @param index  the index of the first extended byte.
+     * @return the actual delta or length.
+     */
+    static int readExtended(final int nibble, final byte[] array, final ByteBuffer buffer, final int index) {
+        if (nibble < C_13) {
+            return nibble;
+        }
+        if (nibble == C_13) {
+            return (array != null ? array[index] & 0xFF : buffer.get(index) & 0xFF) + C_13;
+        }
+        if (nibble == 14) {
+            return (array != null
+                    ? ((array[index] & 0xFF) << 8) | (array[index + 1] & 0xFF)
+                    : buffer.getShort(index) & 0xFFFF) + C_269;
+        }
+        throw new RuntimeException("message format error"); // 15
+    }
+
+    private static int nibble(final int value) {
+        switch (extendedSize(value)) {
+            case 0:
+                return value;
+            case 1:
+                return C_13;
+            default:
+                return 14;
+        }
+    }
+
+    private static int extended(final int value) {
+        return value < C_269 ? value - C_13 : value - C_269;
+    }
+
+    /**
+     * Writes the first byte and extended bytes of an option of specified delta and length.
+     *
+     * @param delta  the delta from the previous option number.
+     * @param length the length of the option value.
+     * @param output the data output to which bytes are written.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void writeHeader(final int delta, final int length, final DataOutput output) throws IOException {
+        final int deltaNibble = nibble(delta);
+        final int lengthNibble = nibble(length);
+        output.writeByte((deltaNibble << 4) | lengthNibble);
+        if (deltaNibble == C_13) {
+            output.writeByte(extended(delta));
+        } else if (deltaNibble == 14) {
+            output.writeShort(extended(delta));
+        }
+        if (lengthNibble == C_13) {
+            output.writeByte(extended(length));
+        } else if (lengthNibble == 14) {
+            output.writeShort(extended(length));
+        }
+    }
+
+    /**
+     * Writes the first byte and extended bytes of an option of specified delta and length.
+     *
+     * @param delta  the delta from the previous option number.
+     * @param length the length of the option value.
+     * @param output the byte buffer to which bytes are written.
+     */
+    static void writeHeader(final int delta, final int length, final ByteBuffer output) {
+        final int deltaNibble = nibble(delta);
+        final int lengthNibble = nibble(length);
+        output.put((byte) ((deltaNibble << 4) | lengthNibble));
+        if (deltaNibble == C_13) {
+            output.put((byte) extended(delta));
+        } else if (deltaNibble == 14) {
+            output.putShort((short) extended(delta));
+        }
+        if (lengthNibble == C_13) {
+            output.put((byte) extended(length));
+        } else if (lengthNibble == 14) {
+            output.putShort((short) extended(length));
+        }
+    }
+
+    /**
+     * Returns the exact number of bytes an option takes on the wire.
+     *
+     * @param delta  the delta from the previous option number.
+     * @param length the length of the option value.
+     * @return the number of bytes the option takes on the wire.
+     */
+    static int encodedSize(final int delta, final int length) {
+        return 1 + extendedSize(delta) + extendedSize(length) + length;
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     void read(final DataInput input) throws IOException {
         if (input == null) {
             throw new NullPointerException("input is null");
         }
-        int delta;
-        int length;
-        {
-            final int b1 = input.readUnsignedByte();
-            length = b1 & 0xF;
-            delta = b1 >> 4;
-        }
-        if (delta < 13) {
-            // use delta as read
-        } else if (delta == 13) {
-            delta = input.readUnsignedByte() + 13;
-        } else if (delta == 14) {
-            delta = input.readUnsignedShort() + 269;
-        } else { // delta == 15
+        read(input.readUnsignedByte(), input, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads values from specified data input whose first byte, the one holding the delta and length nibbles, has
+     * already been read.
+     *
+     * @param b1        the first byte already read.
+     * @param input     the data input from which remaining bytes are read.
+     * @param available the maximum number of bytes, following {@code b1}, which can be read from {@code input}.
+     * @return the number of bytes read from {@code input}, not including {@code b1}.
+     * @throws IOException if an I/O error occurs.
+     */
+    int read(final int b1, final DataInput input, final int available) throws IOException {
+        if (input == null) {
+            throw new NullPointerException("input is null");
+        }
+        final int deltaNibble = b1 >> 4;
+        final int lengthNibble = b1 & 0xF;
+        int count = extendedBytes(deltaNibble) + extendedBytes(lengthNibble);
+        if (count > available) {
             throw new RuntimeException("message format error");
         }
-        setNumber((previous == null ? 0 : previous.number) + delta);
-        if (length < 13) {
-            // use length as read
-        } else if (length == 13) {
-            length = input.readUnsignedByte() + 13;
-        } else if (length == 14) {
-            length = input.readUnsignedShort() + 269;
-        } else { // length == 15
+        setNumber((previous == null ? 0 : previous.number) + readExtended(deltaNibble, input));
+        final int length = readExtended(lengthNibble, input);
+        if ((count += length) > available) {
             throw new RuntimeException("message format error");
         }
-        setValue(new byte[length]);
+        setValue(value.length == length ? value : new byte[length]);
         input.readFully(getValue());
+        return count;
     }
 
     void write(final DataOutput output) throws IOException {
@@ -228,48 +475,55 @@ public class Option implements Serializable, Comparable<Option> {
         if (previous != null && previous.number > number) {
             throw new IllegalStateException("previous.number(" + previous.number + ") > number(" + number + ")");
         }
-        int delta = number - (previous == null ? 0 : previous.number);
-        Integer deltaExtended;
-        if (delta < 13) {
-            deltaExtended = null;
-        } else if (delta < 269) {
-            deltaExtended = delta - 13;
-            delta = 13;
-        } else if (delta < 65805) {
-            deltaExtended = delta - 269;
-            delta = 14;
-        } else {
-            throw new RuntimeException("message format error");
+        writeHeader(number - (previous == null ? 0 : previous.number), value.length, output);
+        output.write(value);
+    }
+
+    /**
+     * Reads values from specified byte buffer. The buffer's position is advanced by the number of bytes read.
+     *
+     * @param input the byte buffer from which values are read.
+     * @throws java.nio.BufferUnderflowException if {@code input} has insufficient bytes.
+     */
+    void read(final ByteBuffer input) {
+        if (input == null) {
+            throw new NullPointerException("input is null");
         }
-        int length = value.length;
-        Integer lengthExtended;
-        if (length < 13) {
-            lengthExtended = null;
-        } else if (length < 269) {
-            lengthExtended = length - 13;
-            length = 13;
-        } else if (length < 65805) {
-            lengthExtended = length - 269;
-            length = 14;
-        } else {
-            throw new RuntimeException("message format error");
+        final int b1 = input.get() & 0xFF;
+        setNumber((previous == null ? 0 : previous.number) + readExtended(b1 >> 4, input));
+        final int length = readExtended(b1 & 0xF, input);
+        setValue(value.length == length ? value : new byte[length]);
+        input.get(getValue());
+    }
+
+    /**
+     * Writes values to specified byte buffer. The buffer's position is advanced by the number of bytes written.
+     *
+     * @param output the byte buffer to which values are written.
+     * @throws java.nio.BufferOverflowException if {@code output} has insufficient space.
+     */
+    void write(final ByteBuffer output) {
+        if (output == null) {
+            throw new NullPointerException("output is null");
         }
-        output.writeByte((delta << 4) | length);
-        if (deltaExtended != null) {
-            if (delta == 13) {
-                output.writeByte(deltaExtended);
-            } else {
-                output.writeShort(deltaExtended);
-            }
+        if (previous != null && previous.number > number) {
+            throw new IllegalStateException("previous.number(" + previous.number + ") > number(" + number + ")");
         }
-        if (lengthExtended != null) {
-            if (length == 13) {
-                output.writeByte(lengthExtended);
-            } else {
-                output.writeShort(lengthExtended);
-            }
+        writeHeader(number - (previous == null ? 0 : previous.number), value.length, output);
+        output.put(value);
+    }
+
+    /**
+     * Returns the exact number of bytes this option takes when written after an option of specified number.
+     *
+     * @param previousNumber the number of the previous option; {@code 0} for the first option.
+     * @return the number of bytes this option takes on the wire.
+     */
+    public int encodedSize(final int previousNumber) {
+        if (previousNumber > number) {
+            throw new IllegalArgumentException("previousNumber(" + previousNumber + ") > number(" + number + ")");
         }
-        output.write(value);
+        return encodedSize(number - previousNumber, value.length);
     }
 
     // ---------------------------------------------------------------------------------------------------------- number
@@ -325,23 +579,125 @@ public class Option implements Serializable, Comparable<Option> {
         setValue(bytes);
     }
 
-    public String getValueAsString() {
-        try {
-            return new String(getValue(), "UTF-8");
-        } catch (final UnsupportedEncodingException uee) {
-            throw new RuntimeException(uee);
+    /**
+     * Returns the number of bytes of the minimal big-endian representation of specified unsigned integer.
+     *
+     * @param uint the unsigned integer.
+     * @return the number of bytes; {@code 0} for {@code 0}.
+     */
+    static int uintLength(final long uint) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(uint) + 7) >> 3;
+    }
+
+    /**
+     * Writes specified unsigned integer, in big-endian, to specified array.
+     *
+     * @param uint   the unsigned integer.
+     * @param dst    the array to which bytes are written.
+     * @param offset the offset in {@code dst}.
+     * @param length the number of bytes to write.
+     */
+    static void putUint(long uint, final byte[] dst, final int offset, final int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = (byte) uint;
+            uint >>>= Byte.SIZE;
+        }
+    }
+
+    /**
+     * Reads a big-endian unsigned integer from specified array.
+     *
+     * @param src    the array from which bytes are read.
+     * @param offset the offset in {@code src}.
+     * @param length the number of bytes to read.
+     * @return the unsigned integer.
+     * @throws ArithmeticException if the value is greater than {@link Long#MAX_VALUE}.
+     */
+    static long getUint(final byte[] src, final int offset, final int length) {
+        long uint = 0L;
+        for (int i = offset; i < offset + length; i++) {
+            if ((uint >>> (Long.SIZE - Byte.SIZE - 1)) != 0L) {
+                throw new ArithmeticException("value exceeds " + Long.MAX_VALUE);
+            }
+            uint = (uint << Byte.SIZE) | (src[i] & 0xFF);
+        }
+        return uint;
+    }
+
+    /**
+     * Returns the value as an unsigned integer without creating a {@link BigInteger}.
+     *
+     * @return the value as an unsigned integer.
+     * @throws ArithmeticException if the value is greater than {@link Integer#MAX_VALUE}.
+     * @see #getValueAsUint()
+     */
+    public int getValueAsInt() {
+        final long valueAsLong = getValueAsLong();
+        if (valueAsLong > Integer.MAX_VALUE) {
+            throw new ArithmeticException("value(" + valueAsLong + ") exceeds " + Integer.MAX_VALUE);
+        }
+        return (int) valueAsLong;
+    }
+
+    /**
+     * Replaces the value with the minimal big-endian representation of specified unsigned integer.
+     *
+     * @param valueAsInt the unsigned integer.
+     * @see #setValueAsUint(BigInteger)
+     */
+    public void setValueAsInt(final int valueAsInt) {
+        if (valueAsInt < 0) {
+            throw new IllegalArgumentException("valueAsInt(" + valueAsInt + ") < 0");
         }
+        setValueAsLong(valueAsInt);
+    }
+
+    /**
+     * Returns the value as an unsigned integer without creating a {@link BigInteger}.
+     *
+     * @return the value as an unsigned integer.
+     * @throws ArithmeticException if the value is greater than {@link Long#MAX_VALUE}.
+     * @see #getValueAsUint()
+     */
+    public long getValueAsLong() {
+        return getUint(value, 0, value.length);
     }
 
+    /**
+     * Replaces the value with the minimal big-endian representation of specified unsigned integer.
+     *
+     * @param valueAsLong the unsigned integer.
+     * @see #setValueAsUint(BigInteger)
+     */
+    public void setValueAsLong(final long valueAsLong) {
+        if (valueAsLong < 0L) {
+            throw new IllegalArgumentException("valueAsLong(" + valueAsLong + ") < 0");
+        }
+        final byte[] value = new byte[uintLength(valueAsLong)];
+        putUint(valueAsLong, value, 0, value.length);
+        setValue(value);
+    }
+
+    /**
+     * Returns the value decoded in UTF-8. Short values are served from a shared cache.
+     *
+     * @return the value as a string.
+     */
+    public String getValueAsString() {
+        return OptionValueCache.SHARED.decode(value, 0, value.length);
+    }
+
+    /**
+     * Replaces the value with the UTF-8 encoding of specified string. Short values are served from a shared cache.
+     *
+     * @param valueAsString the string value.
+     */
     public void setValueAsString(final String valueAsString) {
         if (valueAsString == null) {
             throw new NullPointerException("valueAsString is null");
         }
-        try {
-            setValue(valueAsString.getBytes("UTF-8"));
-        } catch (final UnsupportedEncodingException uee) {
-            throw new RuntimeException(uee);
-        }
+        final byte[] encoded = OptionValueCache.SHARED.encode(valueAsString);
+        setValue(Utils.copyOf(encoded, encoded.length)); // the encoded might be shared
     }
 
     // -----------------------------------------------------------------------------------------------------------------
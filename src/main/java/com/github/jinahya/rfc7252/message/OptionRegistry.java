@@ -0,0 +1,335 @@
+package com.github.jinahya.rfc7252.message;
+
+/**
+ * A registry of option definitions. Each registered option number has its format, whether it is repeatable, and the
+ * minimum and maximum lengths of its values, while being critical, unsafe-to-forward or NoCacheKey is derived from the
+ * number itself.
+ * <p>
+ * Definitions of numbers less than {@value #DENSE_SIZE} are held in a dense array and others in an open-addressing
+ * table of primitives, so that each lookup takes constant time without boxing. Definitions are packed into {@code
+ * int}s.
+ * <p>
+ * Instances of this class are not thread-safe while being modified; lookups are safe once an instance is safely
+ * published. The {@link #getDefault() default instance} is unmodifiable.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ * @see <a href="https://tools.ietf.org/html/rfc7252#section-5.10">5.10. Option Definitions (RFC 7252)</a>
+ */
+public class OptionRegistry {
+
+    /**
+     * A format for options of empty values. The value is {@value}.
+     */
+    public static final int FORMAT_EMPTY = 0;
+
+    /**
+     * A format for options of opaque sequences of bytes. The value is {@value}.
+     */
+    public static final int FORMAT_OPAQUE = 1;
+
+    /**
+     * A format for options of non-negative integers in network byte order. The value is {@value}.
+     */
+    public static final int FORMAT_UINT = 2;
+
+    /**
+     * A format for options of UTF-8 strings. The value is {@value}.
+     */
+    public static final int FORMAT_STRING = 3;
+
+    /**
+     * The number of option numbers held in the dense array. The value is {@value}.
+     */
+    public static final int DENSE_SIZE = 2048;
+
+    private static final int MAX_NUMBER = 65535;
+
+    private static final int MAX_LENGTH = Option.C_65804; // the largest encodable length
+
+    // ------------------------------------------------------------------------------------------------------ definition
+    private static final int REGISTERED = 1 << 31;
+
+    private static final int REPEATABLE = 1 << 30;
+
+    private static final int SHIFT_FORMAT = 28;
+
+    private static final int SHIFT_MIN_LENGTH = 17;
+
+    private static final int MASK_LENGTH = (1 << 17) - 1; // 11 bits for min and 17 bits for max
+
+    private static final int MAX_MIN_LENGTH = (1 << 11) - 1;
+
+    private static int definition(final int format, final boolean repeatable, final int minLength,
+                                  final int maxLength) {
+        return REGISTERED | (repeatable ? REPEATABLE : 0) | (format << SHIFT_FORMAT) | (minLength << SHIFT_MIN_LENGTH)
+               | maxLength;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private static final OptionRegistry DEFAULT;
+
+    static {
+        final OptionRegistry registry = new OptionRegistry();
+        registry.register(Option.NUMBER_IF_MATCH, FORMAT_OPAQUE, true, 0, 8);
+        registry.register(Option.NUMBER_URI_HOST, FORMAT_STRING, false, 1, 255);
+        registry.register(Option.NUMBER_ETAG, FORMAT_OPAQUE, true, 1, 8);
+        registry.register(Option.NUMBER_IF_NON_MATCH, FORMAT_EMPTY, false, 0, 0);
+        registry.register(Option.NUMBER_OBSERVE, FORMAT_UINT, false, 0, 3);
+        registry.register(Option.NUMBER_URI_PORT, FORMAT_UINT, false, 0, 2);
+        registry.register(Option.NUMBER_LOCATION_PATH, FORMAT_STRING, true, 0, 255);
+        registry.register(Option.NUMBER_URI_PATH, FORMAT_STRING, true, 0, 255);
+        registry.register(Option.NUMBER_CONTENT_FORMAT, FORMAT_UINT, false, 0, 2);
+        registry.register(Option.NUMBER_MAX_AGE, FORMAT_UINT, false, 0, 4);
+        registry.register(Option.NUMBER_URI_QUERY, FORMAT_STRING, true, 0, 255);
+        registry.register(Option.NUMBER_ACCEPT, FORMAT_UINT, false, 0, 2);
+        registry.register(Option.NUMBER_LOCATION_QUERY, FORMAT_STRING, true, 0, 255);
+        registry.register(Option.NUMBER_BLOCK2, FORMAT_UINT, false, 0, 3);
+        registry.register(Option.NUMBER_BLOCK1, FORMAT_UINT, false, 0, 3);
+        registry.register(Option.NUMBER_SIZE2, FORMAT_UINT, false, 0, 4);
+        registry.register(Option.NUMBER_PROXY_URI, FORMAT_STRING, false, 1, 1034);
+        registry.register(Option.NUMBER_PROXY_SCHEME, FORMAT_STRING, false, 1, 255);
+        registry.register(Option.NUMBER_SIZE1, FORMAT_UINT, false, 0, 4);
+        registry.unmodifiable = true;
+        DEFAULT = registry;
+    }
+
+    /**
+     * Returns the unmodifiable instance of options defined by RFC 7252, RFC 7641 and RFC 7959.
+     *
+     * @return the default instance.
+     */
+    public static OptionRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty instance.
+     */
+    public OptionRegistry() {
+        super();
+    }
+
+    /**
+     * Creates a new instance with the definitions of specified registry, e.g. the {@link #getDefault() default
+     * instance}, to be extended.
+     *
+     * @param source the registry whose definitions are copied.
+     */
+    public OptionRegistry(final OptionRegistry source) {
+        this();
+        if (source == null) {
+            throw new NullPointerException("source is null");
+        }
+        System.arraycopy(source.dense, 0, dense, 0, DENSE_SIZE);
+        keys = new int[source.keys.length];
+        values = new int[source.values.length];
+        System.arraycopy(source.keys, 0, keys, 0, keys.length);
+        System.arraycopy(source.values, 0, values, 0, values.length);
+        sparseSize = source.sparseSize;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Registers, or replaces, the definition of specified option number.
+     *
+     * @param number     the option number.
+     * @param format     the format; one of {@link #FORMAT_EMPTY}, {@link #FORMAT_OPAQUE}, {@link #FORMAT_UINT} and
+     *                   {@link #FORMAT_STRING}.
+     * @param repeatable a flag for repeatable options.
+     * @param minLength  the minimum length of values.
+     * @param maxLength  the maximum length of values.
+     * @return this registry.
+     * @throws IllegalStateException if this registry is unmodifiable.
+     */
+    public OptionRegistry register(final int number, final int format, final boolean repeatable, final int minLength,
+                                   final int maxLength) {
+        if (unmodifiable) {
+            throw new IllegalStateException("unmodifiable");
+        }
+        if (number < 0 || number > MAX_NUMBER) {
+            throw new IllegalArgumentException("number(" + number + ") is out of range");
+        }
+        if (format < FORMAT_EMPTY || format > FORMAT_STRING) {
+            throw new IllegalArgumentException("format(" + format + ") is unknown");
+        }
+        if (minLength < 0 || minLength > MAX_MIN_LENGTH) {
+            throw new IllegalArgumentException("minLength(" + minLength + ") is out of range");
+        }
+        if (maxLength < minLength || maxLength > MAX_LENGTH) {
+            throw new IllegalArgumentException("maxLength(" + maxLength + ") is out of range");
+        }
+        final int definition = definition(format, repeatable, minLength, maxLength);
+        if (number < DENSE_SIZE) {
+            dense[number] = definition;
+        } else {
+            put(number, definition);
+        }
+        return this;
+    }
+
+    private int definition(final int number) {
+        if (number >= 0 && number < DENSE_SIZE) {
+            return dense[number];
+        }
+        final int mask = keys.length - 1;
+        for (int i = mix(number) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == number) {
+                return values[i];
+            }
+        }
+        return 0;
+    }
+
+    private void put(final int number, final int definition) {
+        int mask = keys.length - 1;
+        for (int i = mix(number) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == number) {
+                values[i] = definition;
+                return;
+            }
+        }
+        if ((sparseSize + 1) << 1 > keys.length) {
+            final int[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new int[oldKeys.length << 1];
+            values = new int[oldKeys.length << 1];
+            sparseSize = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+            mask = keys.length - 1;
+        }
+        int i = mix(number) & mask;
+        while (values[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = number;
+        values[i] = definition;
+        sparseSize++;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether specified option number is registered.
+     *
+     * @param number the option number.
+     * @return {@code true} if registered; {@code false} otherwise.
+     */
+    public boolean isRegistered(final int number) {
+        return definition(number) != 0;
+    }
+
+    /**
+     * Returns the format of specified option number.
+     *
+     * @param number the option number.
+     * @return the format; {@code -1} if not registered.
+     */
+    public int getFormat(final int number) {
+        final int definition = definition(number);
+        return definition == 0 ? -1 : (definition >> SHIFT_FORMAT) & 0x03;
+    }
+
+    /**
+     * Checks whether specified option number is of a repeatable option.
+     *
+     * @param number the option number.
+     * @return {@code true} if registered and repeatable; {@code false} otherwise.
+     */
+    public boolean isRepeatable(final int number) {
+        return (definition(number) & REPEATABLE) != 0;
+    }
+
+    /**
+     * Returns the minimum length of values of specified option number.
+     *
+     * @param number the option number.
+     * @return the minimum length; {@code -1} if not registered.
+     */
+    public int getMinLength(final int number) {
+        final int definition = definition(number);
+        return definition == 0 ? -1 : (definition >> SHIFT_MIN_LENGTH) & MAX_MIN_LENGTH;
+    }
+
+    /**
+     * Returns the maximum length of values of specified option number.
+     *
+     * @param number the option number.
+     * @return the maximum length; {@code -1} if not registered.
+     */
+    public int getMaxLength(final int number) {
+        final int definition = definition(number);
+        return definition == 0 ? -1 : definition & MASK_LENGTH;
+    }
+
+    /**
+     * Checks whether specified length is valid for values of specified option number. Any length is valid for numbers
+     * not registered.
+     *
+     * @param number the option number.
+     * @param length the length of a value.
+     * @return {@code true} if valid; {@code false} otherwise.
+     */
+    public boolean isValidLength(final int number, final int length) {
+        final int definition = definition(number);
+        return definition == 0 || (length >= ((definition >> SHIFT_MIN_LENGTH) & MAX_MIN_LENGTH)
+                                   && length <= (definition & MASK_LENGTH));
+    }
+
+    /**
+     * Checks whether specified option number is of a critical option.
+     *
+     * @param number the option number.
+     * @return {@code true} if critical; {@code false} if elective.
+     * @see Option#isCritical(int)
+     */
+    public boolean isCritical(final int number) {
+        return Option.isCritical(number);
+    }
+
+    /**
+     * Checks whether specified option number is of an unsafe-to-forward option.
+     *
+     * @param number the option number.
+     * @return {@code true} if unsafe to forward; {@code false} otherwise.
+     * @see Option#isUnsafe(int)
+     */
+    public boolean isUnsafe(final int number) {
+        return Option.isUnsafe(number);
+    }
+
+    /**
+     * Checks whether specified option number is of a NoCacheKey option.
+     *
+     * @param number the option number.
+     * @return {@code true} if NoCacheKey; {@code false} otherwise.
+     * @see Option#isNoCacheKey(int)
+     */
+    public boolean isNoCacheKey(final int number) {
+        return Option.isNoCacheKey(number);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final int[] dense = new int[DENSE_SIZE]; // 0 for not registered
+
+    private int[] keys = new int[8];
+
+    private int[] values = new int[8]; // 0 for empty slots
+
+    private int sparseSize;
+
+    private boolean unmodifiable;
+}
@@ -0,0 +1,392 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact table of options backed by primitive arrays. Each entry is a number plus an offset and a length into a
+ * single value arena shared by all entries, so that a message holds its options in a fixed number of objects no matter
+ * how many options it has.
+ * <p>
+ * Entries are always sorted by their numbers, so the table can be encoded in a single pass without modifying it.
+ * <p>
+ * {@link #clear() Clearing} a table retains its capacity for following entries.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+final class OptionTable implements Serializable {
+
+    private static final long serialVersionUID = 4016262012361468232L;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final int INITIAL_ARENA_CAPACITY = 64;
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new empty table.
+     */
+    OptionTable() {
+        super();
+        numbers = new int[INITIAL_CAPACITY];
+        offsets = new int[INITIAL_CAPACITY];
+        lengths = new int[INITIAL_CAPACITY];
+        arena = new byte[INITIAL_ARENA_CAPACITY];
+    }
+
+    /**
+     * Creates a new table of the entries of specified table.
+     *
+     * @param source the table whose entries are copied.
+     */
+    OptionTable(final OptionTable source) {
+        super();
+        final int capacity = Math.max(source.size, INITIAL_CAPACITY);
+        numbers = Utils.copyOf(source.numbers, capacity);
+        offsets = Utils.copyOf(source.offsets, capacity);
+        lengths = Utils.copyOf(source.lengths, capacity);
+        arena = Utils.copyOf(source.arena, Math.max(source.arenaSize, INITIAL_ARENA_CAPACITY));
+        size = source.size;
+        arenaSize = source.arenaSize;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder().append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(numbers[i]).append('(').append(lengths[i]).append(')');
+        }
+        return builder.append(']').toString();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        final OptionTable that = (OptionTable) obj;
+        if (size != that.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (numbers[i] != that.numbers[i]) return false;
+            if (lengths[i] != that.lengths[i]) return false;
+            for (int j = 0; j < lengths[i]; j++) {
+                if (arena[offsets[i] + j] != that.arena[that.offsets[i] + j]) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + (31 * numbers[i] + Utils.hashCode(arena, offsets[i], lengths[i]));
+        }
+        return result;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Removes all entries while retaining the capacity.
+     */
+    void clear() {
+        size = 0;
+        arenaSize = 0;
+    }
+
+    /**
+     * Inserts a new entry of specified number whose value space of specified length is reserved in the arena. The entry
+     * is placed after all entries whose numbers are less than or equal to specified number so that entries stay sorted
+     * by their numbers and repeated options keep their order of insertion.
+     *
+     * @param number the option number.
+     * @param length the length of the value.
+     * @return the offset of the reserved value space in {@link #arena()}.
+     */
+    int add(final int number, final int length) {
+        if (number < 0) {
+            throw new IllegalArgumentException("number(" + number + ") < 0");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("length(" + length + ") < 0");
+        }
+        if (length > Option.MAX_VALUE_LENGTH) {
+            throw new IllegalArgumentException("length(" + length + ") > " + Option.MAX_VALUE_LENGTH);
+        }
+        if (size == numbers.length) {
+            final int capacity = size << 1;
+            numbers = Utils.copyOf(numbers, capacity);
+            offsets = Utils.copyOf(offsets, capacity);
+            lengths = Utils.copyOf(lengths, capacity);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Utils.copyOf(arena, Math.max(arena.length << 1, arenaSize + length));
+        }
+        final int index = upperBound(number);
+        if (index < size) {
+            System.arraycopy(numbers, index, numbers, index + 1, size - index);
+            System.arraycopy(offsets, index, offsets, index + 1, size - index);
+            System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        }
+        final int offset = arenaSize;
+        numbers[index] = number;
+        offsets[index] = offset;
+        lengths[index] = length;
+        size++;
+        arenaSize += length;
+        return offset;
+    }
+
+    /**
+     * Returns the index of the first entry whose number is greater than specified number.
+     *
+     * @param number the number.
+     * @return the index of the first entry whose number is greater than {@code number}; {@link #size()} if none.
+     */
+    private int upperBound(final int number) {
+        if (size == 0 || numbers[size - 1] <= number) {
+            return size; // appending, as while decoding
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (numbers[mid] <= number) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Inserts a new entry of specified number and value.
+     *
+     * @param number the option number.
+     * @param value  the array of the value.
+     * @param offset the offset of the value in {@code value}.
+     * @param length the length of the value.
+     */
+    void add(final int number, final byte[] value, final int offset, final int length) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        final int index = add(number, length); // might grow the arena
+        System.arraycopy(value, offset, arena, index, length);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Reads an option, whose first byte has already been read, from specified data input and adds it.
+     *
+     * @param previousNumber the number of the previous option; {@code 0} for the first option.
+     * @param b1             the first byte already read.
+     * @param input          the data input from which remaining bytes are read.
+     * @param available      the maximum number of bytes, following {@code b1}, which can be read from {@code input}.
+     * @return the number of bytes read from {@code input}, not including {@code b1}.
+     * @throws IOException if an I/O error occurs.
+     * @see Option#read(int, DataInput, int)
+     */
+    int read(final int previousNumber, final int b1, final DataInput input, final int available) throws IOException {
+        final int deltaNibble = b1 >> 4;
+        final int lengthNibble = b1 & 0xF;
+        int count = Option.extendedBytes(deltaNibble) + Option.extendedBytes(lengthNibble);
+        if (count > available) {
+            throw new RuntimeException("message format error");
+        }
+        final int number = previousNumber + Option.readExtended(deltaNibble, input);
+        final int length = Option.readExtended(lengthNibble, input);
+        if ((count += length) > available) {
+            throw new RuntimeException("message format error");
+        }
+        final int offset = add(number, length);
+        input.readFully(arena, offset, length);
+        return count;
+    }
+
+    /**
+     * Reads an option from specified byte buffer and adds it.
+     *
+     * @param previousNumber the number of the previous option; {@code 0} for the first option.
+     * @param input          the byte buffer from which the option is read.
+     * @return the number of the option read.
+     * @see Option#read(ByteBuffer)
+     */
+    int read(final int previousNumber, final ByteBuffer input) {
+        final int b1 = input.get() & 0xFF;
+        final int number = previousNumber + Option.readExtended(b1 >> 4, input);
+        final int length = Option.readExtended(b1 & 0xF, input);
+        if (length > input.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final int offset = add(number, length);
+        input.get(arena, offset, length);
+        return number;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the exact number of bytes of all entries on the wire.
+     *
+     * @return the number of bytes of all entries on the wire.
+     */
+    int encodedSize() {
+        int encodedSize = 0;
+        int previousNumber = 0;
+        for (int i = 0; i < size; i++) {
+            encodedSize += Option.encodedSize(numbers[i] - previousNumber, lengths[i]);
+            previousNumber = numbers[i];
+        }
+        return encodedSize;
+    }
+
+    /**
+     * Writes all entries to specified data output.
+     *
+     * @param output the data output to which entries are written.
+     * @throws IOException if an I/O error occurs.
+     */
+    void write(final DataOutput output) throws IOException {
+        int previousNumber = 0;
+        for (int i = 0; i < size; i++) {
+            Option.writeHeader(numbers[i] - previousNumber, lengths[i], output);
+            output.write(arena, offsets[i], lengths[i]);
+            previousNumber = numbers[i];
+        }
+    }
+
+    /**
+     * Writes all entries to specified byte buffer.
+     *
+     * @param output the byte buffer to which entries are written.
+     */
+    void write(final ByteBuffer output) {
+        int previousNumber = 0;
+        for (int i = 0; i < size; i++) {
+            Option.writeHeader(numbers[i] - previousNumber, lengths[i], output);
+            output.put(arena, offsets[i], lengths[i]);
+            previousNumber = numbers[i];
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Checks whether an option of specified number is part of the cache-key. All options but NoCacheKey ones and
+     * {@code ETag}s, which validate cached responses rather than select them, are part of the cache-key.
+     *
+     * @param number the option number.
+     * @return {@code true} if part of the cache-key; {@code false} otherwise.
+     */
+    static boolean isCacheKey(final int number) {
+        return !Option.isNoCacheKey(number) && number != Option.NUMBER_ETAG;
+    }
+
+    /**
+     * Returns the number of bytes of the entries, which are part of the cache-key, on the wire.
+     *
+     * @return the number of bytes of the cache-key entries on the wire.
+     * @see #isCacheKey(int)
+     */
+    int cacheKeySize() {
+        int cacheKeySize = 0;
+        int previousNumber = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isCacheKey(numbers[i])) {
+                continue;
+            }
+            cacheKeySize += Option.encodedSize(numbers[i] - previousNumber, lengths[i]);
+            previousNumber = numbers[i];
+        }
+        return cacheKeySize;
+    }
+
+    /**
+     * Writes the entries, which are part of the cache-key, to specified byte buffer as if no other entries exist.
+     *
+     * @param output the byte buffer to which entries are written.
+     * @see #isCacheKey(int)
+     */
+    void writeCacheKey(final ByteBuffer output) {
+        int previousNumber = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isCacheKey(numbers[i])) {
+                continue;
+            }
+            Option.writeHeader(numbers[i] - previousNumber, lengths[i], output);
+            output.put(arena, offsets[i], lengths[i]);
+            previousNumber = numbers[i];
+        }
+    }
+
+    /**
+     * Returns the 64-bit hash of the cache-key of specified code and the entries, which are part of the cache-key.
+     *
+     * @param code the code.
+     * @return the hash of the cache-key.
+     * @see CacheKeyHash
+     */
+    long cacheKeyHash(final int code) {
+        long state = CacheKeyHash.start(code);
+        for (int i = 0; i < size; i++) {
+            if (isCacheKey(numbers[i])) {
+                state = CacheKeyHash.option(state, numbers[i], arena, offsets[i], lengths[i]);
+            }
+        }
+        return CacheKeyHash.finish(state);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    int size() {
+        return size;
+    }
+
+    int number(final int index) {
+        return numbers[index(index)];
+    }
+
+    int offset(final int index) {
+        return offsets[index(index)];
+    }
+
+    int length(final int index) {
+        return lengths[index(index)];
+    }
+
+    byte[] arena() {
+        return arena;
+    }
+
+    private int index(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index(" + index + ") out of [0.." + size + ")");
+        }
+        return index;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private int size;
+
+    private int[] numbers;
+
+    private int[] offsets;
+
+    private int[] lengths;
+
+    private byte[] arena;
+
+    private int arenaSize;
+}
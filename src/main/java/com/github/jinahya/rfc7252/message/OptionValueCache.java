@@ -0,0 +1,255 @@
+package com.github.jinahya.rfc7252.message;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A shared, bounded cache of string option values and their UTF-8 encodings. Options such as {@code Uri-Path}, {@code
+ * Uri-Host} and {@code Location-Path} repeat the same few strings across messages, so both directions of the
+ * conversion are served from the cache once a string has been seen.
+ * <p>
+ * The cache is a pair of direct-mapped tables of immutable entries, one for each direction; a colliding entry simply
+ * replaces the older one. Slots are read and written without locking, which is safe because entries are immutable and
+ * any entry found is verified before use.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+final class OptionValueCache {
+
+    /**
+     * The maximum length, in bytes, of values to cache. The value is {@value}.
+     */
+    static final int MAX_CACHED_LENGTH = 64;
+
+    /**
+     * The number of slots of each table. The value is {@value}.
+     */
+    static final int CAPACITY = 1024;
+
+    /**
+     * The instance shared by {@link Option} and {@link Message}.
+     */
+    static final OptionValueCache SHARED = new OptionValueCache(CAPACITY);
+
+    private static final class Entry {
+
+        private Entry(final String string, final byte[] bytes, final int bytesHash) {
+            super();
+            this.string = string;
+            this.bytes = bytes;
+            this.bytesHash = bytesHash;
+        }
+
+        private boolean matches(final byte[] src, final int offset, final int length, final int hash) {
+            if (bytesHash != hash || bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != src[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private final String string;
+
+        private final byte[] bytes;
+
+        private final int bytesHash;
+    }
+
+    private static int index(final int hash, final int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Encodes specified string in UTF-8.
+     *
+     * @param string the string to encode.
+     * @return a new array of encoded bytes.
+     */
+    static byte[] encodeUtf8(final String string) {
+        final int length = string.length();
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                       && Character.isLowSurrogate(string.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                size += 1; // '?'
+            } else {
+                size += 3;
+            }
+        }
+        final byte[] bytes = new byte[size];
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                bytes[j++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[j++] = (byte) (0xC0 | (c >> 6));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                       && Character.isLowSurrogate(string.charAt(i + 1))) {
+                final int p = Character.toCodePoint(c, string.charAt(++i));
+                bytes[j++] = (byte) (0xF0 | (p >> 18));
+                bytes[j++] = (byte) (0x80 | ((p >> 12) & 0x3F));
+                bytes[j++] = (byte) (0x80 | ((p >> 6) & 0x3F));
+                bytes[j++] = (byte) (0x80 | (p & 0x3F));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                bytes[j++] = '?';
+            } else {
+                bytes[j++] = (byte) (0xE0 | (c >> 12));
+                bytes[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[j++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes specified region of specified array in UTF-8. Malformed input is decoded by the platform decoder which
+     * replaces malformed sequences.
+     *
+     * @param src    the array to decode.
+     * @param offset the offset of the region.
+     * @param length the length of the region.
+     * @return the decoded string.
+     */
+    static String decodeUtf8(final byte[] src, final int offset, final int length) {
+        final char[] chars = new char[length];
+        int j = 0;
+        for (int i = offset, end = offset + length; i < end; ) {
+            final int b = src[i++] & 0xFF;
+            if (b < 0x80) {
+                chars[j++] = (char) b;
+                continue;
+            }
+            final int n; // the number of continuation bytes
+            int p;
+            if ((b & 0xE0) == 0xC0) {
+                n = 1;
+                p = b & 0x1F;
+            } else if ((b & 0xF0) == 0xE0) {
+                n = 2;
+                p = b & 0x0F;
+            } else if ((b & 0xF8) == 0xF0) {
+                n = 3;
+                p = b & 0x07;
+            } else {
+                return decodeUtf8Malformed(src, offset, length);
+            }
+            if (i + n > end) {
+                return decodeUtf8Malformed(src, offset, length);
+            }
+            for (int k = 0; k < n; k++) {
+                final int c = src[i++] & 0xFF;
+                if ((c & 0xC0) != 0x80) {
+                    return decodeUtf8Malformed(src, offset, length);
+                }
+                p = (p << 6) | (c & 0x3F);
+            }
+            if ((n == 1 && p < 0x80) || (n == 2 && (p < 0x800 || (p >= 0xD800 && p <= 0xDFFF)))
+                || (n == 3 && (p < 0x10000 || p > 0x10FFFF))) {
+                return decodeUtf8Malformed(src, offset, length);
+            }
+            if (n == 3) {
+                chars[j++] = (char) ((p >>> 10) + (Character.MIN_HIGH_SURROGATE - (0x10000 >>> 10)));
+                chars[j++] = (char) ((p & 0x3FF) + Character.MIN_LOW_SURROGATE);
+            } else {
+                chars[j++] = (char) p;
+            }
+        }
+        return new String(chars, 0, j);
+    }
+
+    private static String decodeUtf8Malformed(final byte[] src, final int offset, final int length) {
+        try {
+            return new String(src, offset, length, "UTF-8");
+        } catch (final UnsupportedEncodingException uee) {
+            throw new RuntimeException(uee); // UTF-8 is always supported
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a new instance with specified number of slots.
+     *
+     * @param capacity the number of slots of each table; must be a power of two.
+     */
+    OptionValueCache(final int capacity) {
+        super();
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity(" + capacity + ") is not a positive power of two");
+        }
+        byString = new Entry[capacity];
+        byBytes = new Entry[capacity];
+        mask = capacity - 1;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the UTF-8 encoding of specified string. The returned array may be shared and must not be modified.
+     *
+     * @param string the string to encode.
+     * @return an array of encoded bytes which must not be modified.
+     */
+    byte[] encode(final String string) {
+        if (string.length() > MAX_CACHED_LENGTH) {
+            return encodeUtf8(string);
+        }
+        final int index = index(string.hashCode(), mask);
+        final Entry entry = byString[index];
+        if (entry != null && entry.string.equals(string)) {
+            return entry.bytes;
+        }
+        final byte[] bytes = encodeUtf8(string);
+        if (bytes.length <= MAX_CACHED_LENGTH) {
+            byString[index] = new Entry(string, bytes, Utils.hashCode(bytes));
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the string decoded, in UTF-8, from specified region of specified array.
+     *
+     * @param src    the array to decode.
+     * @param offset the offset of the region.
+     * @param length the length of the region.
+     * @return the decoded string.
+     */
+    String decode(final byte[] src, final int offset, final int length) {
+        if (length > MAX_CACHED_LENGTH) {
+            return decodeUtf8(src, offset, length);
+        }
+        final int hash = Utils.hashCode(src, offset, length);
+        final int index = index(hash, mask);
+        final Entry entry = byBytes[index];
+        if (entry != null && entry.matches(src, offset, length, hash)) {
+            return entry.string;
+        }
+        final String string = decodeUtf8(src, offset, length);
+        final byte[] bytes = new byte[length];
+        System.arraycopy(src, offset, bytes, 0, length);
+        byBytes[index] = new Entry(string, bytes, hash);
+        return string;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    private final Entry[] byString;
+
+    private final Entry[] byBytes;
+
+    private final int mask;
+}
@@ -13,6 +13,26 @@ final class Utils {
         return result;
     }
 
+    static int hashCode(final byte[] array, final int offset, final int length) {
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + (int) array[i];
+        }
+        return result;
+    }
+
+    static int[] copyOf(final int[] original, final int newLength) {
+        final int[] copy = new int[newLength];
+        System.arraycopy(original, 0, copy, 0, Math.min(original.length, newLength));
+        return copy;
+    }
+
+    static byte[] copyOf(final byte[] original, final int newLength) {
+        final byte[] copy = new byte[newLength];
+        System.arraycopy(original, 0, copy, 0, Math.min(original.length, newLength));
+        return copy;
+    }
+
     private Utils() {
         super();
         //throw new AssertionError("instantiation is not allowed");
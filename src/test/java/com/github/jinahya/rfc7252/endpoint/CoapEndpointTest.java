@@ -0,0 +1,465 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.exchange.Deduplicator;
+import com.github.jinahya.rfc7252.exchange.ObserveNotifier;
+import com.github.jinahya.rfc7252.exchange.RetransmissionHandler;
+import com.github.jinahya.rfc7252.exchange.RetransmissionScheduler;
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.MessageTemplate;
+import com.github.jinahya.rfc7252.message.MessageValidator;
+import com.github.jinahya.rfc7252.message.Option;
+import com.github.jinahya.rfc7252.message.OptionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link CoapEndpoint} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class CoapEndpointTest {
+
+    private static final SocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    private static final MessageHandler ECHO = (endpoint, source, message) -> {
+        final Message response = new Message()
+                .messageId(message.getMessageId())
+                .code(Message.CODE_RESPONSE_CONTENT)
+                .token(message.getToken());
+        response.setType(Message.TYPE_ACKNOWLEDGEMENT);
+        response.setPayload(message.getPayload());
+        try {
+            endpoint.send(response, source);
+        } catch (final IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+    };
+
+    private static Message receive(final DatagramSocket client) throws IOException {
+        final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        client.receive(packet);
+        final Message message = new Message();
+        message.read(packet);
+        return message;
+    }
+
+    private static Message exchange(final DatagramSocket client, final SocketAddress server, final Message request)
+            throws IOException {
+        final byte[] bytes = request.write();
+        client.send(new DatagramPacket(bytes, bytes.length, server));
+        final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        client.receive(packet);
+        final Message response = new Message();
+        response.read(packet);
+        return response;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void run_Echo_Loopback() throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, ECHO);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            for (int i = 0; i < 16; i++) {
+                final Message request = new Message()
+                        .messageId(i)
+                        .code(Message.CODE_REQUEST_METHOD_GET)
+                        .token(new byte[] {(byte) i})
+                        .option(11, "path" + i);
+                request.setPayload(new byte[] {(byte) i, (byte) (i + 1)});
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+                assertThat(response.getMessageId()).isEqualTo(i);
+                assertThat(response.getToken()).isEqualTo(request.getToken());
+                assertThat(response.getPayload()).isEqualTo(request.getPayload());
+            }
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+        assertThat(thread.isAlive()).isFalse();
+        assertThat(endpoint.isClosed()).isTrue();
+    }
+
+    @Test
+    void run_DiscardMalformed_Loopback() throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, ECHO);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final byte[] malformed = {0x41, 0x01, 0x00}; // truncated
+            client.send(new DatagramPacket(malformed, malformed.length, endpoint.getLocalAddress()));
+            final Message request = new Message().messageId(1).code(Message.CODE_REQUEST_METHOD_GET);
+            assertThat(exchange(client, endpoint.getLocalAddress(), request).getMessageId()).isEqualTo(1);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void run_Rejected_InvalidOptionValueLength() throws IOException, InterruptedException {
+        final StripedCoapMetrics metrics = new StripedCoapMetrics();
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, ECHO);
+        endpoint.setMetrics(metrics);
+        assertThat(endpoint.getOptionRegistry()).isSameAs(OptionRegistry.getDefault());
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            { // a confirmable request with If-None-Match of one byte
+                final byte[] request = {0x41, 0x01, 0x00, 0x02, 0x07, 0x51, 0x00};
+                client.send(new DatagramPacket(request, request.length, endpoint.getLocalAddress()));
+                final Message response = receive(client);
+                assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_BAD_OPTION);
+                assertThat(response.getMessageId()).isEqualTo(2);
+                assertThat(response.getToken()).containsExactly(7);
+            }
+            { // a non-confirmable request
+                final byte[] request = {0x50, 0x01, 0x00, 0x03, 0x51, 0x00};
+                client.send(new DatagramPacket(request, request.length, endpoint.getLocalAddress()));
+                final Message reset = receive(client);
+                assertThat(reset.getType()).isEqualTo(Message.TYPE_RESET);
+                assertThat(reset.getCode()).isEqualTo(Message.CODE_EMPTY_MESSAGE);
+                assertThat(reset.getMessageId()).isEqualTo(3);
+            }
+            { // an acknowledgement is ignored
+                final byte[] acknowledgement = {0x60, 0x45, 0x00, 0x04, 0x51, 0x00};
+                client.send(new DatagramPacket(acknowledgement, acknowledgement.length, endpoint.getLocalAddress()));
+            }
+            final Message request = new Message().messageId(1).code(Message.CODE_REQUEST_METHOD_GET);
+            assertThat(exchange(client, endpoint.getLocalAddress(), request).getMessageId()).isEqualTo(1);
+            assertThat(metrics.getMalformedCount(MessageValidator.INVALID_OPTION_VALUE_LENGTH)).isEqualTo(3L);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void run_Recorded_Metrics() throws IOException, InterruptedException {
+        final StripedCoapMetrics metrics = new StripedCoapMetrics();
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, ECHO);
+        endpoint.setMetrics(metrics);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final byte[] malformed = {0x41, 0x01, 0x00}; // truncated
+            client.send(new DatagramPacket(malformed, malformed.length, endpoint.getLocalAddress()));
+            final Message request = new Message().messageId(1).code(Message.CODE_REQUEST_METHOD_GET).option(11, "a");
+            final Message response = exchange(client, endpoint.getLocalAddress(), request);
+            assertThat(metrics.getMalformedCount()).isEqualTo(1L);
+            assertThat(metrics.getDecodedCount()).isEqualTo(1L);
+            assertThat(metrics.getDecodedBytes()).isEqualTo(request.encodedSize());
+            assertThat(metrics.getDecodedCountOfCode(Message.CODE_REQUEST_METHOD_GET)).isEqualTo(1L);
+            assertThat(metrics.getEncodedCount()).isEqualTo(1L);
+            assertThat(metrics.getEncodedBytes()).isEqualTo(response.encodedSize());
+            assertThat(metrics.getEncodedCountOfType(Message.TYPE_ACKNOWLEDGEMENT)).isEqualTo(1L);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+        assertThrows(IllegalStateException.class, () -> endpoint.setMetrics(null));
+    }
+
+    @Test
+    void run_RespondedOnce_Duplicate() throws IOException, InterruptedException {
+        final AtomicInteger handled = new AtomicInteger();
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, (e, s, m) -> {
+            handled.incrementAndGet();
+            ECHO.handle(e, s, m);
+        });
+        endpoint.setDeduplicator(new Deduplicator());
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Message request = new Message()
+                    .messageId(1)
+                    .code(Message.CODE_REQUEST_METHOD_GET)
+                    .token(new byte[] {1});
+            final byte[] first = exchange(client, endpoint.getLocalAddress(), request).write();
+            final byte[] second = exchange(client, endpoint.getLocalAddress(), request).write();
+            assertThat(second).isEqualTo(first);
+            request.setMessageId(2);
+            assertThat(exchange(client, endpoint.getLocalAddress(), request).getMessageId()).isEqualTo(2);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+        assertThat(handled).hasValue(2);
+    }
+
+    @Test
+    void send_Retransmitted_Confirmable() throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, (e, s, m) -> {
+        });
+        final BlockingQueue<Integer> timedOut = new LinkedBlockingQueue<>();
+        endpoint.setRetransmissionScheduler(new RetransmissionScheduler(new RetransmissionHandler() {
+            @Override
+            public void retransmit(final SocketAddress peer, final ByteBuffer encoded) {
+                try {
+                    endpoint.send(encoded, peer);
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }
+
+            @Override
+            public void timedOut(final SocketAddress peer, final int messageId) {
+                timedOut.add(messageId);
+            }
+        }, 10L, 64, new Random()) {
+            @Override
+            protected long currentTimeMillis() {
+                return super.currentTimeMillis() * 100L; // 100 times faster
+            }
+        });
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket server = new DatagramSocket(LOOPBACK)) {
+            server.setSoTimeout(10000);
+            final Message request = new Message().messageId(1).code(Message.CODE_REQUEST_METHOD_GET);
+            endpoint.send(request, server.getLocalSocketAddress());
+            final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+            server.receive(packet);
+            final byte[] original = Arrays.copyOf(packet.getData(), packet.getLength());
+            server.receive(packet); // retransmission
+            assertThat(Arrays.copyOf(packet.getData(), packet.getLength())).isEqualTo(original);
+            final byte[] ack = new Message().messageId(1).write();
+            ack[0] = (byte) (ack[0] | (Message.TYPE_ACKNOWLEDGEMENT << 4));
+            server.send(new DatagramPacket(ack, ack.length, packet.getSocketAddress()));
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (endpoint.getRetransmissionScheduler().size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertThat(endpoint.getRetransmissionScheduler().size()).isZero();
+            endpoint.send(request.messageId(2), server.getLocalSocketAddress());
+            assertThat(timedOut.poll(10L, TimeUnit.SECONDS)).isEqualTo(2);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void send_Queued_OtherThread()throws IOException, InterruptedException {
+        final BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        final CoapEndpoint server = new CoapEndpoint(LOOPBACK, (endpoint, source, message) -> {
+            final Message copy = new Message();
+            try {
+                copy.read(message.write());
+            } catch (final IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+            received.add(copy);
+        });
+        final CoapEndpoint client = new CoapEndpoint(LOOPBACK, (endpoint, source, message) -> {
+        });
+        final Thread serverThread = new Thread(server);
+        final Thread clientThread = new Thread(client);
+        serverThread.start();
+        clientThread.start();
+        try {
+            final Message message = new Message().messageId(7).code(Message.CODE_REQUEST_METHOD_POST);
+            message.setType(Message.TYPE_NON_CONFIRMABLE);
+            client.send(message, server.getLocalAddress());
+            client.send(ByteBuffer.wrap(new Message().messageId(8).write()), server.getLocalAddress());
+            final Message first = received.poll(10L, TimeUnit.SECONDS);
+            final Message second = received.poll(10L, TimeUnit.SECONDS);
+            assertThat(first).isNotNull();
+            assertThat(first.write()).isEqualTo(message.write());
+            assertThat(second).isNotNull();
+            assertThat(second.getMessageId()).isEqualTo(8);
+        } finally {
+            client.close();
+            server.close();
+            clientThread.join(10000L);
+            serverThread.join(10000L);
+        }
+    }
+
+    @Test
+    void sendScheduled_Retransmitted_ConfirmableNotification() throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, (e, s, m) -> {
+        });
+        endpoint.setRetransmissionScheduler(new RetransmissionScheduler(new RetransmissionHandler() {
+            @Override
+            public void retransmit(final SocketAddress peer, final ByteBuffer encoded) {
+                try {
+                    endpoint.send(encoded, peer);
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }
+
+            @Override
+            public void timedOut(final SocketAddress peer, final int messageId) {
+            }
+        }, 10L, 64, new Random()) {
+            @Override
+            protected long currentTimeMillis() {
+                return super.currentTimeMillis() * 100L; // 100 times faster
+            }
+        });
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket observer = new DatagramSocket(LOOPBACK)) {
+            observer.setSoTimeout(10000);
+            final ObserveNotifier notifier = new ObserveNotifier();
+            notifier.register(observer.getLocalSocketAddress(), new byte[] {1});
+            final Message notification = new Message().code(Message.CODE_RESPONSE_CONTENT);
+            notification.setPayload(new byte[] {2});
+            assertThat(notifier.notifyObservers(notification, Message.TYPE_CONFIRMABLE, (o, i, encoded) -> {
+                try {
+                    endpoint.sendScheduled(encoded, o);
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            })).isEqualTo(1);
+            final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+            observer.receive(packet);
+            final byte[] original = Arrays.copyOf(packet.getData(), packet.getLength());
+            final Message received = new Message();
+            received.read(original);
+            assertThat(received.getType()).isEqualTo(Message.TYPE_CONFIRMABLE);
+            assertThat(received.getOptionNumber(0)).isEqualTo(Option.NUMBER_OBSERVE);
+            observer.receive(packet); // retransmission
+            assertThat(Arrays.copyOf(packet.getData(), packet.getLength())).isEqualTo(original);
+            final byte[] ack = new Message().messageId(received.getMessageId()).write();
+            ack[0] = (byte) (ack[0] | (Message.TYPE_ACKNOWLEDGEMENT << 4));
+            observer.send(new DatagramPacket(ack, ack.length, packet.getSocketAddress()));
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (endpoint.getRetransmissionScheduler().size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertThat(endpoint.getRetransmissionScheduler().size()).isZero();
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void send_EncodedImmediately_QueueNotEmpty() throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, (e, s, m) -> {
+            final Thread other = new Thread(() -> { // queued while the loop is in this handler
+                try {
+                    final Message queued = new Message().messageId(1000 + m.getMessageId());
+                    queued.setType(Message.TYPE_NON_CONFIRMABLE);
+                    e.send(queued, s);
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            });
+            other.start();
+            try {
+                other.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            ECHO.handle(e, s, m); // shares the token and the payload of the reused message
+        });
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final int count = 8;
+            for (int i = 0; i < count; i++) { // sent back-to-back so that they are received in a batch
+                final Message request = new Message()
+                        .messageId(i)
+                        .code(Message.CODE_REQUEST_METHOD_POST)
+                        .token(new byte[] {(byte) i, (byte) i});
+                request.setPayload(new byte[] {(byte) i, (byte) i, (byte) i});
+                final byte[] bytes = request.write();
+                client.send(new DatagramPacket(bytes, bytes.length, endpoint.getLocalAddress()));
+            }
+            int echoed = 0;
+            for (int i = 0; i < count * 2; i++) {
+                final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+                client.receive(packet);
+                final Message response = new Message();
+                response.read(packet);
+                if (response.getMessageId() >= 1000) {
+                    continue;
+                }
+                final byte b = (byte) response.getMessageId();
+                assertThat(response.getToken()).isEqualTo(new byte[] {b, b});
+                assertThat(response.getPayload()).isEqualTo(new byte[] {b, b, b});
+                echoed++;
+            }
+            assertThat(echoed).isEqualTo(count);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void send_Template_BothThreads() throws IOException, InterruptedException {
+        final Message content = new Message().code(Message.CODE_RESPONSE_CONTENT);
+        content.setType(Message.TYPE_ACKNOWLEDGEMENT);
+        content.setPayload(new byte[] {'o', 'k'});
+        final MessageTemplate template = new MessageTemplate(content);
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, (e, s, m) -> {
+            try {
+                e.send(template, m.getMessageId(), m.getToken(), s);
+            } catch (final IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        });
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Message request = new Message()
+                    .messageId(3)
+                    .code(Message.CODE_REQUEST_METHOD_GET)
+                    .token(new byte[] {4, 5});
+            final Message response = exchange(client, endpoint.getLocalAddress(), request);
+            assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+            assertThat(response.getMessageId()).isEqualTo(3);
+            assertThat(response.getToken()).isEqualTo(new byte[] {4, 5});
+            assertThat(response.getPayload()).isEqualTo(new byte[] {'o', 'k'});
+            endpoint.send(template, 4, null, client.getLocalSocketAddress()); // queued
+            final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+            client.receive(packet);
+            assertThat(Arrays.copyOf(packet.getData(), packet.getLength())).isEqualTo(template.write(4, null));
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void send_IOException_Closed() throws IOException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, ECHO);
+        endpoint.close();
+        assertThat(endpoint.isClosed()).isTrue();
+        assertThrows(IOException.class, () -> endpoint.send(new Message(), new InetSocketAddress(5683)));
+    }
+}
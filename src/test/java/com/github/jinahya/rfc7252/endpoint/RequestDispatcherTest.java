@@ -0,0 +1,375 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.exchange.Deduplicator;
+import com.github.jinahya.rfc7252.exchange.MessageIdGenerator;
+import com.github.jinahya.rfc7252.exchange.ResponseCache;
+import com.github.jinahya.rfc7252.exchange.RetransmissionHandler;
+import com.github.jinahya.rfc7252.exchange.RetransmissionScheduler;
+import com.github.jinahya.rfc7252.exchange.TransmissionParameters;
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A class for testing {@link RequestDispatcher} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RequestDispatcherTest {
+
+    private static final SocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    private static final RequestHandler HANDLER = (source, request) -> {
+        if (request.getCode() == Message.CODE_REQUEST_METHOD_DELETE) {
+            throw new IllegalStateException("not deletable");
+        }
+        if (request.getCode() == Message.CODE_REQUEST_METHOD_PUT) {
+            return null;
+        }
+        Thread.sleep(10L); // blocking
+        final Message response = new Message().code(Message.CODE_RESPONSE_CONTENT);
+        response.setPayload(request.getPayload());
+        return response;
+    };
+
+    private static Message receive(final DatagramSocket client) throws IOException {
+        final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        client.receive(packet);
+        final Message message = new Message();
+        message.read(packet);
+        return message;
+    }
+
+    private static Message exchange(final DatagramSocket client, final SocketAddress server, final Message request)
+            throws IOException {
+        final byte[] bytes = request.write();
+        client.send(new DatagramPacket(bytes, bytes.length, server));
+        final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        client.receive(packet);
+        final Message response = new Message();
+        response.read(packet);
+        return response;
+    }
+
+    private static void assertDispatched(final ExecutorService executor) throws IOException, InterruptedException {
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, new RequestDispatcher(executor, HANDLER, null));
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            {
+                final Message request = new Message()
+                        .messageId(1)
+                        .code(Message.CODE_REQUEST_METHOD_GET)
+                        .token(new byte[] {1, 2});
+                request.setPayload(new byte[] {3});
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+                assertThat(response.getMessageId()).isEqualTo(1);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+                assertThat(response.getToken()).containsExactly(1, 2);
+                assertThat(response.getPayload()).containsExactly(3);
+            }
+            {
+                final Message request = new Message()
+                        .messageId(2)
+                        .code(Message.CODE_REQUEST_METHOD_GET)
+                        .token(new byte[] {4});
+                request.setType(Message.TYPE_NON_CONFIRMABLE);
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getType()).isEqualTo(Message.TYPE_NON_CONFIRMABLE);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+                assertThat(response.getToken()).containsExactly(4);
+            }
+            {
+                final Message request = new Message().messageId(3).code(Message.CODE_REQUEST_METHOD_PUT);
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+                assertThat(response.getMessageId()).isEqualTo(3);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_EMPTY_MESSAGE);
+            }
+            {
+                final Message request = new Message().messageId(4).code(Message.CODE_REQUEST_METHOD_DELETE);
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getMessageId()).isEqualTo(4);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_INTERNAL_SERVER_ERROR);
+            }
+            executor.shutdown();
+            {
+                final Message request = new Message().messageId(5).code(Message.CODE_REQUEST_METHOD_GET);
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getMessageId()).isEqualTo(5);
+                assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_SERVICE_UNAVAILABLE);
+            }
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void handle_Dispatched_PlatformThreads() throws IOException, InterruptedException {
+        assertDispatched(Executors.newCachedThreadPool());
+    }
+
+    @Test
+    void handle_Dispatched_VirtualThreads() throws IOException, InterruptedException {
+        assumeTrue(VirtualThreads.isSupported());
+        assertDispatched(VirtualThreads.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Test
+    void handle_SeparateResponse_SlowHandler() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final RequestDispatcher dispatcher = new RequestDispatcher(executor, (source, request) -> {
+            Thread.sleep(TransmissionParameters.ACK_TIMEOUT + 200L);
+            return new Message().code(Message.CODE_RESPONSE_CONTENT);
+        }, null);
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.setAcknowledgementDelay(-1L));
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        endpoint.setDeduplicator(new Deduplicator());
+        endpoint.setRetransmissionScheduler(new RetransmissionScheduler(new RetransmissionHandler() {
+            @Override
+            public void retransmit(final SocketAddress peer, final ByteBuffer encoded) {
+                try {
+                    endpoint.send(encoded, peer);
+                } catch (final IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }
+
+            @Override
+            public void timedOut(final SocketAddress peer, final int messageId) {
+            }
+        }));
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Message request = new Message()
+                    .messageId(10)
+                    .code(Message.CODE_REQUEST_METHOD_GET)
+                    .token(new byte[] {9});
+            final long started = System.currentTimeMillis();
+            final Message acknowledgement = exchange(client, endpoint.getLocalAddress(), request);
+            assertThat(System.currentTimeMillis() - started).isLessThan(TransmissionParameters.ACK_TIMEOUT);
+            assertThat(acknowledgement.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+            assertThat(acknowledgement.getCode()).isEqualTo(Message.CODE_EMPTY_MESSAGE);
+            assertThat(acknowledgement.getMessageId()).isEqualTo(10);
+            // a retransmission is acknowledged again rather than dropped
+            assertThat(exchange(client, endpoint.getLocalAddress(), request).write())
+                    .isEqualTo(acknowledgement.write());
+            final Message response = receive(client);
+            assertThat(response.getType()).isEqualTo(Message.TYPE_CONFIRMABLE);
+            assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+            assertThat(response.getToken()).containsExactly(9);
+            assertThat(endpoint.getRetransmissionScheduler().size()).isEqualTo(1);
+            final Message ack = new Message().messageId(response.getMessageId());
+            ack.setType(Message.TYPE_ACKNOWLEDGEMENT);
+            final byte[] bytes = ack.write();
+            client.send(new DatagramPacket(bytes, bytes.length, endpoint.getLocalAddress()));
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (endpoint.getRetransmissionScheduler().size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            assertThat(endpoint.getRetransmissionScheduler().size()).isZero();
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void handle_AcknowledgedByLoop_ExecutorNeverRuns() throws IOException, InterruptedException {
+        final List<Runnable> held = new CopyOnWriteArrayList<>();
+        final RequestDispatcher dispatcher = new RequestDispatcher(held::add, HANDLER, null);
+        dispatcher.setAcknowledgementDelay(200L);
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            for (int i = 1; i <= 3; i++) {
+                final Message request = new Message().messageId(i).code(Message.CODE_REQUEST_METHOD_GET);
+                final byte[] bytes = request.write();
+                client.send(new DatagramPacket(bytes, bytes.length, endpoint.getLocalAddress()));
+            }
+            final long started = System.nanoTime();
+            for (int i = 1; i <= 3; i++) {
+                final Message acknowledgement = receive(client);
+                assertThat(acknowledgement.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+                assertThat(acknowledgement.getCode()).isEqualTo(Message.CODE_EMPTY_MESSAGE);
+                assertThat(acknowledgement.getMessageId()).isEqualTo(i);
+            }
+            assertThat((System.nanoTime() - started) / 1000000L).isGreaterThanOrEqualTo(100L);
+            assertThat(held).hasSize(3);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+        }
+    }
+
+    @Test
+    void handle_AcknowledgedImmediately_ZeroDelay() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final RequestDispatcher dispatcher = new RequestDispatcher(executor, HANDLER, null);
+        dispatcher.setAcknowledgementDelay(0L);
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Message request = new Message()
+                    .messageId(1)
+                    .code(Message.CODE_REQUEST_METHOD_GET)
+                    .token(new byte[] {1});
+            final Message acknowledgement = exchange(client, endpoint.getLocalAddress(), request);
+            assertThat(acknowledgement.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+            assertThat(acknowledgement.getCode()).isEqualTo(Message.CODE_EMPTY_MESSAGE);
+            final Message response = receive(client);
+            assertThat(response.getType()).isEqualTo(Message.TYPE_CONFIRMABLE);
+            assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+            assertThat(response.getToken()).containsExactly(1);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void handle_NotCached_RejectedOrFailed() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final AtomicInteger rejections = new AtomicInteger(1);
+        final AtomicInteger failures = new AtomicInteger(1);
+        final RequestDispatcher dispatcher = new RequestDispatcher(command -> {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException();
+            }
+            executor.execute(command);
+        }, (source, request) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("failed");
+            }
+            return new Message().code(Message.CODE_RESPONSE_CONTENT);
+        }, null);
+        dispatcher.setResponseCache(new ResponseCache(65536L));
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final int[] expected = {
+                    Message.CODE_RESPONSE_SERVICE_UNAVAILABLE, Message.CODE_RESPONSE_INTERNAL_SERVER_ERROR,
+                    Message.CODE_RESPONSE_CONTENT, Message.CODE_RESPONSE_CONTENT
+            };
+            for (int i = 0; i < expected.length; i++) {
+                final Message request = new Message()
+                        .messageId(i)
+                        .code(Message.CODE_REQUEST_METHOD_GET)
+                        .option(Option.NUMBER_URI_PATH, "resource");
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getMessageId()).isEqualTo(i);
+                assertThat(response.getCode()).isEqualTo(expected[i]);
+            }
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void handle_NotCached_Observe() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final AtomicInteger registrations = new AtomicInteger();
+        final RequestDispatcher dispatcher = new RequestDispatcher(executor, (source, request) -> {
+            final int sequence = registrations.incrementAndGet();
+            return new Message()
+                    .code(Message.CODE_RESPONSE_CONTENT)
+                    .option(Option.NUMBER_OBSERVE, sequence)
+                    .option(Option.NUMBER_MAX_AGE, 60L);
+        }, null);
+        final ResponseCache cache = new ResponseCache(65536L);
+        dispatcher.setResponseCache(cache);
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            for (int i = 0; i < 2; i++) {
+                final Message request = new Message()
+                        .messageId(i)
+                        .code(Message.CODE_REQUEST_METHOD_GET)
+                        .option(Option.NUMBER_OBSERVE, 0L)
+                        .option(Option.NUMBER_URI_PATH, "resource");
+                final Message response = exchange(client, endpoint.getLocalAddress(), request);
+                assertThat(response.getMessageId()).isEqualTo(i);
+                assertThat(response.getOptionNumber(0)).isEqualTo(Option.NUMBER_OBSERVE);
+                assertThat(response.getOptionValueAsLong(0)).isEqualTo(i + 1L);
+            }
+            assertThat(registrations.get()).isEqualTo(2);
+            assertThat(cache.size()).isZero();
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void handle_SharedGenerator_NonConfirmable() throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final MessageIdGenerator messageIds = new MessageIdGenerator();
+        final RequestDispatcher dispatcher = new RequestDispatcher(executor, HANDLER, null, messageIds);
+        assertThat(dispatcher.getMessageIdGenerator()).isSameAs(messageIds);
+        assertThrows(NullPointerException.class, () -> new RequestDispatcher(executor, HANDLER, null, null));
+        final CoapEndpoint endpoint = new CoapEndpoint(LOOPBACK, dispatcher);
+        final Thread thread = new Thread(endpoint);
+        thread.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Message request = new Message().messageId(1).code(Message.CODE_REQUEST_METHOD_GET);
+            request.setType(Message.TYPE_NON_CONFIRMABLE);
+            final Message response = exchange(client, endpoint.getLocalAddress(), request);
+            assertThat(response.getType()).isEqualTo(Message.TYPE_NON_CONFIRMABLE);
+            final SocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), client.getLocalPort());
+            // e.g. a notification to the same peer continues from the response
+            assertThat(messageIds.next(peer)).isEqualTo((response.getMessageId() + 1) & Message.MAX_MESSAGE_ID);
+        } finally {
+            endpoint.close();
+            thread.join(10000L);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void newVirtualThreadPerTaskExecutor_UnsupportedOperationException_NotSupported() {
+        assumeFalse(VirtualThreads.isSupported());
+        assertThrows(UnsupportedOperationException.class, VirtualThreads::newVirtualThreadPerTaskExecutor);
+    }
+}
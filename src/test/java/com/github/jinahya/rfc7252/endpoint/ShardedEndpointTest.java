@@ -0,0 +1,82 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.message.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A class for testing {@link ShardedEndpoint} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ShardedEndpointTest {
+
+    private static final SocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    @Test
+    void new_UnsupportedOperationException_ReusePortNotSupported() {
+        assumeFalse(ShardedEndpoint.isReusePortSupported());
+        assertThrows(UnsupportedOperationException.class,
+                     () -> new ShardedEndpoint(LOOPBACK, 2, shard -> (endpoint, source, message) -> {
+                     }));
+    }
+
+    @Test
+    void start_ServedBySameShard_SamePeer() throws IOException, InterruptedException {
+        assumeTrue(ShardedEndpoint.isReusePortSupported());
+        final int shards = 4;
+        final ShardedEndpoint sharded = new ShardedEndpoint(LOOPBACK, shards, shard -> (endpoint, source, message) -> {
+            final Message response = new Message()
+                    .messageId(message.getMessageId())
+                    .code(Message.CODE_RESPONSE_CONTENT)
+                    .token(message.getToken());
+            response.setType(Message.TYPE_ACKNOWLEDGEMENT);
+            response.setPayload(new byte[] {(byte) shard});
+            try {
+                endpoint.send(response, source);
+            } catch (final IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        });
+        assertThat(sharded.getShardCount()).isEqualTo(shards);
+        for (int i = 0; i < shards; i++) {
+            assertThat(sharded.getShard(i).getLocalAddress()).isEqualTo(sharded.getLocalAddress());
+        }
+        sharded.start();
+        try (DatagramSocket client = new DatagramSocket(LOOPBACK)) {
+            client.setSoTimeout(10000);
+            final Set<Byte> served = new HashSet<>();
+            for (int i = 0; i < 16; i++) {
+                final byte[] bytes = new Message().messageId(i).code(Message.CODE_REQUEST_METHOD_GET).write();
+                client.send(new DatagramPacket(bytes, bytes.length, sharded.getLocalAddress()));
+                final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+                client.receive(packet);
+                final Message response = new Message();
+                response.read(packet);
+                assertThat(response.getMessageId()).isEqualTo(i);
+                served.add(response.getPayload()[0]);
+            }
+            assertThat(served).hasSize(1);
+        } finally {
+            sharded.close(10000L);
+        }
+        for (int i = 0; i < shards; i++) {
+            assertThat(sharded.getShard(i).isClosed()).isTrue();
+        }
+    }
+}
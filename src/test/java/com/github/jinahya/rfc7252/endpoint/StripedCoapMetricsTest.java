@@ -0,0 +1,101 @@
+package com.github.jinahya.rfc7252.endpoint;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.MessageValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link StripedCoapMetrics} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class StripedCoapMetricsTest {
+
+    @Test
+    void new_IllegalArgumentException_Stripes() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedCoapMetrics(0));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new StripedCoapMetrics(StripedCoapMetrics.MAX_STRIPES + 1));
+    }
+
+    @Test
+    void decoded_Summed_Threads() throws InterruptedException {
+        final StripedCoapMetrics metrics = new StripedCoapMetrics(4);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    metrics.decoded(Message.TYPE_CONFIRMABLE, Message.CODE_REQUEST_METHOD_GET, 2, 10, 100L);
+                    metrics.encoded(Message.TYPE_ACKNOWLEDGEMENT, Message.CODE_RESPONSE_CONTENT, -1, 20, 100L);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(metrics.getDecodedCount()).isEqualTo(8000L);
+        assertThat(metrics.getDecodedBytes()).isEqualTo(80000L);
+        assertThat(metrics.getDecodedCountOfType(Message.TYPE_CONFIRMABLE)).isEqualTo(8000L);
+        assertThat(metrics.getDecodedCountOfCode(Message.CODE_REQUEST_METHOD_GET)).isEqualTo(8000L);
+        assertThat(metrics.getDecodedCountOfCode(Message.CODE_RESPONSE_CONTENT)).isZero();
+        assertThat(metrics.getEncodedCount()).isEqualTo(8000L);
+        assertThat(metrics.getEncodedBytes()).isEqualTo(160000L);
+        assertThat(metrics.getEncodedCountOfType(Message.TYPE_ACKNOWLEDGEMENT)).isEqualTo(8000L);
+        assertThat(metrics.getEncodedCountOfCode(Message.CODE_RESPONSE_CONTENT)).isEqualTo(8000L);
+    }
+
+    @Test
+    void malformed_Counted_Reason() {
+        final StripedCoapMetrics metrics = new StripedCoapMetrics(1);
+        metrics.malformed(MessageValidator.TOO_SHORT, 3);
+        metrics.malformed(MessageValidator.TOO_SHORT, 2);
+        metrics.malformed(-1, 10);
+        assertThat(metrics.getMalformedCount()).isEqualTo(3L);
+        assertThat(metrics.getMalformedCount(MessageValidator.TOO_SHORT)).isEqualTo(2L);
+        assertThat(metrics.getMalformedCount(-1)).isEqualTo(1L);
+        assertThat(metrics.getMalformedCount(MessageValidator.TRUNCATED_TOKEN)).isZero();
+    }
+
+    @Test
+    void toPrometheus_Exported() {
+        final StripedCoapMetrics metrics = new StripedCoapMetrics();
+        metrics.decoded(Message.TYPE_CONFIRMABLE, Message.CODE_REQUEST_METHOD_GET, 0, 4, 1000L);
+        metrics.decoded(Message.TYPE_NON_CONFIRMABLE, Message.CODE_REQUEST_METHOD_GET, 3, 12, 3000L);
+        metrics.malformed(MessageValidator.UNKNOWN_VERSION, 4);
+        metrics.malformed(-1, 4);
+        final String prometheus = metrics.toPrometheus();
+        log.debug("prometheus:\n{}", prometheus);
+        assertThat(prometheus)
+                .contains("# TYPE coap_decoded_total counter\ncoap_decoded_total 2\n")
+                .contains("coap_decoded_bytes_total 16\n")
+                .contains("coap_decoded_by_type_total{type=\"NON\"} 1\n")
+                .contains("coap_decoded_by_code_total{code=\"0.01\"} 2\n")
+                .contains("# TYPE coap_decoded_options histogram\n")
+                .contains("coap_decoded_options_bucket{le=\"0\"} 1\n")
+                .contains("coap_decoded_options_bucket{le=\"3\"} 2\n")
+                .contains("coap_decoded_options_bucket{le=\"+Inf\"} 2\n")
+                .contains("coap_decoded_options_sum 3\n")
+                .contains("coap_decode_duration_seconds_count 2\n")
+                .contains("coap_decode_duration_seconds_bucket{le=\"0.000016383\"} 2\n")
+                .contains("coap_decode_duration_seconds_bucket{le=\"0.536870911\"} 2\n")
+                .contains("coap_decode_duration_seconds_sum 0.000004000\n")
+                .contains("coap_malformed_total{reason=\"unknown_version\"} 1\n")
+                .contains("coap_malformed_total{reason=\"decode_error\"} 1\n")
+                .contains("coap_encoded_total 0\n");
+        final String text = metrics.toText();
+        log.debug("text:\n{}", text);
+        assertThat(text)
+                .contains("coap_decoded_total 2\n")
+                .doesNotContain("# TYPE")
+                .doesNotContain("coap_encoded_total");
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link BlockReassembler} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class BlockReassemblerTest {
+
+    private static final class ManualReassembler extends BlockReassembler {
+
+        private ManualReassembler(final int memoryThreshold, final long maxSize, final File directory) {
+            super(memoryThreshold, maxSize, 1000L, directory);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        private long now;
+    }
+
+    private static final SocketAddress PEER = InetSocketAddress.createUnresolved("peer", 5683);
+
+    private static Message block(final BlockSender sender, final int num) throws IOException {
+        final Message message = new Message()
+                .code(Message.CODE_REQUEST_METHOD_PUT)
+                .option(Option.NUMBER_URI_PATH, "firmware");
+        assertThat(sender.block(message, Option.NUMBER_BLOCK1, num)).isNotEqualTo(-1);
+        return message;
+    }
+
+    private static byte[] bytes(final BlockBuffer buffer) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertThat(buffer.transferTo(Channels.newChannel(baos))).isEqualTo(buffer.size());
+        return baos.toByteArray();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void offer_Completed_InOrder(@TempDir final File directory) throws IOException {
+        final byte[] body = new byte[10000];
+        ThreadLocalRandom.current().nextBytes(body);
+        try (ManualReassembler reassembler = new ManualReassembler(4096, 1 << 20, directory);
+             BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(body)), 6)) {
+            int result;
+            int num = 0;
+            do {
+                final Message message = block(sender, num++);
+                result = reassembler.offer(PEER, message, Option.NUMBER_BLOCK1);
+                assertThat(reassembler.offer(PEER, message, Option.NUMBER_BLOCK1)).isEqualTo(result); // repeated
+            } while (result == BlockReassembler.ACCEPTED);
+            assertThat(result).isEqualTo(BlockReassembler.COMPLETED);
+            try (BlockBuffer buffer = reassembler.remove(PEER, block(sender, num - 1))) {
+                assertThat(buffer.isSpilled()).isTrue();
+                assertThat(bytes(buffer)).isEqualTo(body);
+            }
+            assertThat(reassembler.size()).isZero();
+        }
+        assertThat(directory.list()).isEmpty();
+    }
+
+    @Test
+    void offer_Incomplete_OutOfOrder() throws IOException {
+        try (ManualReassembler reassembler = new ManualReassembler(4096, 1 << 20, null);
+             BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(new byte[100])), 0)) {
+            final Message first = block(sender, 0);
+            block(sender, 1);
+            final Message third = block(sender, 2);
+            assertThat(reassembler.offer(PEER, third, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.INCOMPLETE);
+            assertThat(reassembler.offer(PEER, first, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.ACCEPTED);
+            assertThat(reassembler.offer(PEER, third, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.INCOMPLETE);
+            assertThat(reassembler.size()).isZero();
+        }
+    }
+
+    @Test
+    void offer_TooLarge_MaxSize() throws IOException {
+        try (ManualReassembler reassembler = new ManualReassembler(16, 40, null);
+             BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(new byte[100])), 0)) {
+            assertThat(reassembler.offer(PEER, block(sender, 0), Option.NUMBER_BLOCK1))
+                    .isEqualTo(BlockReassembler.ACCEPTED);
+            assertThat(reassembler.offer(PEER, block(sender, 1), Option.NUMBER_BLOCK1))
+                    .isEqualTo(BlockReassembler.ACCEPTED);
+            assertThat(reassembler.offer(PEER, block(sender, 2), Option.NUMBER_BLOCK1))
+                    .isEqualTo(BlockReassembler.TOO_LARGE);
+            assertThat(reassembler.size()).isZero();
+        }
+    }
+
+    @Test
+    void purge_Discarded_Idle() throws IOException {
+        try (ManualReassembler reassembler = new ManualReassembler(4096, 1 << 20, null);
+             BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(new byte[100])), 0)) {
+            reassembler.offer(PEER, block(sender, 0), Option.NUMBER_BLOCK1);
+            reassembler.now = 999L;
+            assertThat(reassembler.purge()).isZero();
+            reassembler.now = 1000L;
+            assertThat(reassembler.offer(PEER, block(sender, 1), Option.NUMBER_BLOCK1))
+                    .isEqualTo(BlockReassembler.INCOMPLETE);
+            assertThat(reassembler.size()).isZero();
+        }
+    }
+
+    @Test
+    void offer_Completed_ObserveOnFirstBlockOnly() throws IOException {
+        final byte[] body = new byte[100];
+        ThreadLocalRandom.current().nextBytes(body);
+        try (ManualReassembler reassembler = new ManualReassembler(4096, 1 << 20, null);
+             BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(body)), 0)) {
+            int result;
+            int num = 0;
+            do {
+                final Message message = new Message()
+                        .code(Message.CODE_RESPONSE_CONTENT)
+                        .option(Option.NUMBER_CONTENT_FORMAT, 0L);
+                if (num == 0) { // the notification; later blocks are fetched with plain GETs
+                    message.addOption(Option.NUMBER_OBSERVE, 12L);
+                }
+                assertThat(sender.block(message, Option.NUMBER_BLOCK2, num++)).isNotEqualTo(-1);
+                result = reassembler.offer(PEER, message, Option.NUMBER_BLOCK2);
+            } while (result == BlockReassembler.ACCEPTED);
+            assertThat(result).isEqualTo(BlockReassembler.COMPLETED);
+            final Message last = new Message()
+                    .code(Message.CODE_RESPONSE_CONTENT)
+                    .option(Option.NUMBER_CONTENT_FORMAT, 0L);
+            try (BlockBuffer buffer = reassembler.remove(PEER, last)) {
+                assertThat(bytes(buffer)).isEqualTo(body);
+            }
+        }
+    }
+
+    @Test
+    void offer_Completed_SingleMessage() throws IOException {
+        try (BlockReassembler reassembler = new BlockReassembler()) {
+            final Message message = new Message().code(Message.CODE_REQUEST_METHOD_POST);
+            message.setPayload(new byte[] {1, 2, 3});
+            assertThat(reassembler.offer(PEER, message, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.COMPLETED);
+            try (BlockBuffer buffer = reassembler.remove(PEER, message)) {
+                assertThat(buffer.isSpilled()).isFalse();
+                assertThat(bytes(buffer)).isEqualTo(new byte[] {1, 2, 3});
+            }
+        }
+    }
+
+    @Test
+    void offer_NewBodyWritten_CompletedSingleMessageNotRemoved() throws IOException {
+        try (BlockReassembler reassembler = new BlockReassembler()) {
+            final Message first = new Message().code(Message.CODE_REQUEST_METHOD_POST);
+            first.setPayload(new byte[] {1, 2, 3});
+            assertThat(reassembler.offer(PEER, first, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.COMPLETED);
+            final Message second = new Message().code(Message.CODE_REQUEST_METHOD_POST);
+            second.setPayload(new byte[] {4, 5});
+            assertThat(reassembler.offer(PEER, second, Option.NUMBER_BLOCK1)).isEqualTo(BlockReassembler.COMPLETED);
+            assertThat(reassembler.size()).isEqualTo(1);
+            try (BlockBuffer buffer = reassembler.remove(PEER, second)) {
+                assertThat(bytes(buffer)).isEqualTo(new byte[] {4, 5});
+            }
+            assertThat(reassembler.remove(PEER, first)).isNull();
+        }
+    }
+}
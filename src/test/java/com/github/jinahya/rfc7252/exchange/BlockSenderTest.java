@@ -0,0 +1,105 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link BlockSender} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class BlockSenderTest {
+
+    private static byte[] body(final int length) {
+        final byte[] body = new byte[length];
+        ThreadLocalRandom.current().nextBytes(body);
+        return body;
+    }
+
+    private static byte[] readAll(final BlockSender sender) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(sender.getBlockSize());
+        for (int num = 0; ; num++) {
+            buffer.clear();
+            final int value = sender.read(num, buffer);
+            assertThat(value).isNotEqualTo(-1);
+            assertThat(BlockOption.num(value)).isEqualTo(num);
+            baos.write(buffer.array(), 0, buffer.position());
+            if (!BlockOption.more(value)) {
+                return baos.toByteArray();
+            }
+            assertThat(buffer.position()).isEqualTo(sender.getBlockSize());
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void value_Fields_Packed() {
+        final int value = BlockOption.value(1234, true, 6);
+        assertThat(BlockOption.num(value)).isEqualTo(1234);
+        assertThat(BlockOption.more(value)).isTrue();
+        assertThat(BlockOption.szx(value)).isEqualTo(6);
+        assertThat(BlockOption.size(6)).isEqualTo(1024);
+        assertThat(BlockOption.szxOf(16)).isZero();
+        assertThat(BlockOption.szxOf(1000)).isEqualTo(5);
+        assertThat(BlockOption.szxOf(65536)).isEqualTo(BlockOption.MAX_SZX);
+    }
+
+    @Test
+    void read_Sequential_Stream() throws IOException {
+        for (final int length : new int[] {0, 1, 64, 1000, 1024, 5000}) {
+            final byte[] body = body(length);
+            try (BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(body)), 2)) {
+                assertThat(sender.getBodySize()).isEqualTo(-1L);
+                assertThat(readAll(sender)).isEqualTo(body);
+            }
+        }
+    }
+
+    @Test
+    void read_Repeated_Stream() throws IOException {
+        final byte[] body = body(100);
+        try (BlockSender sender = new BlockSender(Channels.newChannel(new ByteArrayInputStream(body)), 1)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(32);
+            assertThat(sender.read(1, buffer)).isEqualTo(-1); // not in sequence
+            sender.read(0, buffer);
+            buffer.clear();
+            assertThat(sender.read(0, buffer)).isEqualTo(BlockOption.value(0, true, 1));
+            assertThat(buffer.array()).isEqualTo(Arrays.copyOf(body, 32));
+            buffer.clear();
+            assertThat(sender.read(2, buffer)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void read_Random_File(@TempDir final Path directory) throws IOException {
+        final byte[] body = body(3000);
+        final Path path = Files.write(directory.resolve("body"), body);
+        try (BlockSender sender = new BlockSender(FileChannel.open(path, StandardOpenOption.READ), 6)) {
+            assertThat(sender.getBodySize()).isEqualTo(3000L);
+            final Message message = new Message().code(Message.CODE_RESPONSE_CONTENT);
+            assertThat(sender.block(message, Option.NUMBER_BLOCK2, 2)).isEqualTo(BlockOption.value(2, false, 6));
+            assertThat(message.getPayload()).isEqualTo(Arrays.copyOfRange(body, 2048, 3000));
+            assertThat(sender.block(new Message(), Option.NUMBER_BLOCK2, 3)).isEqualTo(-1);
+            assertThat(readAll(sender)).isEqualTo(body);
+        }
+    }
+}
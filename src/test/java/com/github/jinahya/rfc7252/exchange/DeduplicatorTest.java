@@ -0,0 +1,115 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.SocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A class for testing {@link Deduplicator} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class DeduplicatorTest {
+
+    private static final class ManualDeduplicator extends Deduplicator {
+
+        private ManualDeduplicator(final long lifetime, final int buckets) {
+            super(lifetime, buckets);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        private long now;
+    }
+
+    private static SocketAddress peer(final int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void seen_Null_First() {
+        final Deduplicator deduplicator = new Deduplicator();
+        assertThat(deduplicator.seen(peer(1), 1)).isNull();
+        assertThat(deduplicator.seen(peer(1), 1)).isSameAs(Deduplicator.NO_RESPONSE);
+        assertThat(deduplicator.seen(peer(1), 2)).isNull();
+        assertThat(deduplicator.seen(peer(2), 1)).isNull();
+        assertThat(deduplicator.size()).isEqualTo(3);
+    }
+
+    @Test
+    void seen_Response_Responded() {
+        final Deduplicator deduplicator = new Deduplicator();
+        final byte[] response = {0x60, 0x45, 0x00, 0x01};
+        assertThat(deduplicator.seen(peer(1), 1)).isNull();
+        deduplicator.respond(peer(1), 1, response);
+        assertThat(deduplicator.seen(peer(1), 1)).isSameAs(response);
+        assertThat(deduplicator.size()).isEqualTo(1);
+    }
+
+    @Test
+    void seen_Distinguished_ManyPeers() {
+        final Deduplicator deduplicator = new Deduplicator();
+        for (int port = 0; port < 128; port++) {
+            for (int messageId = 0; messageId < 64; messageId++) {
+                assertThat(deduplicator.seen(peer(port), messageId * 1021)).isNull();
+            }
+        }
+        assertThat(deduplicator.size()).isEqualTo(128 * 64);
+        for (int port = 0; port < 128; port++) {
+            for (int messageId = 0; messageId < 64; messageId++) {
+                assertThat(deduplicator.seen(peer(port), messageId * 1021)).isNotNull();
+            }
+        }
+    }
+
+    @Test
+    void seen_Expired_Lifetime() {
+        final long lifetime = 1000L;
+        final ManualDeduplicator deduplicator = new ManualDeduplicator(lifetime, 5);
+        assertThat(deduplicator.seen(peer(1), 1)).isNull();
+        deduplicator.now = 600L;
+        assertThat(deduplicator.seen(peer(1), 2)).isNull();
+        deduplicator.now = lifetime;
+        assertThat(deduplicator.seen(peer(1), 1)).isNotNull(); // retained for at least the lifetime
+        deduplicator.now = lifetime * 5 / 4;
+        assertThat(deduplicator.size()).isEqualTo(1);
+        assertThat(deduplicator.seen(peer(1), 1)).isNull(); // expired
+        assertThat(deduplicator.seen(peer(1), 2)).isNotNull();
+        deduplicator.now = lifetime * 100;
+        assertThat(deduplicator.size()).isZero();
+    }
+
+    @Test
+    void seen_Distinguished_Addresses() throws UnknownHostException {
+        final Deduplicator deduplicator = new Deduplicator();
+        final byte[] ipv4 = {(byte) 192, (byte) 168, 0, 1};
+        final byte[] ipv6 = new byte[16];
+        System.arraycopy(ipv4, 0, ipv6, 12, ipv4.length); // ::192.168.0.1
+        assertThat(deduplicator.seen(new InetSocketAddress(InetAddress.getByAddress(ipv4), 1), 1)).isNull();
+        assertThat(deduplicator.seen(new InetSocketAddress(InetAddress.getByAddress(ipv6), 1), 1)).isNull();
+        ipv6[0] = 1;
+        assertThat(deduplicator.seen(new InetSocketAddress(InetAddress.getByAddress(ipv6), 1), 1)).isNull();
+        assertThat(deduplicator.seen(new InetSocketAddress(InetAddress.getByAddress(ipv6), 1), 1)).isNotNull();
+        assertThat(deduplicator.seen(new InetSocketAddress(InetAddress.getByAddress(ipv4), 1), 1)).isNotNull();
+        assertThat(deduplicator.size()).isEqualTo(3);
+    }
+
+    @Test
+    void seen_IllegalArgumentException_Unresolved() {
+        final Deduplicator deduplicator = new Deduplicator();
+        assertThatThrownBy(() -> deduplicator.seen(InetSocketAddress.createUnresolved("peer", 1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
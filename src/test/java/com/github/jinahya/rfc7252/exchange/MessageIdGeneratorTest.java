@@ -0,0 +1,124 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link MessageIdGenerator} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class MessageIdGeneratorTest {
+
+    private static final class ManualGenerator extends MessageIdGenerator {
+
+        private ManualGenerator() {
+            super(TransmissionParameters.EXCHANGE_LIFETIME, 4, new Random());
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        private volatile long now;
+    }
+
+    private static SocketAddress peer(final int port) {
+        return InetSocketAddress.createUnresolved("peer", port);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void next_NotReused_WithinLifetime() {
+        final ManualGenerator generator = new ManualGenerator();
+        final BitSet used = new BitSet();
+        int count = 0;
+        for (int id; (id = generator.next(peer(1))) != -1; count++) {
+            assertThat(id).isBetween(Message.MIN_MESSAGE_ID, Message.MAX_MESSAGE_ID);
+            assertThat(used.get(id)).isFalse();
+            used.set(id);
+        }
+        assertThat(count).isGreaterThan(Message.MAX_MESSAGE_ID + 1 - MessageIdGenerator.BLOCK_SIZE);
+        assertThat(generator.next(peer(2))).isNotEqualTo(-1); // other peers are independent
+        generator.now = TransmissionParameters.EXCHANGE_LIFETIME - 1000L;
+        assertThat(generator.next(peer(1))).isEqualTo(-1);
+        generator.now = TransmissionParameters.EXCHANGE_LIFETIME + 1000L;
+        final int id = generator.next(peer(1));
+        assertThat(id).isNotEqualTo(-1);
+        assertThat(id % MessageIdGenerator.BLOCK_SIZE).isZero();
+    }
+
+    @Test
+    void next_NotReused_LifetimeNotElapsedByMilliseconds() {
+        final ManualGenerator generator = new ManualGenerator();
+        generator.now = 999L;
+        while (generator.next(peer(1)) != -1) {
+            // empty
+        }
+        generator.now = 999L + TransmissionParameters.EXCHANGE_LIFETIME - 1L;
+        assertThat(generator.next(peer(1))).isEqualTo(-1);
+        generator.now = 999L + TransmissionParameters.EXCHANGE_LIFETIME;
+        assertThat(generator.next(peer(1))).isNotEqualTo(-1);
+    }
+
+    @Test
+    void next_Forgotten_Idle() {
+        final ManualGenerator generator = new ManualGenerator();
+        for (int port = 0; port < 1000; port++) {
+            generator.next(peer(port));
+        }
+        assertThat(generator.size()).isEqualTo(1000);
+        generator.now = TransmissionParameters.EXCHANGE_LIFETIME * 2;
+        for (int port = 1000; port < 2000; port++) {
+            generator.next(peer(port));
+        }
+        assertThat(generator.size()).isLessThan(2000);
+    }
+
+    @Test
+    void next_Unique_Concurrent() throws Exception {
+        final MessageIdGenerator generator = new MessageIdGenerator();
+        final int threads = 8;
+        final int count = 4096;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<int[]>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<int[]>) () -> {
+                    final int[] ids = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = generator.next(peer(5683));
+                    }
+                    return ids;
+                }));
+            }
+            final BitSet used = new BitSet();
+            for (final Future<int[]> future : futures) {
+                for (final int id : future.get()) {
+                    assertThat(id).isNotEqualTo(-1);
+                    assertThat(used.get(id)).isFalse();
+                    used.set(id);
+                }
+            }
+            assertThat(used.cardinality()).isEqualTo(threads * count);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ObserveNotifier} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ObserveNotifierTest {
+
+    private static SocketAddress peer(final int port) {
+        return InetSocketAddress.createUnresolved("peer", port);
+    }
+
+    private static Map<SocketAddress, Message> notify(final ObserveNotifier notifier, final Message notification,
+                                                      final int type) {
+        final Map<SocketAddress, Message> sent = new HashMap<>();
+        final int notified = notifier.notifyObservers(notification, type, (observer, messageId, encoded) -> {
+            final byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            final Message message = new Message();
+            try {
+                message.read(bytes);
+            } catch (final IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+            assertThat(message.getMessageId()).isEqualTo(messageId);
+            sent.put(observer, message);
+        });
+        assertThat(notified).isEqualTo(sent.size());
+        return sent;
+    }
+
+    private static long observe(final Message message) {
+        for (int i = 0; i < message.getOptionCount(); i++) {
+            if (message.getOptionNumber(i) == Option.NUMBER_OBSERVE) {
+                return message.getOptionValueAsLong(i);
+            }
+        }
+        return -1L;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void notifyObservers_Patched_EachObserver() {
+        final ObserveNotifier notifier = new ObserveNotifier();
+        final Map<SocketAddress, byte[]> tokens = new HashMap<>();
+        for (int port = 0; port < 32; port++) {
+            final byte[] token = new byte[port % (Message.MAX_TOKEN_LENGTH + 1)];
+            for (int i = 0; i < token.length; i++) {
+                token[i] = (byte) (port + i);
+            }
+            tokens.put(peer(port), token);
+            assertThat(notifier.register(peer(port), token)).isTrue();
+        }
+        final Message notification = new Message()
+                .code(Message.CODE_RESPONSE_CONTENT)
+                .option(Option.NUMBER_OBSERVE, 1234L) // ignored
+                .option(Option.NUMBER_CONTENT_FORMAT, 50L)
+                .option(Option.NUMBER_MAX_AGE, 10L);
+        notification.setPayload(new byte[] {'{', '}'});
+        for (int sequence = 1; sequence <= 3; sequence++) {
+            final Map<SocketAddress, Message> sent = notify(notifier, notification, Message.TYPE_NON_CONFIRMABLE);
+            assertThat(sent).hasSize(32);
+            for (final Map.Entry<SocketAddress, Message> entry : sent.entrySet()) {
+                final Message message = entry.getValue();
+                assertThat(message.getType()).isEqualTo(Message.TYPE_NON_CONFIRMABLE);
+                assertThat(message.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+                assertThat(message.getToken()).isEqualTo(tokens.get(entry.getKey()));
+                assertThat(observe(message)).isEqualTo(sequence);
+                assertThat(message.getOptionCount()).isEqualTo(3);
+                assertThat(message.getPayload()).isEqualTo(notification.getPayload());
+            }
+            assertThat(notifier.getSequence()).isEqualTo(sequence);
+        }
+    }
+
+    @Test
+    void register_Replaced_Registered() {
+        final ObserveNotifier notifier = new ObserveNotifier();
+        assertThat(notifier.register(peer(1), new byte[] {1})).isTrue();
+        assertThat(notifier.register(peer(1), new byte[] {2, 3})).isFalse();
+        assertThat(notifier.register(peer(2), new byte[0])).isTrue();
+        assertThat(notifier.size()).isEqualTo(2);
+        assertThat(notifier.deregister(peer(2))).isTrue();
+        assertThat(notifier.deregister(peer(2))).isFalse();
+        final Map<SocketAddress, Message> sent = notify(notifier, new Message().code(Message.CODE_RESPONSE_CONTENT),
+                                                        Message.TYPE_CONFIRMABLE);
+        assertThat(sent).containsOnlyKeys(peer(1));
+        assertThat(sent.get(peer(1)).getType()).isEqualTo(Message.TYPE_CONFIRMABLE);
+        assertThat(sent.get(peer(1)).getToken()).isEqualTo(new byte[] {2, 3});
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import com.github.jinahya.rfc7252.message.Message;
+import com.github.jinahya.rfc7252.message.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link ResponseCache} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class ResponseCacheTest {
+
+    private static final class ManualCache extends ResponseCache {
+
+        private ManualCache(final long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        private long now;
+    }
+
+    private static Message request(final String path) {
+        return new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .option(Option.NUMBER_URI_PATH, path);
+    }
+
+    private static Message content(final long maxAge) {
+        final Message response = new Message()
+                .code(Message.CODE_RESPONSE_CONTENT)
+                .option(Option.NUMBER_ETAG, new byte[] {1, 2})
+                .option(Option.NUMBER_CONTENT_FORMAT, 0L)
+                .option(Option.NUMBER_MAX_AGE, maxAge);
+        response.setPayload(new byte[] {'h', 'i'});
+        return response;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void get_Patched_Stored() throws IOException {
+        final ManualCache cache = new ManualCache(1024L);
+        assertThat(cache.put(request("a"), content(30L))).isTrue();
+        cache.now = 10500L;
+        final Message request = request("a").messageId(7).token(new byte[] {9, 8, 7});
+        final Message response = new Message();
+        response.read(cache.get(request, Message.TYPE_ACKNOWLEDGEMENT, 7));
+        assertThat(response.getType()).isEqualTo(Message.TYPE_ACKNOWLEDGEMENT);
+        assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+        assertThat(response.getMessageId()).isEqualTo(7);
+        assertThat(response.getToken()).isEqualTo(new byte[] {9, 8, 7});
+        assertThat(response.getPayload()).isEqualTo(new byte[] {'h', 'i'});
+        long maxAge = -1L;
+        for (int i = 0; i < response.getOptionCount(); i++) {
+            if (response.getOptionNumber(i) == Option.NUMBER_MAX_AGE) {
+                maxAge = response.getOptionValueAsLong(i);
+            }
+        }
+        assertThat(maxAge).isEqualTo(19L);
+        assertThat(cache.get(request("b"), Message.TYPE_ACKNOWLEDGEMENT, 7)).isNull();
+    }
+
+    @Test
+    void get_Valid_MatchingETag() throws IOException {
+        final ManualCache cache = new ManualCache(1024L);
+        cache.put(request("a"), content(30L));
+        final Message response = new Message();
+        response.read(cache.get(request("a").option(Option.NUMBER_ETAG, new byte[] {1, 2}),
+                                Message.TYPE_NON_CONFIRMABLE, 3));
+        assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_VALID);
+        assertThat(response.getType()).isEqualTo(Message.TYPE_NON_CONFIRMABLE);
+        assertThat(response.getMessageId()).isEqualTo(3);
+        assertThat(response.getPayload()).isNullOrEmpty();
+        response.reset();
+        response.read(cache.get(request("a").option(Option.NUMBER_ETAG, new byte[] {3}),
+                                Message.TYPE_NON_CONFIRMABLE, 3));
+        assertThat(response.getCode()).isEqualTo(Message.CODE_RESPONSE_CONTENT);
+    }
+
+    @Test
+    void get_Null_Expired() {
+        final ManualCache cache = new ManualCache(1024L);
+        cache.put(request("a"), content(30L));
+        cache.now = 30000L;
+        assertThat(cache.get(request("a"), Message.TYPE_ACKNOWLEDGEMENT, 1)).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    void put_False_NotCacheable() {
+        final ManualCache cache = new ManualCache(1024L);
+        assertThat(cache.put(request("a"), new Message().code(Message.CODE_RESPONSE_VALID))).isFalse();
+        assertThat(cache.put(request("a"), content(0L))).isFalse();
+        final Message registration = request("a").option(Option.NUMBER_OBSERVE, 0L);
+        assertThat(cache.put(registration, content(30L).option(Option.NUMBER_OBSERVE, 1L))).isFalse();
+        assertThat(cache.put(request("a"), new Message().code(Message.CODE_RESPONSE_INTERNAL_SERVER_ERROR))).isTrue();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void put_LeastRecentlyUsedEvicted_MaxSize() {
+        final ManualCache cache = new ManualCache(512L);
+        for (int i = 0; i < 16; i++) {
+            assertThat(cache.put(request("p" + i), content(30L))).isTrue();
+            assertThat(cache.get(request("p0"), Message.TYPE_ACKNOWLEDGEMENT, i)).isNotNull();
+            assertThat(cache.getSize()).isLessThanOrEqualTo(512L);
+        }
+        assertThat(cache.size()).isLessThan(16);
+        assertThat(cache.get(request("p1"), Message.TYPE_ACKNOWLEDGEMENT, 0)).isNull();
+        assertThat(cache.get(request("p15"), Message.TYPE_ACKNOWLEDGEMENT, 0)).isNotNull();
+    }
+}
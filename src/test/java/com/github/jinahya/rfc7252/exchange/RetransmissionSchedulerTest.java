@@ -0,0 +1,116 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link RetransmissionScheduler} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class RetransmissionSchedulerTest {
+
+    private static final class Recorder implements RetransmissionHandler {
+
+        @Override
+        public void retransmit(final SocketAddress peer, final ByteBuffer encoded) {
+            final byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            retransmitted.add(bytes);
+        }
+
+        @Override
+        public void timedOut(final SocketAddress peer, final int messageId) {
+            timedOut.add(messageId);
+        }
+
+        private final List<byte[]> retransmitted = new ArrayList<>();
+
+        private final List<Integer> timedOut = new ArrayList<>();
+    }
+
+    private static final class ManualScheduler extends RetransmissionScheduler {
+
+        private ManualScheduler(final RetransmissionHandler handler, final int wheelSize) {
+            super(handler, 100L, wheelSize, new Random());
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        private long now;
+    }
+
+    private static SocketAddress peer(final int port) {
+        return InetSocketAddress.createUnresolved("peer", port);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void advance_RetransmittedWithBackoff_NotCancelled() {
+        final Recorder recorder = new Recorder();
+        final ManualScheduler scheduler = new ManualScheduler(recorder, 64); // less than timeouts
+        final byte[] encoded = {0x40, 0x01, 0x00, 0x07};
+        scheduler.schedule(peer(1), 7, encoded);
+        assertThat(scheduler.size()).isEqualTo(1);
+        long elapsed = 0L;
+        final List<Long> times = new ArrayList<>();
+        for (int retransmitted = 0; recorder.timedOut.isEmpty(); ) {
+            scheduler.now = (elapsed += 100L);
+            scheduler.advance();
+            if (recorder.retransmitted.size() > retransmitted) {
+                retransmitted = recorder.retransmitted.size();
+                times.add(elapsed);
+            }
+        }
+        assertThat(recorder.retransmitted).hasSize(TransmissionParameters.MAX_RETRANSMIT);
+        assertThat(recorder.retransmitted).allSatisfy(b -> assertThat(b).isEqualTo(encoded));
+        assertThat(recorder.timedOut).containsExactly(7);
+        assertThat(scheduler.size()).isZero();
+        assertThat(times.get(0)).isBetween(TransmissionParameters.ACK_TIMEOUT, 3000L + 100L);
+        for (int i = 1; i < times.size(); i++) {
+            final long previous = i == 1 ? times.get(0) : times.get(i - 1) - times.get(i - 2);
+            assertThat(times.get(i) - times.get(i - 1)).isBetween(previous * 2 - 200L, previous * 2 + 200L);
+        }
+        assertThat(elapsed).isLessThanOrEqualTo(TransmissionParameters.MAX_TRANSMIT_WAIT + 500L);
+    }
+
+    @Test
+    void cancel_NotRetransmitted_Cancelled() {
+        final Recorder recorder = new Recorder();
+        final ManualScheduler scheduler = new ManualScheduler(recorder, 512);
+        for (int i = 0; i < 1000; i++) {
+            scheduler.schedule(peer(i % 10), i, new byte[] {(byte) i});
+        }
+        assertThrows(IllegalStateException.class, () -> scheduler.schedule(peer(1), 1, new byte[0]));
+        for (int i = 0; i < 1000; i += 2) {
+            assertThat(scheduler.cancel(peer(i % 10), i)).isTrue();
+        }
+        assertThat(scheduler.cancel(peer(0), 0)).isFalse();
+        assertThat(scheduler.cancel(peer(2), 1)).isFalse();
+        assertThat(scheduler.size()).isEqualTo(500);
+        scheduler.now = 3100L;
+        assertThat(scheduler.advance()).isEqualTo(500);
+        assertThat(recorder.retransmitted).hasSize(500).allSatisfy(b -> assertThat(b[0] & 1).isEqualTo(1));
+        for (int i = 1; i < 1000; i += 2) {
+            assertThat(scheduler.cancel(peer(i % 10), i)).isTrue();
+        }
+        assertThat(scheduler.size()).isZero();
+        scheduler.now = TransmissionParameters.MAX_TRANSMIT_WAIT * 2;
+        assertThat(scheduler.advance()).isZero();
+        assertThat(recorder.timedOut).isEmpty();
+    }
+}
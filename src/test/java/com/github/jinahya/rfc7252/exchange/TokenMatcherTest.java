@@ -0,0 +1,165 @@
+package com.github.jinahya.rfc7252.exchange;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link TokenMatcher} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class TokenMatcherTest {
+
+    private static SocketAddress peer(final int port) {
+        return InetSocketAddress.createUnresolved("peer", port);
+    }
+
+    private static byte[] token(final long value, final int length) {
+        final byte[] token = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            token[i] = (byte) (value >> ((length - 1 - i) << 3));
+        }
+        return token;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Test
+    void pack_BigEndian_() {
+        assertThat(TokenMatcher.pack(new byte[0], 0, 0)).isZero();
+        assertThat(TokenMatcher.pack(new byte[] {0, 1, 2}, 1, 2)).isEqualTo(0x0102L);
+        assertThat(TokenMatcher.pack(token(-1L, 8), 0, 8)).isEqualTo(-1L);
+        assertThrows(IllegalArgumentException.class, () -> TokenMatcher.pack(new byte[9], 0, 9));
+    }
+
+    @Test
+    void remove_Matched_Registered() {
+        final TokenMatcher<String> matcher = new TokenMatcher<>(16);
+        assertThat(matcher.register(new byte[] {1}, peer(1), "a")).isTrue();
+        assertThat(matcher.register(new byte[] {0, 1}, peer(1), "b")).isTrue(); // same packed value, longer
+        assertThat(matcher.register(new byte[] {1}, peer(2), "c")).isTrue(); // same token, other peer
+        assertThat(matcher.register(new byte[0], peer(1), "d")).isTrue();
+        assertThat(matcher.size()).isEqualTo(4);
+        assertThat(matcher.get(new byte[] {1}, peer(1))).isEqualTo("a");
+        assertThat(matcher.remove(new byte[] {9, 0, 1, 9}, 1, 2, peer(1))).isEqualTo("b");
+        assertThat(matcher.remove(new byte[] {1}, peer(2))).isEqualTo("c");
+        assertThat(matcher.remove(new byte[0], peer(1))).isEqualTo("d");
+        assertThat(matcher.remove(new byte[] {1}, peer(1))).isEqualTo("a");
+        assertThat(matcher.remove(new byte[] {1}, peer(1))).isNull();
+        assertThat(matcher.get(new byte[] {1}, peer(3))).isNull();
+        assertThat(matcher.size()).isZero();
+    }
+
+    @Test
+    void register_ReuseSlots_Churn() {
+        final TokenMatcher<Long> matcher = new TokenMatcher<>(64);
+        for (long i = 0; i < 100000L; i++) {
+            final byte[] token = token(i, 4);
+            assertThat(matcher.register(token, peer(5683), i)).isTrue();
+            if (i >= 32) {
+                assertThat(matcher.remove(token(i - 32, 4), peer(5683))).isEqualTo(i - 32);
+            }
+        }
+        assertThat(matcher.size()).isEqualTo(32);
+    }
+
+    @Test
+    void remove_NoDeleted_AllRemovedAfterChurn() {
+        final TokenMatcher<Long> matcher = new TokenMatcher<>(64);
+        for (long i = 0; i < 100000L; i++) {
+            assertThat(matcher.register(token(i, 4), peer(5683), i)).isTrue();
+            if (i >= 32) {
+                assertThat(matcher.remove(token(i - 32, 4), peer(5683))).isEqualTo(i - 32);
+            }
+        }
+        for (long i = 100000L - 32; i < 100000L; i++) {
+            assertThat(matcher.remove(token(i, 4), peer(5683))).isEqualTo(i);
+        }
+        assertThat(matcher.size()).isZero();
+        assertThat(matcher.deleted()).isZero();
+    }
+
+    @Test
+    void get_Found_ConcurrentChurn() throws Exception {
+        final int threads = 8;
+        final int window = 4;
+        final long count = 50000L;
+        final TokenMatcher<Long> matcher = new TokenMatcher<>(threads * window);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final long base = t * count;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    for (long i = base; i < base + count; i++) {
+                        assertThat(matcher.register(token(i, 8), peer(5683), i)).isTrue();
+                        for (long j = Math.max(base, i - window + 1); j <= i; j++) { // none lost by others' removals
+                            assertThat(matcher.get(token(j, 8), peer(5683))).isEqualTo(j);
+                        }
+                        if (i - base >= window - 1) {
+                            final long j = i - window + 1;
+                            assertThat(matcher.remove(token(j, 8), peer(5683))).isEqualTo(j);
+                        }
+                    }
+                    for (long j = base + count - window + 1; j < base + count; j++) {
+                        assertThat(matcher.remove(token(j, 8), peer(5683))).isEqualTo(j);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(matcher.size()).isZero();
+    }
+
+    @Test
+    void remove_RemovedOnce_Concurrent() throws Exception {
+        final int threads = 8;
+        final int count = 20000;
+        final TokenMatcher<Integer> matcher = new TokenMatcher<>(threads * count);
+        for (int i = 0; i < threads * count; i++) {
+            assertThat(matcher.register(token(i, 8), peer(i % 7), i)).isTrue();
+        }
+        final AtomicInteger removed = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    for (int i = 0; i < threads * count; i++) { // every thread races on every exchange
+                        final Integer exchange = matcher.remove(token(i, 8), peer(i % 7));
+                        if (exchange != null) {
+                            assertThat(exchange).isEqualTo(i);
+                            removed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(removed).hasValue(threads * count);
+        assertThat(matcher.size()).isZero();
+    }
+}
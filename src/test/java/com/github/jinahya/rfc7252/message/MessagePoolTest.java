@@ -0,0 +1,40 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link MessagePool} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class MessagePoolTest {
+
+    @Test
+    void acquire_SameInstance_Released() throws IOException {
+        final MessagePool pool = new MessagePool(1);
+        final Message message = pool.acquire();
+        message.read(MessageTest.newRandomInstance().write());
+        pool.release(message);
+        final Message acquired = pool.acquire();
+        assertThat(acquired).isSameAs(message);
+        assertThat(acquired.write()).isEqualTo(new Message().write());
+        assertThat(pool.acquire()).isNotSameAs(message);
+    }
+
+    @Test
+    void release_Discarded_Full() {
+        final MessagePool pool = new MessagePool(1);
+        final Message m1 = new Message();
+        final Message m2 = new Message();
+        pool.release(m1);
+        pool.release(m2);
+        assertThat(pool.acquire()).isSameAs(m1);
+        assertThat(pool.acquire()).isNotSameAs(m2);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link MessageTemplate} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class MessageTemplateTest {
+
+    @RepeatedTest(16)
+    void write_SameAsMessage_Patched() throws IOException {
+        final Message message = MessageTest.newRandomInstance();
+        final MessageTemplate template = new MessageTemplate(message);
+        assertThat(template.getType()).isEqualTo(message.getType());
+        assertThat(template.getCode()).isEqualTo(message.getCode());
+        for (int i = 0; i < 4; i++) {
+            final int messageId = current().nextInt(Message.MAX_MESSAGE_ID + 1);
+            final byte[] token = new byte[current().nextInt(Message.MAX_TOKEN_LENGTH + 1)];
+            current().nextBytes(token);
+            message.setMessageId(messageId);
+            message.setToken(token);
+            final byte[] expected = message.write();
+            assertThat(template.encodedSize(token.length)).isEqualTo(expected.length);
+            assertThat(template.write(messageId, token)).isEqualTo(expected);
+            final ByteBuffer buffer = ByteBuffer.allocate(expected.length + 1);
+            buffer.put((byte) 0);
+            template.write(messageId, token, buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+            final byte[] data = new byte[expected.length + 2];
+            assertThat(template.write(messageId, token, data, 2)).isEqualTo(expected.length);
+            assertThat(ByteBuffer.wrap(data, 2, expected.length)).isEqualTo(ByteBuffer.wrap(expected));
+        }
+    }
+
+    @Test
+    void getOptionValueOffset_Offset_Present() {
+        final Message message = new Message()
+                .code(Message.CODE_RESPONSE_CONTENT)
+                .token(new byte[] {1, 2, 3})
+                .option(Option.NUMBER_CONTENT_FORMAT, 50L)
+                .option(Option.NUMBER_MAX_AGE, new byte[] {0, 0, 0, 60});
+        final MessageTemplate template = new MessageTemplate(message);
+        final int offset = template.getOptionValueOffset(Option.NUMBER_MAX_AGE);
+        final byte[] written = template.write(1, new byte[] {9, 9});
+        assertThat(written[offset + 2 + 3]).isEqualTo((byte) 60);
+        assertThat(template.getOptionValueOffset(Option.NUMBER_ETAG)).isEqualTo(-1);
+        assertThat(template.write(1, null)[0] & 0x0F).isZero();
+    }
+}
@@ -2,9 +2,15 @@ package com.github.jinahya.rfc7252.message;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
 
 import static com.github.jinahya.rfc7252.message.Message.MAX_CODE;
 import static com.github.jinahya.rfc7252.message.Message.MAX_MESSAGE_ID;
@@ -35,7 +41,7 @@ class MessageTest {
         message.setToken(new byte[current().nextInt(MAX_TOKEN_LENGTH + 1)]);
         current().nextBytes(message.getToken());
         {
-            final int count = 0; //current().nextInt(8);
+            final int count = current().nextInt(8);
             for (int i = 0; i < count; i++) {
                 final int number = current().nextInt(128);
                 final byte[] value = new byte[current().nextInt(65536)];
@@ -58,4 +64,211 @@ class MessageTest {
         actual.read(baos.toByteArray());
         assertThat(actual).isEqualTo(expected);
     }
+
+    @Test
+    void equals_Equal_EmptyPayload() throws IOException {
+        final Message expected = new Message().code(Message.CODE_REQUEST_METHOD_GET);
+        expected.setToken(new byte[0]);
+        expected.setPayload(new byte[0]);
+        final Message actual = new Message();
+        actual.read(expected.write());
+        assertThat(actual.getPayload()).isNull();
+        assertThat(actual).isEqualTo(expected).hasSameHashCodeAs(expected);
+        assertThat(expected).isEqualTo(actual);
+    }
+
+    @RepeatedTest(16)
+    void equals_Equal_WriteReadByteBuffer() throws IOException {
+        final Message expected = newRandomInstance();
+        for (int i = current().nextInt(8); i > 0; i--) {
+            final byte[] value = new byte[current().nextInt(512)];
+            current().nextBytes(value);
+            expected.option(current().nextInt(1024), value);
+        }
+        final int capacity = expected.write().length;
+        for (final ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(capacity),
+                                                         ByteBuffer.allocateDirect(capacity)}) {
+            expected.write(buffer);
+            buffer.flip();
+            final Message actual = new Message();
+            actual.read(buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @RepeatedTest(16)
+    void equals_Equal_WriteReadDataInputWithLength() throws IOException {
+        final Message expected = newRandomInstance();
+        final byte[] bytes = expected.write();
+        final byte[] trailing = new byte[current().nextInt(16)];
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(bytes);
+        baos.write(trailing);
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final Message actual = new Message();
+        actual.read(input, bytes.length);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(input.available()).isEqualTo(trailing.length);
+    }
+
+    @RepeatedTest(16)
+    void equals_Equal_WriteReadDatagramPacketWithOffset() throws IOException {
+        final Message expected = newRandomInstance();
+        final byte[] bytes = expected.write();
+        final byte[] data = new byte[bytes.length + 32];
+        current().nextBytes(data);
+        final int offset = current().nextInt(16);
+        System.arraycopy(bytes, 0, data, offset, bytes.length);
+        final Message actual = new Message();
+        actual.read(new DatagramPacket(data, offset, bytes.length));
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @RepeatedTest(16)
+    void read_ReuseStorage_Reset() throws IOException {
+        final Message expected = newRandomInstance();
+        expected.option(Option.NUMBER_URI_PATH, new byte[] {'a'});
+        final byte[] bytes = expected.write();
+        final Message actual = new Message();
+        actual.read(bytes);
+        assertThat(actual).isEqualTo(expected);
+        final byte[] token = actual.getToken();
+        final byte[] payload = actual.getPayload();
+        actual.reset();
+        assertThat(actual.getToken()).isNull();
+        assertThat(actual.getPayload()).isNull();
+        assertThat(actual.write()).isEqualTo(new Message().write());
+        actual.read(bytes);
+        assertThat(actual).isEqualTo(expected);
+        if (token.length > 0) {
+            assertThat(actual.getToken()).isSameAs(token);
+        }
+        if (payload != null) {
+            assertThat(actual.getPayload()).isSameAs(payload);
+        }
+    }
+
+    @RepeatedTest(16)
+    void read_OptionsReplaced_OptionsPresent() throws IOException {
+        final Message[] actuals = new Message[4];
+        for (int i = 0; i < actuals.length; i++) {
+            actuals[i] = new Message()
+                    .option(Option.NUMBER_IF_MATCH, new byte[] {1})
+                    .option(Option.NUMBER_URI_HOST, "host")
+                    .option(Option.NUMBER_SIZE1, 1L);
+            actuals[i].setPayload(new byte[] {1, 2, 3});
+        }
+        final Message withoutPayload = newRandomInstance();
+        withoutPayload.setPayload(null);
+        for (final Message expected : new Message[] {newRandomInstance(), withoutPayload}) {
+            final byte[] bytes = expected.write();
+            actuals[0].read((DataInput) new DataInputStream(new ByteArrayInputStream(bytes)));
+            actuals[1].read(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length);
+            actuals[2].read(new ByteArrayInputStream(bytes));
+            actuals[3].read(ByteBuffer.wrap(bytes));
+            for (final Message actual : actuals) {
+                assertThat(actual).isEqualTo(expected);
+                assertThat(actual.write()).isEqualTo(bytes);
+            }
+        }
+        for (final Message actual : actuals) {
+            assertThat(actual.getPayload()).isNull();
+        }
+    }
+
+    @RepeatedTest(16)
+    void copy_Equal_Reset() throws IOException {
+        final Message message = newRandomInstance();
+        final byte[] bytes = message.write();
+        final Message copy = message.copy();
+        assertThat(copy).isEqualTo(message);
+        message.reset();
+        message.read(newRandomInstance().write());
+        assertThat(copy.write()).isEqualTo(bytes);
+    }
+
+    @Test
+    void getCacheKey_Excluded_NoCacheKeyAndETag() {
+        final Message request = new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .option(Option.NUMBER_URI_PATH, "a")
+                .option(Option.NUMBER_URI_QUERY, "q");
+        final Message other = new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .option(Option.NUMBER_ETAG, new byte[] {1})
+                .option(Option.NUMBER_URI_PATH, "a")
+                .option(Option.NUMBER_URI_QUERY, "q")
+                .option(Option.NUMBER_SIZE1, 1024L);
+        assertThat(other.getCacheKey()).isEqualTo(request.getCacheKey());
+        final Message another = new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .option(Option.NUMBER_URI_PATH, "b");
+        assertThat(another.getCacheKey()).isNotEqualTo(request.getCacheKey());
+        assertThat(new Message().code(Message.CODE_REQUEST_METHOD_GET).getCacheKey())
+                .isEqualTo(new byte[] {Message.CODE_REQUEST_METHOD_GET});
+    }
+
+    @Test
+    void getCacheKeyHash_Excluded_NoCacheKeyAndETag() {
+        final Message request = new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .messageId(1)
+                .token(new byte[] {1, 2})
+                .option(Option.NUMBER_URI_PATH, "abcdefghij")
+                .option(Option.NUMBER_URI_QUERY, "q");
+        final Message other = new Message()
+                .code(Message.CODE_REQUEST_METHOD_GET)
+                .messageId(2)
+                .option(Option.NUMBER_ETAG, new byte[] {1})
+                .option(Option.NUMBER_URI_PATH, "abcdefghij")
+                .option(Option.NUMBER_URI_QUERY, "q")
+                .option(Option.NUMBER_SIZE1, 1024L);
+        assertThat(other.getCacheKeyHash()).isEqualTo(request.getCacheKeyHash());
+        assertThat(new Message().code(Message.CODE_REQUEST_METHOD_GET).option(Option.NUMBER_URI_PATH, "abcdefghi")
+                           .getCacheKeyHash())
+                .isNotEqualTo(request.getCacheKeyHash());
+        assertThat(new Message().code(Message.CODE_REQUEST_METHOD_GET).option(Option.NUMBER_URI_QUERY, "abcdefghij")
+                           .option(Option.NUMBER_URI_QUERY, "q").getCacheKeyHash())
+                .isNotEqualTo(request.getCacheKeyHash());
+        assertThat(new Message().code(Message.CODE_REQUEST_METHOD_POST).getCacheKeyHash())
+                .isNotEqualTo(new Message().code(Message.CODE_REQUEST_METHOD_GET).getCacheKeyHash());
+    }
+
+    @RepeatedTest(16)
+    void encodedSize_EqualsToWrittenLength() throws IOException {
+        final Message message = newRandomInstance();
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        message.write(baos);
+        assertThat(message.encodedSize()).isEqualTo(baos.size());
+        final byte[] data = new byte[message.encodedSize() + 1];
+        assertThat(message.write(data, 1)).isEqualTo(baos.size());
+        assertThat(message.write()).isEqualTo(baos.toByteArray());
+    }
+
+    @Test
+    void getOption_SortedStably_Added() {
+        final Message message = new Message()
+                .option(Option.NUMBER_URI_PATH, new byte[] {'b'})
+                .option(Option.NUMBER_URI_HOST, new byte[] {'h'})
+                .option(Option.NUMBER_URI_PATH, new byte[] {'c'});
+        assertThat(message.getOptionCount()).isEqualTo(3);
+        assertThat(message.getOption(0)).isEqualTo(Option.of(Option.NUMBER_URI_HOST, new byte[] {'h'}));
+        assertThat(message.getOptionNumber(1)).isEqualTo(Option.NUMBER_URI_PATH);
+        assertThat(message.getOptionValue(1)).containsExactly('b');
+        assertThat(message.getOptionValueLength(2)).isEqualTo(1);
+        final byte[] dst = new byte[2];
+        assertThat(message.copyOptionValue(2, dst, 1)).isEqualTo(1);
+        assertThat(dst).containsExactly(0, 'c');
+    }
+
+    @Test
+    void option_MinimalUint_Long() {
+        final Message message = new Message()
+                .option(Option.NUMBER_MAX_AGE, 3600L)
+                .option(Option.NUMBER_CONTENT_FORMAT, 0L);
+        assertThat(message.getOption(0)).isEqualTo(Option.of(Option.NUMBER_CONTENT_FORMAT, new byte[0]));
+        assertThat(message.getOptionValue(1)).containsExactly(0x0E, 0x10);
+        assertThat(message.getOptionValueAsLong(1)).isEqualTo(3600L);
+    }
 }
@@ -0,0 +1,125 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link MessageValidator} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class MessageValidatorTest {
+
+    private static int checkAll(final byte[] data) {
+        final int result = MessageValidator.check(data);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 2);
+        direct.position(2);
+        direct.put(data).position(2);
+        assertThat(MessageValidator.check(direct)).isEqualTo(result);
+        assertThat(direct.position()).isEqualTo(2);
+        final byte[] padded = new byte[data.length + 3];
+        System.arraycopy(data, 0, padded, 1, data.length);
+        assertThat(MessageValidator.check(padded, 1, data.length)).isEqualTo(result);
+        final ByteBuffer slice = ByteBuffer.wrap(padded, 1, data.length).slice();
+        assertThat(MessageValidator.check(slice)).isEqualTo(result);
+        return result;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @RepeatedTest(16)
+    void check_Valid_Written() throws IOException {
+        final Message message = MessageTest.newRandomInstance();
+        message.setVersion(Message.VERSION01);
+        if (message.getCode() == Message.CODE_EMPTY_MESSAGE) {
+            message.setCode(Message.CODE_REQUEST_METHOD_GET);
+        }
+        assertThat(checkAll(message.write())).isEqualTo(MessageValidator.VALID);
+    }
+
+    @RepeatedTest(16)
+    void check_ConsistentWithRead_Random() {
+        final byte[] data = new byte[current().nextInt(32)];
+        current().nextBytes(data);
+        if (data.length > 0) {
+            data[0] = (byte) ((data[0] & 0x3F) | (Message.VERSION01 << 6));
+        }
+        final int result = checkAll(data);
+        boolean readable;
+        try {
+            new Message().read(data);
+            readable = true;
+        } catch (final Exception e) {
+            readable = false;
+        }
+        if (result == MessageValidator.VALID) {
+            assertThat(readable).isTrue();
+        }
+    }
+
+    @Test
+    void check_Results_Malformed() {
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00})).isEqualTo(MessageValidator.TOO_SHORT);
+        assertThat(checkAll(new byte[] {0x00, 0x01, 0x00, 0x01})).isEqualTo(MessageValidator.UNKNOWN_VERSION);
+        assertThat(checkAll(new byte[] {0x49, 0x01, 0x00, 0x01})).isEqualTo(MessageValidator.INVALID_TOKEN_LENGTH);
+        assertThat(checkAll(new byte[] {0x42, 0x01, 0x00, 0x01, 0x01})).isEqualTo(MessageValidator.TRUNCATED_TOKEN);
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, (byte) 0xF0}))
+                .isEqualTo(MessageValidator.INVALID_OPTION_DELTA);
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, 0x1F}))
+                .isEqualTo(MessageValidator.INVALID_OPTION_LENGTH);
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, 0x12, 0x01}))
+                .isEqualTo(MessageValidator.TRUNCATED_OPTION);
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, (byte) 0xD0}))
+                .isEqualTo(MessageValidator.TRUNCATED_OPTION);
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, (byte) 0xE0, (byte) 0xFF, (byte) 0xFF}))
+                .isEqualTo(MessageValidator.INVALID_OPTION_DELTA); // 65804
+        assertThat(checkAll(new byte[] {0x40, 0x01, 0x00, 0x01, (byte) 0xFF}))
+                .isEqualTo(MessageValidator.EMPTY_PAYLOAD);
+        assertThat(checkAll(new byte[] {0x40, 0x00, 0x00, 0x01, 0x00}))
+                .isEqualTo(MessageValidator.NON_EMPTY_EMPTY_MESSAGE);
+        assertThat(checkAll(new byte[] {0x40, 0x00, 0x00, 0x01})).isEqualTo(MessageValidator.VALID);
+        assertThat(checkAll(new byte[] {0x41, 0x01, 0x00, 0x01, 0x07, (byte) 0xFF, 0x01}))
+                .isEqualTo(MessageValidator.VALID);
+    }
+
+    @Test
+    void check_InvalidOptionValueLength_Registry() {
+        final OptionRegistry registry = OptionRegistry.getDefault();
+        final byte[] critical = {0x40, 0x01, 0x00, 0x01, 0x51, 0x00}; // If-None-Match of one byte
+        assertThat(checkAll(critical)).isEqualTo(MessageValidator.VALID);
+        assertThat(MessageValidator.check(critical, 0, critical.length, registry))
+                .isEqualTo(MessageValidator.INVALID_OPTION_VALUE_LENGTH);
+        assertThat(MessageValidator.check(ByteBuffer.wrap(critical), registry))
+                .isEqualTo(MessageValidator.INVALID_OPTION_VALUE_LENGTH);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(critical.length);
+        direct.put(critical).flip();
+        assertThat(MessageValidator.check(direct, registry)).isEqualTo(MessageValidator.INVALID_OPTION_VALUE_LENGTH);
+        final byte[] elective = {0x40, 0x01, 0x00, 0x01, (byte) 0xD5, 0x01, 0x01, 0x02, 0x03, 0x04, 0x05}; // Max-Age
+        assertThat(MessageValidator.check(elective, 0, elective.length, registry)).isEqualTo(MessageValidator.VALID);
+        final byte[] valid = {0x40, 0x01, 0x00, 0x01, 0x50}; // If-None-Match of no byte
+        assertThat(MessageValidator.check(valid, 0, valid.length, registry)).isEqualTo(MessageValidator.VALID);
+    }
+
+    @Test
+    void check_IndexOutOfBoundsException_BeyondLimit() {
+        final byte[] data = {0x40, 0x01, 0x00, 0x01, 0x00, 0x00};
+        final ByteBuffer heap = ByteBuffer.wrap(data);
+        heap.limit(4);
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageValidator.check(heap, 0, 6));
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageValidator.check(heap, -1, 4));
+        final ByteBuffer slice = ByteBuffer.wrap(data, 2, 4).slice();
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageValidator.check(slice, -2, 4));
+        final ByteBuffer direct = ByteBuffer.allocateDirect(6);
+        direct.limit(4);
+        assertThrows(IndexOutOfBoundsException.class, () -> MessageValidator.check(direct, 0, 6));
+        assertThat(MessageValidator.check(heap, 0, 4)).isEqualTo(MessageValidator.VALID);
+    }
+}
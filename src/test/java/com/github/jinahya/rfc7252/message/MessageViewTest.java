@@ -0,0 +1,116 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link MessageView} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class MessageViewTest {
+
+    private static void assertViewed(final MessageView view, final Message expected) {
+        assertThat(view.getVersion()).isEqualTo(expected.getVersion());
+        assertThat(view.getType()).isEqualTo(expected.getType());
+        assertThat(view.getCode()).isEqualTo(expected.getCode());
+        assertThat(view.getMessageId()).isEqualTo(expected.getMessageId());
+        assertThat(view.getToken()).isEqualTo(expected.getToken());
+        final Message actual = new Message()
+                .messageId(view.getMessageId())
+                .code(view.getCode())
+                .token(view.getToken());
+        actual.setVersion(view.getVersion());
+        actual.setType(view.getType());
+        int count = 0;
+        while (view.nextOption()) {
+            actual.option(view.getOptionNumber(), view.getOptionValue());
+            count++;
+        }
+        assertThat(view.getOptionCount()).isEqualTo(count);
+        actual.setPayload(view.getPayload());
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @RepeatedTest(16)
+    void equals_Equal_ByteArray() throws IOException {
+        final Message expected = MessageTest.newRandomInstance();
+        final byte[] bytes = expected.write();
+        final byte[] data = new byte[bytes.length + 16];
+        final int offset = current().nextInt(16);
+        System.arraycopy(bytes, 0, data, offset, bytes.length);
+        assertViewed(new MessageView().wrap(data, offset, bytes.length), expected);
+    }
+
+    @RepeatedTest(16)
+    void equals_Equal_DirectByteBuffer() throws IOException {
+        final Message expected = MessageTest.newRandomInstance();
+        final byte[] bytes = expected.write();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        assertViewed(new MessageView().wrap(buffer), expected);
+        assertThat(buffer.position()).isZero();
+    }
+
+    @RepeatedTest(16)
+    void getCacheKeyHash_SameAsMessage() throws IOException {
+        final Message expected = MessageTest.newRandomInstance();
+        final byte[] bytes = expected.write();
+        final MessageView view = new MessageView().wrap(bytes);
+        assertThat(view.getCacheKeyHash()).isEqualTo(expected.getCacheKeyHash());
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        assertThat(new MessageView().wrap(buffer).getCacheKeyHash()).isEqualTo(expected.getCacheKeyHash());
+        assertViewed(view, expected); // cursor not affected
+    }
+
+    @Test
+    void getPayloadOffset_NotAffectCursor() {
+        final byte[] data = {0x40, 0x01, 0x00, 0x01, (byte) 0xB1, 'a', 0x01, 'b', (byte) 0xFF, 'c'};
+        final MessageView view = new MessageView().wrap(data);
+        assertThat(view.nextOption()).isTrue();
+        assertThat(view.getOptionNumber()).isEqualTo(Option.NUMBER_URI_PATH);
+        assertThat(view.getPayloadOffset()).isEqualTo(9);
+        assertThat(view.getOptionCount()).isEqualTo(2);
+        assertThat(view.getOptionValueOffset()).isEqualTo(5);
+        assertThat(view.nextOption()).isTrue();
+        assertThat(view.getOptionNumber()).isEqualTo(Option.NUMBER_URI_PATH);
+        assertThat(view.nextOption()).isFalse();
+    }
+
+    @Test
+    void nextOption_RuntimeException_OptionOverrun() {
+        final byte[] data = {0x40, 0x01, 0x00, 0x01, (byte) 0xB3, 'a'};
+        final MessageView view = new MessageView().wrap(data);
+        assertThrows(RuntimeException.class, view::nextOption);
+    }
+
+    @Test
+    void wrap_IllegalArgumentException_LengthOverflow() {
+        final byte[] data = {0x40, 0x01, 0x00, 0x01};
+        assertThrows(IllegalArgumentException.class, () -> new MessageView().wrap(data, 1, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void getOptionCount_CursorRestored_OptionOverrun() {
+        final byte[] data = {0x40, 0x01, 0x00, 0x01, (byte) 0xB1, 'a', 0x03, 'b'};
+        final MessageView view = new MessageView().wrap(data);
+        assertThat(view.nextOption()).isTrue();
+        assertThrows(RuntimeException.class, view::getOptionCount);
+        assertThrows(RuntimeException.class, view::getCacheKeyHash);
+        assertThat(view.getOptionNumber()).isEqualTo(Option.NUMBER_URI_PATH);
+        assertThat(view.getOptionValueOffset()).isEqualTo(5);
+        assertThat(view.getOptionValueLength()).isEqualTo(1);
+        assertThrows(RuntimeException.class, view::nextOption); // the second option, not the first again
+    }
+}
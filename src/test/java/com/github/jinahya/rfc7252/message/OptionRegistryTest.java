@@ -0,0 +1,63 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A class for testing {@link OptionRegistry} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class OptionRegistryTest {
+
+    @Test
+    void getDefault_Defined_Standard() {
+        final OptionRegistry registry = OptionRegistry.getDefault();
+        assertThat(registry.isRegistered(Option.NUMBER_IF_MATCH)).isTrue();
+        assertThat(registry.isRegistered(0)).isFalse();
+        assertThat(registry.getFormat(Option.NUMBER_URI_PATH)).isEqualTo(OptionRegistry.FORMAT_STRING);
+        assertThat(registry.isRepeatable(Option.NUMBER_URI_PATH)).isTrue();
+        assertThat(registry.isRepeatable(Option.NUMBER_URI_HOST)).isFalse();
+        assertThat(registry.getFormat(Option.NUMBER_IF_NON_MATCH)).isEqualTo(OptionRegistry.FORMAT_EMPTY);
+        assertThat(registry.getMinLength(Option.NUMBER_PROXY_URI)).isEqualTo(1);
+        assertThat(registry.getMaxLength(Option.NUMBER_PROXY_URI)).isEqualTo(1034);
+        assertThat(registry.getFormat(Option.NUMBER_PROXY_SCHEME)).isEqualTo(OptionRegistry.FORMAT_STRING);
+        assertThat(Option.NUMBER_PROXY_SCHEME).isNotEqualTo(Option.NUMBER_PROXY_URI);
+        assertThat(registry.getFormat(Option.NUMBER_BLOCK2)).isEqualTo(OptionRegistry.FORMAT_UINT);
+        assertThat(registry.isValidLength(Option.NUMBER_ETAG, 0)).isFalse();
+        assertThat(registry.isValidLength(Option.NUMBER_ETAG, 8)).isTrue();
+        assertThat(registry.isValidLength(Option.NUMBER_ETAG, 9)).isFalse();
+        assertThat(registry.isValidLength(65000, 100000)).isTrue(); // not registered
+        assertThat(registry.getFormat(65000)).isEqualTo(-1);
+        assertThat(registry.isCritical(Option.NUMBER_URI_HOST)).isTrue();
+        assertThat(registry.isUnsafe(Option.NUMBER_PROXY_SCHEME)).isTrue();
+        assertThat(registry.isNoCacheKey(Option.NUMBER_SIZE1)).isTrue();
+        assertThrows(IllegalStateException.class,
+                     () -> registry.register(65000, OptionRegistry.FORMAT_OPAQUE, false, 0, 1));
+    }
+
+    @Test
+    void register_Defined_Sparse() {
+        final OptionRegistry registry = new OptionRegistry(OptionRegistry.getDefault());
+        for (int number = OptionRegistry.DENSE_SIZE; number < 65536; number += 97) {
+            registry.register(number, number & 0x03, (number & 1) == 0, number & 0x7F, 1000 + (number & 0xFF));
+        }
+        registry.register(65535, OptionRegistry.FORMAT_OPAQUE, true, 0, 65804);
+        for (int number = OptionRegistry.DENSE_SIZE; number < 65536; number += 97) {
+            assertThat(registry.getFormat(number)).isEqualTo(number & 0x03);
+            assertThat(registry.isRepeatable(number)).isEqualTo((number & 1) == 0);
+            assertThat(registry.getMinLength(number)).isEqualTo(number & 0x7F);
+            assertThat(registry.getMaxLength(number)).isEqualTo(1000 + (number & 0xFF));
+            assertThat(registry.isRegistered(number + 1)).isEqualTo(number + 1 == 65535);
+        }
+        assertThat(registry.getMaxLength(65535)).isEqualTo(65804);
+        assertThat(registry.isRegistered(Option.NUMBER_URI_PATH)).isTrue();
+        registry.register(OptionRegistry.DENSE_SIZE, OptionRegistry.FORMAT_EMPTY, false, 0, 0);
+        assertThat(registry.getFormat(OptionRegistry.DENSE_SIZE)).isEqualTo(OptionRegistry.FORMAT_EMPTY);
+        assertThat(OptionRegistry.getDefault().isRegistered(OptionRegistry.DENSE_SIZE)).isFalse();
+    }
+}
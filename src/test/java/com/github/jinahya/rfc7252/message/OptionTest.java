@@ -10,6 +10,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 import static java.util.concurrent.ThreadLocalRandom.current;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -122,4 +123,84 @@ class OptionTest {
         log.debug("actual: {}", actual);
         assertThat(actual).isEqualTo(expected);
     }
+
+    @RepeatedTest(16)
+    void equals_Equal_WriteReadByteBuffer() {
+        final Option expected = newRandomInstance();
+        for (final ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)}) {
+            expected.write(buffer);
+            buffer.flip();
+            final Option actual = new Option();
+            actual.read(buffer);
+            assertThat(buffer.hasRemaining()).isFalse();
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @RepeatedTest(16)
+    void encodedSize_EqualsToWrittenLength() throws IOException {
+        final Option previous = Option.of(current().nextInt(1024), new byte[0]);
+        final Option option = newRandomInstance();
+        option.setNumber(previous.getNumber() + current().nextInt(1024));
+        option.previous = previous;
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        option.write(new DataOutputStream(baos));
+        assertThat(option.encodedSize(previous.getNumber())).isEqualTo(baos.size());
+    }
+
+    @Test
+    void readExtended_SameAsBuffer_Index() {
+        for (final int value : new int[] {0, 12, 13, 268, 269, 1000, 65804}) {
+            final ByteBuffer written = ByteBuffer.allocate(8);
+            Option.writeHeader(value, 0, written);
+            final byte[] array = new byte[written.position() + 3];
+            System.arraycopy(written.array(), 0, array, 3, written.position());
+            final int nibble = (array[3] & 0xFF) >> 4;
+            final ByteBuffer direct = ByteBuffer.allocateDirect(array.length);
+            direct.put(array).clear();
+            assertThat(Option.readExtended(nibble, array, null, 4)).isEqualTo(value);
+            assertThat(Option.readExtended(nibble, null, direct, 4)).isEqualTo(value);
+            assertThat(Option.extendedBytes(nibble)).isEqualTo(Option.extendedSize(value));
+        }
+        assertThrows(RuntimeException.class, () -> Option.readExtended(15, new byte[2], null, 0));
+    }
+
+    // ----------------------------------------------------------------------------------------------------- valueAsLong
+    @RepeatedTest(16)
+    void setValueAsLong_SameAsUint() {
+        final long expected = current().nextLong() >>> (1 + current().nextInt(63));
+        final Option option = new Option();
+        option.setValueAsLong(expected);
+        final Option uint = new Option();
+        uint.setValueAsUint(BigInteger.valueOf(expected));
+        assertThat(option.getValue()).isEqualTo(uint.getValue());
+        assertThat(option.getValueAsLong()).isEqualTo(expected);
+        assertThat(option.getValueAsUint()).isEqualTo(BigInteger.valueOf(expected));
+    }
+
+    @Test
+    void getValueAsInt_ArithmeticException_Overflow() {
+        final Option option = new Option();
+        option.setValueAsLong(0xFFFFFFFFL);
+        assertThat(option.getValue()).hasSize(4);
+        assertThat(option.getValueAsLong()).isEqualTo(0xFFFFFFFFL);
+        assertThrows(ArithmeticException.class, option::getValueAsInt);
+        option.setValueAsInt(60);
+        assertThat(option.getValue()).containsExactly(60);
+        assertThat(option.getValueAsInt()).isEqualTo(60);
+        option.setValueAsInt(0);
+        assertThat(option.getValue()).isEmpty();
+        assertThrows(IllegalArgumentException.class, () -> option.setValueAsInt(-1));
+    }
+
+    @Test
+    void isCritical_isUnsafe_isNoCacheKey() {
+        assertThat(Option.isCritical(Option.NUMBER_URI_PATH)).isTrue();
+        assertThat(Option.isCritical(Option.NUMBER_ETAG)).isFalse();
+        assertThat(Option.isUnsafe(Option.NUMBER_URI_PATH)).isTrue();
+        assertThat(Option.isUnsafe(Option.NUMBER_MAX_AGE)).isTrue();
+        assertThat(Option.isUnsafe(Option.NUMBER_ETAG)).isFalse();
+        assertThat(Option.isNoCacheKey(Option.NUMBER_SIZE1)).isTrue();
+        assertThat(Option.isNoCacheKey(Option.NUMBER_URI_QUERY)).isFalse();
+    }
 }
@@ -0,0 +1,68 @@
+package com.github.jinahya.rfc7252.message;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.text.RandomStringGenerator;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A class for testing {@link OptionValueCache} class.
+ *
+ * @author Jin Kwon &lt;onacit_at_gmail.com&gt;
+ */
+@Slf4j
+class OptionValueCacheTest {
+
+    @RepeatedTest(128)
+    void encodeUtf8_SameAsPlatform() {
+        final String string = new RandomStringGenerator.Builder().build().generate(current().nextInt(128));
+        assertThat(OptionValueCache.encodeUtf8(string)).isEqualTo(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encodeUtf8_SameAsPlatform_LoneSurrogate() {
+        final String string = "a\uD800b\uDC00";
+        assertThat(OptionValueCache.encodeUtf8(string)).isEqualTo(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @RepeatedTest(128)
+    void decodeUtf8_SameAsPlatform() {
+        final byte[] bytes = current().nextBoolean()
+                             ? new RandomStringGenerator.Builder().build().generate(current().nextInt(128))
+                                     .getBytes(StandardCharsets.UTF_8)
+                             : new byte[current().nextInt(128)];
+        if (bytes.length > 0 && current().nextBoolean()) {
+            current().nextBytes(bytes); // most likely malformed
+        }
+        assertThat(OptionValueCache.decodeUtf8(bytes, 0, bytes.length))
+                .isEqualTo(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decode_SameInstance_Cached() {
+        final OptionValueCache cache = new OptionValueCache(16);
+        final byte[] bytes = "temperature".getBytes(StandardCharsets.UTF_8);
+        final String string = cache.decode(bytes, 0, bytes.length);
+        assertThat(string).isEqualTo("temperature");
+        assertThat(cache.decode(bytes.clone(), 0, bytes.length)).isSameAs(string);
+        assertThat(cache.encode(string)).isSameAs(cache.encode("temperature")).isEqualTo(bytes);
+    }
+
+    @Test
+    void setValueAsString_NotShared_Cached() {
+        final Option option1 = new Option();
+        option1.setValueAsString("sensors");
+        final Option option2 = new Option();
+        option2.setValueAsString("sensors");
+        assertThat(option1.getValue()).isNotSameAs(option2.getValue()).isEqualTo(option2.getValue());
+        assertThat(option1.getValueAsString()).isEqualTo("sensors");
+        final Message message = new Message().option(Option.NUMBER_URI_PATH, "sensors");
+        assertThat(message.getOptionValue(0)).isEqualTo(option1.getValue());
+        assertThat(message.getOptionValueAsString(0)).isEqualTo("sensors");
+    }
+}